@@ -0,0 +1,74 @@
+package org.dwbzen.commonlib.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.dwbzen.common.cp.CollectorStats;
+import org.dwbzen.commonlib.test.Sentence;
+import org.dwbzen.commonlib.test.Word;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CollectorStats.addOccurrence for a number of distinct next K (fanOut) and Suppliers.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AddOccurrenceBenchmark {
+
+	static final int OCCURRENCES = 10000;
+
+	@Param({"10", "1000"})
+	int fanOut;
+
+	@Param({"1", "1000"})
+	int suppliers;
+
+	@Param({"true", "false"})
+	boolean lazyStatistics;
+
+	private Character[] keys;
+	private Sentence[] sentences;
+	private CollectorStats<Character, Word, Sentence> cstats;
+
+	@Setup(Level.Trial)
+	public void createKeys() {
+		keys = new Character[OCCURRENCES];
+		sentences = new Sentence[OCCURRENCES];
+		for(int i=0; i<OCCURRENCES; i++) {
+			keys[i] = (char)('a' + (i * 31) % fanOut);
+			sentences[i] = new Sentence("s" + (i * 17) % suppliers, "");
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void createStats() {
+		cstats = new CollectorStats<>(new Word("a"));
+		cstats.setLazyStatistics(lazyStatistics);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OCCURRENCES)
+	public CollectorStats<Character, Word, Sentence> addOccurrence() {
+		for(int i=0; i<OCCURRENCES; i++) {
+			cstats.addOccurrence(keys[i], sentences[i]);
+		}
+		cstats.seal();
+		return cstats;
+	}
+}
@@ -0,0 +1,111 @@
+package org.dwbzen.commonlib.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.dwbzen.common.math.Tupple;
+import org.dwbzen.common.relation.OccurrenceRelation;
+import org.dwbzen.common.relation.OccurrenceRelationBag;
+import org.dwbzen.commonlib.test.Sentence;
+import org.dwbzen.commonlib.test.Word;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ingesting units of length 10 to 14 into an OccurrenceRelationBag: an OccurrenceRelation per unit,
+ * addUnit() per unit and addUnits() in parallel.<br>
+ * Units are drawn from 20000 distinct words so the source Sets of the bag stay bounded.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BagIngestionBenchmark {
+
+	static final int WORDS = 20000;
+
+	@Param({"1000000"})
+	int units;
+
+	@Param({"2", "3"})
+	int degree;
+
+	private List<Word> corpus;
+
+	static class WordRelation extends OccurrenceRelation<Character, Word, Sentence> {
+		WordRelation(Word word, int degree) {
+			super(word, degree);
+		}
+
+		@Override
+		public boolean isElement(Tupple<Character> element, Word unit) {
+			return unit.containsAll(element.getElements());
+		}
+	}
+
+	static class WordBag extends OccurrenceRelationBag<Character, Word, Sentence> {
+		WordBag(int degree) {
+			super(degree);
+		}
+	}
+
+	@Setup
+	public void createCorpus() {
+		Random random = new Random(1L);
+		List<Word> words = new ArrayList<>(WORDS);
+		for(int n=0; n<WORDS; n++) {
+			StringBuilder sb = new StringBuilder();
+			int length = 10 + random.nextInt(5);
+			for(int i=0; i<length; i++) {
+				sb.append((char)('a' + random.nextInt(26)));
+			}
+			words.add(new Word(sb.toString()));
+		}
+		corpus = new ArrayList<>(units);
+		for(int n=0; n<units; n++) {
+			corpus.add(words.get(random.nextInt(WORDS)));
+		}
+	}
+
+	@Benchmark
+	public WordBag occurrenceRelations() {
+		WordBag bag = new WordBag(degree);
+		for(Word word : corpus) {
+			bag.addOccurrenceRelation(new WordRelation(word, degree));
+		}
+		bag.close();
+		return bag;
+	}
+
+	@Benchmark
+	public WordBag addUnit() {
+		WordBag bag = new WordBag(degree);
+		for(Word word : corpus) {
+			bag.addUnit(word);
+		}
+		bag.close();
+		return bag;
+	}
+
+	@Benchmark
+	public WordBag addUnits() {
+		WordBag bag = new WordBag(degree);
+		bag.addUnits(corpus);
+		bag.close();
+		return bag;
+	}
+}
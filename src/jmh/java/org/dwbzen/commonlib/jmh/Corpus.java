@@ -0,0 +1,44 @@
+package org.dwbzen.commonlib.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.dwbzen.common.cp.MarkovChain;
+import org.dwbzen.commonlib.test.CharacterChains;
+import org.dwbzen.commonlib.test.Sentence;
+import org.dwbzen.commonlib.test.Word;
+
+/**
+ * Synthetic corpora for the benchmarks: sentences of words over an alphabet of vocabulary characters.<br>
+ * Characters are drawn from a half-normal distribution so a few are frequent and most are rare, like letters in text.
+ * The same arguments always create the same corpus.
+ *
+ */
+public class Corpus {
+
+	public static List<Sentence> create(int nsentences, int vocabulary, long seed) {
+		Random random = new Random(seed);
+		double sigma = vocabulary / 4.0;
+		List<Sentence> sentences = new ArrayList<>(nsentences);
+		for(int i=0; i<nsentences; i++) {
+			StringBuilder sb = new StringBuilder();
+			int nwords = 5 + random.nextInt(10);
+			for(int w=0; w<nwords; w++) {
+				int len = 2 + random.nextInt(8);
+				for(int c=0; c<len; c++) {
+					sb.append((char)('a' + Math.min(vocabulary - 1, (int)Math.abs(random.nextGaussian() * sigma))));
+				}
+				sb.append(' ');
+			}
+			sentences.add(new Sentence("s" + (i % 100), sb.toString()));		// 100 suppliers
+		}
+		return sentences;
+	}
+
+	public static MarkovChain<Character, Word, Sentence> train(int order, List<Sentence> sentences) {
+		MarkovChain<Character, Word, Sentence> markovChain = new MarkovChain<>(order);
+		sentences.forEach(sentence -> CharacterChains.collect(markovChain, sentence));
+		return markovChain;
+	}
+}
@@ -0,0 +1,83 @@
+package org.dwbzen.commonlib.jmh;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.dwbzen.common.cp.CollectorStats;
+import org.dwbzen.common.cp.MarkovChain;
+import org.dwbzen.common.cp.OutputStyle;
+import org.dwbzen.commonlib.test.Sentence;
+import org.dwbzen.commonlib.test.Word;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Summaries (sortByValue, getTopStates) and streaming exports of a trained chain.
+ * Exports are written to a null Writer so only formatting is measured.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportBenchmark {
+
+	@Param({"2", "4"})
+	int order;
+
+	@Param({"26", "200"})
+	int vocabulary;
+
+	private MarkovChain<Character, Word, Sentence> markovChain;
+	private final Writer writer = Writer.nullWriter();
+
+	@Setup
+	public void train() {
+		markovChain = Corpus.train(order, Corpus.create(5000, vocabulary, 1L));
+		markovChain.seal();
+	}
+
+	@Benchmark
+	public LinkedHashMap<Word, CollectorStats<Character, Word, Sentence>> sortByValue() {
+		return markovChain.sortByValue();
+	}
+
+	@Benchmark
+	public List<Word> topStates() {
+		return markovChain.getTopStates(10);
+	}
+
+	@Benchmark
+	public void json() throws IOException {
+		markovChain.writeJson(writer);
+	}
+
+	@Benchmark
+	public void csv() throws IOException {
+		markovChain.writeMarkovChainCsv(writer);
+	}
+
+	@Benchmark
+	public void sparseCsv() throws IOException {
+		markovChain.writeSparseCsv(writer);
+	}
+
+	@Benchmark
+	public void displayText() throws IOException {
+		markovChain.writeMarkovChainDisplayText(OutputStyle.TEXT, false, writer);
+	}
+}
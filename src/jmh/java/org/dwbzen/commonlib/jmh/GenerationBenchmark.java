@@ -0,0 +1,69 @@
+package org.dwbzen.commonlib.jmh;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.dwbzen.common.cp.MarkovChain;
+import org.dwbzen.common.cp.MarkovChainGenerator;
+import org.dwbzen.commonlib.test.Sentence;
+import org.dwbzen.commonlib.test.Word;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MarkovChainGenerator walks over one FrozenMarkovChain in a ForkJoinPool of each parallelism.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GenerationBenchmark {
+
+	@Param({"1", "3"})
+	int order;
+
+	@Param({"1", "2", "4", "8"})
+	int parallelism;
+
+	@Param({"100000"})
+	int walks;
+
+	private ForkJoinPool pool;
+	private MarkovChainGenerator<Character, Word, Sentence> generator;
+
+	@Setup
+	public void createGenerator() {
+		MarkovChain<Character, Word, Sentence> markovChain = Corpus.train(order, Corpus.create(5000, 26, 1L));
+		markovChain.setPickInitialSeed(true);
+		pool = new ForkJoinPool(parallelism);
+		generator = new MarkovChainGenerator<>(markovChain.freeze(), Word::new);
+		generator.setSeed(1L);
+		generator.setCount(walks);
+		generator.setMaxLength(20);
+		generator.setPool(pool);
+	}
+
+	@TearDown
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public List<Word> generate() {
+		return generator.generate();
+	}
+}
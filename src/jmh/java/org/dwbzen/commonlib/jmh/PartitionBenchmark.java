@@ -0,0 +1,85 @@
+package org.dwbzen.commonlib.jmh;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.dwbzen.common.math.Tupple;
+import org.dwbzen.common.relation.Partitions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Partitions of a unit of length elements into Tupples of degree: Combinations against the previous
+ * power set scan, kept here as powerSet() for comparison.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PartitionBenchmark {
+
+	@Param({"12", "20"})
+	int length;
+
+	@Param({"2", "3"})
+	int degree;
+
+	private Tupple<Integer> unit;
+
+	@Setup(Level.Trial)
+	public void createUnit() {
+		Integer[] elements = new Integer[length];
+		for(int i=0; i<length; i++) {
+			elements[i] = (i * 7) % length;
+		}
+		unit = new Tupple<>(elements);
+	}
+
+	@Benchmark
+	public Set<Tupple<Integer>> combinations() {
+		return new Partitions<>(unit, degree).getPartitions();
+	}
+
+	@Benchmark
+	public Set<Tupple<Integer>> powerSet() {
+		Set<Tupple<Integer>> partitions = new TreeSet<>();
+		int len = unit.size();
+		double nSets = Math.pow(2, len);
+		for(int i = 1; i<nSets; i++) {
+			if(nbits(i) == degree) {
+				Tupple<Integer> tupple = new Tupple<>(degree);
+				int j = 0;
+				do {
+					if((1 & (i>>j)) == 1) {
+						tupple.add(unit.get(len - 1 - j));
+					}
+				} while(Math.pow(2, j++) <= nSets);
+				partitions.add(tupple);
+			}
+		}
+		return partitions;
+	}
+
+	private static int nbits(int n) {
+		int nbits = 0;
+		int i = 0;
+		do {
+			nbits += (1 & (n>>i++));
+		} while(Math.pow(2, i) <= n);
+		return nbits;
+	}
+}
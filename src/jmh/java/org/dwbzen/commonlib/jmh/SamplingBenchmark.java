@@ -0,0 +1,105 @@
+package org.dwbzen.commonlib.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.dwbzen.common.cp.FrozenMarkovChain;
+import org.dwbzen.common.cp.MarkovChain;
+import org.dwbzen.common.cp.PrimitiveMarkovChain;
+import org.dwbzen.common.util.SplitMixRandom;
+import org.dwbzen.commonlib.test.Sentence;
+import org.dwbzen.commonlib.test.Word;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * pickSeed and next-state sampling from a trained chain, for each engine that can sample.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SamplingBenchmark {
+
+	@Param({"1", "3", "5"})
+	int order;
+
+	@Param({"26", "200"})
+	int vocabulary;
+
+	@Param({"false", "true"})
+	boolean weightedSeed;
+
+	private MarkovChain<Character, Word, Sentence> markovChain;
+	private FrozenMarkovChain<Character, Word, Sentence> frozen;
+	private PrimitiveMarkovChain<Character, Word, Sentence> primitive;
+	private List<Word> states;
+	private Random random;
+	private int next = 0;
+
+	@Setup
+	public void train() {
+		markovChain = Corpus.train(order, Corpus.create(5000, vocabulary, 1L));
+		markovChain.setPickInitialSeed(true);
+		markovChain.setWeightedSeed(weightedSeed);
+		markovChain.seal();
+		frozen = markovChain.freeze();
+		primitive = PrimitiveMarkovChain.from(markovChain, Word::new);
+		primitive.setPickInitialSeed(true);
+		primitive.setWeightedSeed(weightedSeed);
+		primitive.seal();
+		states = new ArrayList<>(markovChain.keySet());
+		random = new SplitMixRandom(1L);
+		markovChain.pickSeed(random);		// builds the seed index
+	}
+
+	private Word nextState() {
+		Word state = states.get(next);
+		next = next + 1 == states.size() ? 0 : next + 1;
+		return state;
+	}
+
+	@Benchmark
+	public Word pickSeed() {
+		return markovChain.pickSeed(random);
+	}
+
+	@Benchmark
+	public Word pickSeedFrozen() {
+		return frozen.pickSeed(random);
+	}
+
+	@Benchmark
+	public Word pickSeedPrimitive() {
+		return primitive.pickSeed(random);
+	}
+
+	@Benchmark
+	public Character sampleNext() {
+		return markovChain.sampleNext(nextState(), random);
+	}
+
+	@Benchmark
+	public Character sampleNextFrozen() {
+		return frozen.sampleNext(nextState(), random);
+	}
+
+	@Benchmark
+	public Character sampleNextPrimitive() {
+		return primitive.sampleNext(nextState(), random);
+	}
+}
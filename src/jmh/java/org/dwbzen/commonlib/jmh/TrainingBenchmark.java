@@ -0,0 +1,85 @@
+package org.dwbzen.commonlib.jmh;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.dwbzen.common.cp.ConcurrentMarkovChain;
+import org.dwbzen.common.cp.MarkovChain;
+import org.dwbzen.common.cp.ParallelMarkovChainCollector;
+import org.dwbzen.common.cp.VariableOrderMarkovChain;
+import org.dwbzen.commonlib.test.CharacterChains;
+import org.dwbzen.commonlib.test.Sentence;
+import org.dwbzen.commonlib.test.Word;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Training a chain of each order from a corpus, for each engine that can be trained.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrainingBenchmark {
+
+	@Param({"1", "2", "3", "4", "5"})
+	int order;
+
+	@Param({"8", "26", "200"})
+	int vocabulary;
+
+	@Param({"5000"})
+	int sentences;
+
+	private List<Sentence> corpus;
+
+	@Setup
+	public void createCorpus() {
+		corpus = Corpus.create(sentences, vocabulary, 1L);
+	}
+
+	@Benchmark
+	public MarkovChain<Character, Word, Sentence> markovChain() {
+		MarkovChain<Character, Word, Sentence> markovChain = Corpus.train(order, corpus);
+		markovChain.seal();
+		return markovChain;
+	}
+
+	@Benchmark
+	public MarkovChain<Character, Word, Sentence> concurrentMarkovChain() {
+		ConcurrentMarkovChain<Character, Word, Sentence> chain = new ConcurrentMarkovChain<>(order);
+		corpus.parallelStream().forEach(sentence -> CharacterChains.collectConcurrently(chain, sentence));
+		return chain.toMarkovChain();
+	}
+
+	@Benchmark
+	public MarkovChain<Character, Word, Sentence> parallelMarkovChain() {
+		ParallelMarkovChainCollector<Character, Word, Sentence> collector = 
+				new ParallelMarkovChainCollector<>(() -> new MarkovChain<>(order), CharacterChains::collect);
+		return collector.collect(corpus);
+	}
+
+	@Benchmark
+	public VariableOrderMarkovChain<Character, Word, Sentence> variableOrderMarkovChain() {
+		VariableOrderMarkovChain<Character, Word, Sentence> chain = new VariableOrderMarkovChain<>(order);
+		for(Sentence sentence : corpus) {
+			for(String text : sentence.get().toString().split("\\s+")) {
+				chain.add(new Word(text));
+			}
+		}
+		chain.seal();
+		return chain;
+	}
+}
@@ -0,0 +1,121 @@
+package org.dwbzen.common.cp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Walker/Vose alias table for constant-time sampling from a discrete distribution.<br>
+ * The table is built from integer weights (occurrence counts) using exact integer arithmetic,
+ * so the sampled distribution is exactly weight[i]/totalWeight up to the resolution of Random.nextDouble().<br>
+ * Instances are immutable and can be shared by any number of threads, each using its own Random.
+ *
+ * <p>See <a href="https://en.wikipedia.org/wiki/Alias_method">Alias method</a> on Wikipedia
+ *
+ * @param <E> the outcome type
+ */
+public class AliasSampler<E> {
+
+	private final List<E> outcomes;
+	private final double[] probability;
+	private final int[] alias;
+	private final long totalWeight;
+
+	/**
+	 * Builds the alias table in O(n).
+	 *
+	 * @param outcomes List of outcomes, one per weight
+	 * @param weights non-negative weights, at least one must be > 0
+	 * @throws IllegalArgumentException if the sizes differ or the weights are all zero
+	 */
+	public AliasSampler(List<E> outcomes, long[] weights) {
+		int n = weights.length;
+		if(outcomes.size() != n) {
+			throw new IllegalArgumentException("outcomes and weights must be the same size");
+		}
+		long total = 0;
+		for(long w : weights) {
+			if(w < 0) {
+				throw new IllegalArgumentException("weights must be non-negative");
+			}
+			total += w;
+		}
+		if(total <= 0) {
+			throw new IllegalArgumentException("at least one weight must be positive");
+		}
+		this.outcomes = Collections.unmodifiableList(new ArrayList<>(outcomes));
+		this.totalWeight = total;
+		probability = new double[n];
+		alias = new int[n];
+		/*
+		 * scaled[i] = weight[i] * n, compared against totalWeight so that
+		 * the partitioning into small and large columns is exact.
+		 */
+		long[] scaled = new long[n];
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int ns = 0, nl = 0;
+		for(int i=0; i<n; i++) {
+			scaled[i] = weights[i] * n;
+			if(scaled[i] < total) {
+				small[ns++] = i;
+			}
+			else {
+				large[nl++] = i;
+			}
+		}
+		while(ns > 0 && nl > 0) {
+			int s = small[--ns];
+			int l = large[--nl];
+			probability[s] = (double)scaled[s] / (double)total;
+			alias[s] = l;
+			scaled[l] -= (total - scaled[s]);
+			if(scaled[l] < total) {
+				small[ns++] = l;
+			}
+			else {
+				large[nl++] = l;
+			}
+		}
+		while(nl > 0) {
+			int l = large[--nl];
+			probability[l] = 1.0;
+			alias[l] = l;
+		}
+		while(ns > 0) {		// only reachable through rounding, which integer weights avoid
+			int s = small[--ns];
+			probability[s] = 1.0;
+			alias[s] = s;
+		}
+	}
+
+	/**
+	 * @param random the source of randomness
+	 * @return the index of the sampled outcome
+	 */
+	public int sampleIndex(Random random) {
+		int column = random.nextInt(probability.length);
+		return random.nextDouble() < probability[column] ? column : alias[column];
+	}
+
+	/**
+	 * @param random the source of randomness
+	 * @return a sampled outcome
+	 */
+	public E sample(Random random) {
+		return outcomes.get(sampleIndex(random));
+	}
+
+	public List<E> getOutcomes() {
+		return outcomes;
+	}
+
+	public long getTotalWeight() {
+		return totalWeight;
+	}
+
+	public int size() {
+		return probability.length;
+	}
+}
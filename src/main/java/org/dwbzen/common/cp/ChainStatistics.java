@@ -0,0 +1,170 @@
+package org.dwbzen.common.cp;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.dwbzen.common.util.IJson;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Entropy and branching statistics of a MarkovChain computed from raw occurrence counts, not the rounded probabilities.<br>
+ * Entropies are in bits. The conditional entropy H(next | state) weights each state entropy by the state's occurrences
+ * and perplexity is 2<sup>H</sup>, the effective number of choices per step.<br>
+ * Created by MarkovChainAnalyzer.getStatistics().
+ *
+ * @param <T> the state class
+ */
+public class ChainStatistics<T extends List<?>> implements IJson {
+
+	@JsonProperty	private int states;
+	@JsonProperty	private long transitions;
+	@JsonProperty	private long totalOccurrences;
+	@JsonProperty	private int deterministicStates;
+	@JsonProperty	private int terminalOnlyStates;
+	@JsonProperty	private double conditionalEntropy;
+	@JsonProperty	private double perplexity;
+	@JsonProperty	private double maxStateEntropy;
+	@JsonProperty	private double averageFanOut;
+	@JsonProperty	private SortedMap<Integer, Integer> fanOutDistribution;
+	@JsonIgnore		private Map<T, Double> stateEntropy;
+
+	ChainStatistics(Accumulator<T> accumulator) {
+		states = accumulator.states;
+		transitions = accumulator.transitions;
+		totalOccurrences = accumulator.totalOccurrences;
+		deterministicStates = accumulator.fanOut.getOrDefault(1, 0);
+		terminalOnlyStates = accumulator.fanOut.getOrDefault(0, 0);
+		conditionalEntropy = totalOccurrences == 0 ? 0 : accumulator.weightedEntropy / totalOccurrences;
+		perplexity = Math.pow(2, conditionalEntropy);
+		maxStateEntropy = accumulator.maxStateEntropy;
+		averageFanOut = states == 0 ? 0 : (double)transitions / states;
+		fanOutDistribution = Collections.unmodifiableSortedMap(accumulator.fanOut);
+		stateEntropy = Collections.unmodifiableMap(accumulator.stateEntropy);
+	}
+
+	/**
+	 * @param counts occurrence counts, zeros are ignored
+	 * @param total the sum of counts
+	 * @return the entropy in bits of the distribution counts/total
+	 */
+	public static double entropy(int[] counts, long total) {
+		if(total <= 0) {
+			return 0;
+		}
+		double sum = 0;
+		for(int count : counts) {
+			if(count > 0) {
+				sum += count * log2(count);
+			}
+		}
+		return Math.max(0, log2(total) - sum / total);
+	}
+
+	static double log2(double x) {
+		return Math.log(x) / Math.log(2);
+	}
+
+	public int getStates() {
+		return states;
+	}
+
+	public long getTransitions() {
+		return transitions;
+	}
+
+	public long getTotalOccurrences() {
+		return totalOccurrences;
+	}
+
+	/**
+	 * @return the number of states with exactly one successor
+	 */
+	public int getDeterministicStates() {
+		return deterministicStates;
+	}
+
+	/**
+	 * @return the number of states with no successors
+	 */
+	public int getTerminalOnlyStates() {
+		return terminalOnlyStates;
+	}
+
+	/**
+	 * @return H(next | state) in bits
+	 */
+	public double getConditionalEntropy() {
+		return conditionalEntropy;
+	}
+
+	public double getPerplexity() {
+		return perplexity;
+	}
+
+	public double getMaxStateEntropy() {
+		return maxStateEntropy;
+	}
+
+	public double getAverageFanOut() {
+		return averageFanOut;
+	}
+
+	/**
+	 * @return number of successors &rarr; number of states having that many
+	 */
+	public SortedMap<Integer, Integer> getFanOutDistribution() {
+		return fanOutDistribution;
+	}
+
+	/**
+	 * @return the entropy in bits of the next K from state, or null if state is not in the chain
+	 */
+	public Double getStateEntropy(T state) {
+		return stateEntropy.get(state);
+	}
+
+	@JsonIgnore
+	public Map<T, Double> getStateEntropies() {
+		return stateEntropy;
+	}
+
+	/**
+	 * Mutable partial result of one parallel pass, combined associatively.
+	 */
+	static class Accumulator<T> {
+		int states;
+		long transitions;
+		long totalOccurrences;
+		double weightedEntropy;
+		double maxStateEntropy;
+		TreeMap<Integer, Integer> fanOut = new TreeMap<>();
+		Map<T, Double> stateEntropy = new HashMap<>();
+
+		void add(T state, int[] counts, long total) {
+			double entropy = entropy(counts, total);
+			states++;
+			transitions += counts.length;
+			totalOccurrences += total;
+			weightedEntropy += total * entropy;
+			maxStateEntropy = Math.max(maxStateEntropy, entropy);
+			fanOut.merge(counts.length, 1, Integer::sum);
+			stateEntropy.put(state, entropy);
+		}
+
+		void combine(Accumulator<T> other) {
+			states += other.states;
+			transitions += other.transitions;
+			totalOccurrences += other.totalOccurrences;
+			weightedEntropy += other.weightedEntropy;
+			maxStateEntropy = Math.max(maxStateEntropy, other.maxStateEntropy);
+			other.fanOut.forEach((k, v) -> fanOut.merge(k, v, Integer::sum));
+			stateEntropy.putAll(other.stateEntropy);
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package org.dwbzen.common.cp;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Training and generation counters of a CollectorStatsMap, enabled with setMetricsEnabled(true).<br>
+ * Counters are LongAdders and latencies go to LatencyHistograms, so any number of threads can record without locks.
+ * When metrics are disabled the map has no CollectorMetrics and the hot paths only test a null field.
+ */
+public class CollectorMetrics {
+
+	final LongAdder occurrencesAdded = new LongAdder();
+	final LongAdder statesCreated = new LongAdder();
+	final LongAdder statesRemoved = new LongAdder();
+	final LongAdder seedsPicked = new LongAdder();
+	final LongAdder initialSeedFallbacks = new LongAdder();
+	final LongAdder samples = new LongAdder();
+	final LongAdder sampleMisses = new LongAdder();
+	final LatencyHistogram pickSeedLatency = new LatencyHistogram();
+	final LatencyHistogram sampleLatency = new LatencyHistogram();
+	private final long createdMillis = System.currentTimeMillis();
+
+	/**
+	 * @return occurrences added to the CollectorStats of the map, by addOccurrence or merge
+	 */
+	public long getOccurrencesAdded() {
+		return occurrencesAdded.sum();
+	}
+
+	public long getStatesCreated() {
+		return statesCreated.sum();
+	}
+
+	public long getStatesRemoved() {
+		return statesRemoved.sum();
+	}
+
+	public long getSeedsPicked() {
+		return seedsPicked.sum();
+	}
+
+	/**
+	 * @return seeds picked from all states because pickInitialSeed was set but there were no initial states
+	 */
+	public long getInitialSeedFallbacks() {
+		return initialSeedFallbacks.sum();
+	}
+
+	public long getSamples() {
+		return samples.sum();
+	}
+
+	/**
+	 * @return sampleNext calls that returned null, for an unknown state or one without occurrences
+	 */
+	public long getSampleMisses() {
+		return sampleMisses.sum();
+	}
+
+	public LatencyHistogram getPickSeedLatency() {
+		return pickSeedLatency;
+	}
+
+	public LatencyHistogram getSampleLatency() {
+		return sampleLatency;
+	}
+
+	public long getCreatedMillis() {
+		return createdMillis;
+	}
+
+	public void reset() {
+		occurrencesAdded.reset();
+		statesCreated.reset();
+		statesRemoved.reset();
+		seedsPicked.reset();
+		initialSeedFallbacks.reset();
+		samples.reset();
+		sampleMisses.reset();
+		pickSeedLatency.reset();
+		sampleLatency.reset();
+	}
+}
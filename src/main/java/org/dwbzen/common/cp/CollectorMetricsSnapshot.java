@@ -0,0 +1,175 @@
+package org.dwbzen.common.cp;
+
+import java.util.Collection;
+
+import org.dwbzen.common.util.IJson;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The counters of a CollectorMetrics and the shape of its CollectorStatsMap at one point in time, exportable as JSON.<br>
+ * The estimated heap uses the per-entry sizes of CompactionReport.
+ */
+public class CollectorMetricsSnapshot implements IJson {
+
+	@JsonProperty	private String name;
+	@JsonProperty	private long timestamp;
+	@JsonProperty	private long occurrencesAdded;
+	@JsonProperty	private long statesCreated;
+	@JsonProperty	private long statesRemoved;
+	@JsonProperty	private long seedsPicked;
+	@JsonProperty	private long initialSeedFallbacks;
+	@JsonProperty	private long samples;
+	@JsonProperty	private long sampleMisses;
+	@JsonProperty	private Latency pickSeedLatency;
+	@JsonProperty	private Latency sampleLatency;
+	@JsonProperty	private int states;
+	@JsonProperty	private long transitions;
+	@JsonProperty	private long supplierCounts;
+	@JsonProperty	private long totalOccurrences;
+	@JsonProperty	private double averageFanOut;
+	@JsonProperty	private int maxFanOut;
+	@JsonProperty	private long estimatedBytes;
+
+	CollectorMetricsSnapshot(String name, CollectorMetrics metrics, Collection<? extends CollectorStats<?,?,?>> values) {
+		this.name = name;
+		timestamp = System.currentTimeMillis();
+		occurrencesAdded = metrics.getOccurrencesAdded();
+		statesCreated = metrics.getStatesCreated();
+		statesRemoved = metrics.getStatesRemoved();
+		seedsPicked = metrics.getSeedsPicked();
+		initialSeedFallbacks = metrics.getInitialSeedFallbacks();
+		samples = metrics.getSamples();
+		sampleMisses = metrics.getSampleMisses();
+		pickSeedLatency = new Latency(metrics.getPickSeedLatency());
+		sampleLatency = new Latency(metrics.getSampleLatency());
+		for(CollectorStats<?,?,?> cstats : values) {
+			int fanOut = cstats.size();
+			states++;
+			transitions += fanOut;
+			maxFanOut = Math.max(maxFanOut, fanOut);
+			supplierCounts += cstats.getSupplierCountsSize();
+			totalOccurrences += cstats.getTotalOccurrance();
+		}
+		averageFanOut = states == 0 ? 0 : (double)transitions / states;
+		estimatedBytes = states * CompactionReport.STATE_BYTES + transitions * CompactionReport.TRANSITION_BYTES
+				+ supplierCounts * CompactionReport.SUPPLIER_COUNT_BYTES;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public long getOccurrencesAdded() {
+		return occurrencesAdded;
+	}
+
+	public long getStatesCreated() {
+		return statesCreated;
+	}
+
+	public long getStatesRemoved() {
+		return statesRemoved;
+	}
+
+	public long getSeedsPicked() {
+		return seedsPicked;
+	}
+
+	public long getInitialSeedFallbacks() {
+		return initialSeedFallbacks;
+	}
+
+	public long getSamples() {
+		return samples;
+	}
+
+	public long getSampleMisses() {
+		return sampleMisses;
+	}
+
+	public Latency getPickSeedLatency() {
+		return pickSeedLatency;
+	}
+
+	public Latency getSampleLatency() {
+		return sampleLatency;
+	}
+
+	public int getStates() {
+		return states;
+	}
+
+	public long getTransitions() {
+		return transitions;
+	}
+
+	public long getSupplierCounts() {
+		return supplierCounts;
+	}
+
+	public long getTotalOccurrences() {
+		return totalOccurrences;
+	}
+
+	public double getAverageFanOut() {
+		return averageFanOut;
+	}
+
+	public int getMaxFanOut() {
+		return maxFanOut;
+	}
+
+	public long getEstimatedBytes() {
+		return estimatedBytes;
+	}
+
+	/**
+	 * A summary of a LatencyHistogram in nanoseconds.
+	 */
+	public static class Latency {
+		@JsonProperty	private long count;
+		@JsonProperty	private double mean;
+		@JsonProperty	private long p50;
+		@JsonProperty	private long p90;
+		@JsonProperty	private long p99;
+		@JsonProperty	private long max;
+
+		Latency(LatencyHistogram histogram) {
+			count = histogram.getCount();
+			mean = histogram.getMeanNanos();
+			p50 = histogram.getPercentileNanos(50);
+			p90 = histogram.getPercentileNanos(90);
+			p99 = histogram.getPercentileNanos(99);
+			max = histogram.getMaxNanos();
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public double getMean() {
+			return mean;
+		}
+
+		public long getP50() {
+			return p50;
+		}
+
+		public long getP90() {
+			return p90;
+		}
+
+		public long getP99() {
+			return p99;
+		}
+
+		public long getMax() {
+			return max;
+		}
+	}
+}
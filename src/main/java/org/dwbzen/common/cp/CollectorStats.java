@@ -1,12 +1,15 @@
 package org.dwbzen.common.cp;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -14,9 +17,11 @@ import org.dwbzen.common.math.OccurrenceProbability;
 import org.dwbzen.common.math.OrderedPair;
 import org.dwbzen.common.util.IJson;
 import org.dwbzen.common.util.INameable;
+import org.dwbzen.common.util.RandomSource;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -28,6 +33,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * @author don_Bacon
  *
  */
+@JsonPropertyOrder({"subset", "totalOccurrance", "occurrenceProbabilityMap", "terminal", "initial", "length", "supplierCounts"})
 public class CollectorStats<K extends Comparable<K>, T extends List<K> & Comparable<T>, R extends Supplier<T> & INameable> 
 		implements IJson, Comparable<CollectorStats<K, T, R>> {
 
@@ -42,17 +48,36 @@ public class CollectorStats<K extends Comparable<K>, T extends List<K> & Compara
 	@JsonIgnore		private boolean showSupplierCounts = true;
 	@JsonIgnore		R noSupplier = null;
 	/*
-	 * Count for each K + R (Supplier) (by name)
+	 * Count for each K + R (Supplier), by interned Supplier name id
 	 */
-	@JsonProperty("supplierCounts")   private Map<OrderedPair<K,String>, Integer> supplierCounts = new TreeMap<>();
+	@JsonIgnore		private Map<K, SupplierCounts> supplierCounts = new TreeMap<>();
 	@JsonProperty	private int totalOccurrance;		// total #times subset occurs
 	@JsonProperty	private Map<K, OccurrenceProbability> occurrenceProbabilityMap = new TreeMap<K, OccurrenceProbability>();
 	
 	public static final int LOW = 0;
 	public static final int HIGH = 1;
+	static final String NO_SUPPLIER = "Unnamed";		// Supplier name counted when the Supplier is null
 	
 	@JsonProperty	private boolean terminal = false;	// true if this is a terminal state
 	@JsonProperty	private boolean initial = false;	// true if this is an initial state
+	/*
+	 * When lazyStatistics is true (the default) addOccurrence only updates counts and the
+	 * probabilities and ranges are recomputed on the next read, or by an explicit seal().
+	 */
+	@JsonIgnore		private boolean lazyStatistics = true;
+	@JsonIgnore		private boolean sealed = true;
+	/*
+	 * Alias table for constant-time sampling of the next K, built on demand and discarded on addOccurrence
+	 */
+	@JsonIgnore		private AliasSampler<K> aliasSampler = null;
+	/*
+	 * The CollectorStatsMap this was last put in and its key there, notified when totalOccurrance
+	 * or the initial or terminal flag changes so the map can keep its count and seed indexes current.
+	 */
+	@JsonIgnore		private transient CollectorStatsMap<K,T,R> owner = null;
+	@JsonIgnore		private transient T ownerKey = null;
+	// ids of the supplierCounts, the owner's once this is put in a map, created on first use before that
+	@JsonIgnore		private transient SupplierNames supplierNames = null;
 	public static boolean trace = false;
 	
 	public CollectorStats() {
@@ -88,7 +113,10 @@ public class CollectorStats<K extends Comparable<K>, T extends List<K> & Compara
 	}
 
 	public void setTerminal(boolean terminal) {
-		this.terminal = terminal;
+		if(this.terminal != terminal) {
+			this.terminal = terminal;
+			flagsChanged();
+		}
 	}
 
 	public boolean isInitial() {
@@ -96,31 +124,183 @@ public class CollectorStats<K extends Comparable<K>, T extends List<K> & Compara
 	}
 
 	public void setInitial(boolean initial) {
-		this.initial = initial;
+		if(this.initial != initial) {
+			this.initial = initial;
+			flagsChanged();
+		}
 	}
 
+	/**
+	 * Gets the occurrence probabilities, recomputing them first if occurrences were added since the last read.
+	 * @return Map<K, OccurrenceProbability>
+	 */
+	@JsonProperty("occurrenceProbabilityMap")
 	public Map<K, OccurrenceProbability> getOccurrenceProbabilityMap() {
+		seal();
 		return occurrenceProbabilityMap;
 	}
 	
+	public boolean isLazyStatistics() {
+		return lazyStatistics;
+	}
+
+	/**
+	 * If true, addOccurrence updates counts only and probabilities are materialized on first read.<br>
+	 * If false, probabilities and ranges are recomputed on every occurrence.
+	 * @param lazyStatistics
+	 */
+	public void setLazyStatistics(boolean lazyStatistics) {
+		this.lazyStatistics = lazyStatistics;
+		if(!lazyStatistics) {
+			seal();
+		}
+	}
+	
+	/**
+	 * @return true if the probabilities and ranges reflect all occurrences added so far
+	 */
+	public boolean isSealed() {
+		return sealed;
+	}
+
+	/**
+	 * Recomputes the probabilities and ranges if any occurrences were added since the last time.
+	 * This is done automatically when the OccurrenceProbability Map is read.
+	 */
+	public void seal() {
+		if(!sealed) {
+			recomputeProbabilitie();
+			sealed = true;
+		}
+	}
+	
 	public void addOccurrence(K toccur, R theSupplier) {
-		int supplierCount = 1;
-		String name = theSupplier!= null ? theSupplier.getName() : "Unnamed";
-		OrderedPair<K, String> supplierCollectable = new OrderedPair<>(toccur, name);
+		String name = theSupplier!= null ? theSupplier.getName() : NO_SUPPLIER;
 		if(trace) { System.out.println("  " + toccur + ": " + name); }
-		if(supplierCounts.containsKey(supplierCollectable)) {
-			supplierCount = supplierCounts.get(supplierCollectable) + 1;
-		}
-		if(occurrenceProbabilityMap.containsKey(toccur)) {
-			OccurrenceProbability op = occurrenceProbabilityMap.get(toccur);
-			op.setOccurrence(op.getOccurrence() + 1);
+		OccurrenceProbability op = occurrenceProbabilityMap.get(toccur);
+		if(op != null) {
+			op.increment();
 		}
 		else {
 			occurrenceProbabilityMap.put(toccur, new OccurrenceProbability(1, 1.0));
 			suppliers.put(name, theSupplier);
 		}
-		supplierCounts.put(supplierCollectable, supplierCount);
-		recomputeProbabilitie();
+		supplierCountsOf(toccur).add(supplierNames().intern(name), 1);
+		totalOccurrance++;
+		totalChanged(totalOccurrance - 1);
+		sealed = false;
+		aliasSampler = null;
+		if(!lazyStatistics) {
+			seal();
+		}
+	}
+	
+	/**
+	 * Adds the occurrences, supplier counts and suppliers of another CollectorStats for the same subset to this one.<br>
+	 * The initial and terminal flags are or'd. The merge is associative and commutative
+	 * so partial CollectorStats collected independently can be combined in any order.
+	 * 
+	 * @param other CollectorStats to add, unchanged
+	 * @return this CollectorStats
+	 */
+	public CollectorStats<K, T, R> merge(CollectorStats<K, T, R> other) {
+		if(subset == null && other.subset != null) {
+			setSubset(other.subset);
+		}
+		int previousTotal = totalOccurrance;
+		for(Map.Entry<K, OccurrenceProbability> entry : other.occurrenceProbabilityMap.entrySet()) {
+			int occurrence = entry.getValue().getOccurrence();
+			OccurrenceProbability op = occurrenceProbabilityMap.get(entry.getKey());
+			if(op != null) {
+				op.setOccurrence(op.getOccurrence() + occurrence);
+			}
+			else {
+				occurrenceProbabilityMap.put(entry.getKey(), new OccurrenceProbability(occurrence, 1.0));
+			}
+			totalOccurrance += occurrence;
+		}
+		for(Map.Entry<K, SupplierCounts> entry : other.supplierCounts.entrySet()) {
+			supplierCountsOf(entry.getKey()).addAll(entry.getValue(), other.supplierNames, supplierNames());
+		}
+		for(Map.Entry<String, R> entry : other.suppliers.entrySet()) {
+			suppliers.putIfAbsent(entry.getKey(), entry.getValue());
+		}
+		initial |= other.initial;
+		terminal |= other.terminal;
+		totalChanged(previousTotal);
+		sealed = false;
+		aliasSampler = null;
+		if(!lazyStatistics) {
+			seal();
+		}
+		return this;
+	}
+	
+	/**
+	 * Removes the transitions below an occurrence or probability threshold and, if maxSuccessors > 0,
+	 * all but the maxSuccessors most frequent transitions (ties kept in K order).
+	 * Supplier counts of removed transitions are removed too, the remaining probabilities are renormalized.
+	 * 
+	 * @param minOccurrence transitions with fewer occurrences are removed
+	 * @param minProbability transitions with a lower probability, before pruning, are removed
+	 * @param maxSuccessors the maximum number of transitions kept, 0 for no limit
+	 * @return the number of transitions removed
+	 */
+	public int prune(int minOccurrence, double minProbability, int maxSuccessors) {
+		seal();
+		Set<K> removed = new TreeSet<>();
+		for(Map.Entry<K, OccurrenceProbability> entry : occurrenceProbabilityMap.entrySet()) {
+			OccurrenceProbability op = entry.getValue();
+			if(op.getOccurrence() < minOccurrence || op.getProbability() < minProbability) {
+				removed.add(entry.getKey());
+			}
+		}
+		int remaining = occurrenceProbabilityMap.size() - removed.size();
+		if(maxSuccessors > 0 && remaining > maxSuccessors) {
+			occurrenceProbabilityMap.entrySet().stream()
+				.filter(entry -> !removed.contains(entry.getKey()))
+				.sorted((e1, e2) -> Integer.compare(e2.getValue().getOccurrence(), e1.getValue().getOccurrence()))
+				.skip(maxSuccessors)
+				.map(Map.Entry::getKey)
+				.collect(Collectors.toList())
+				.forEach(removed::add);
+		}
+		return removeTransitions(removed);
+	}
+	
+	/**
+	 * Removes the transitions to any of the given states. The next state of a transition to K
+	 * is this subset without its first element followed by K. The remaining probabilities are renormalized.
+	 * 
+	 * @param states the states, compared as Lists
+	 * @return the number of transitions removed
+	 */
+	public int removeTransitionsTo(Set<? extends List<K>> states) {
+		if(states.isEmpty() || occurrenceProbabilityMap.isEmpty()) {
+			return 0;
+		}
+		List<K> next = new ArrayList<>(subset.subList(1, subset.size()));
+		next.add(null);
+		Set<K> removed = new TreeSet<>();
+		for(K k : occurrenceProbabilityMap.keySet()) {
+			next.set(next.size() - 1, k);
+			if(states.contains(next)) {
+				removed.add(k);
+			}
+		}
+		return removeTransitions(removed);
+	}
+	
+	private int removeTransitions(Set<K> removed) {
+		if(!removed.isEmpty()) {
+			seal();
+			occurrenceProbabilityMap.keySet().removeAll(removed);
+			supplierCounts.keySet().removeAll(removed);
+			sealed = false;
+			aliasSampler = null;
+			seal();
+		}
+		return removed.size();
 	}
 	
 	/**
@@ -141,15 +321,15 @@ public class CollectorStats<K extends Comparable<K>, T extends List<K> & Compara
 	 * 			  2			10,11   etc.
 	 */
 	private void recomputeProbabilitie() {
+		int previousTotal = totalOccurrance;
 		totalOccurrance = 0;
 		Collection<OccurrenceProbability> opcollection = occurrenceProbabilityMap.values();
 		for(OccurrenceProbability op : opcollection) {
 			totalOccurrance+= op.getOccurrence();
 		}
-		Set<K> keyset = occurrenceProbabilityMap.keySet(); 
+		totalChanged(previousTotal);
 		int[] prevRange = null;
-		for(K key : keyset) {
-			OccurrenceProbability op = occurrenceProbabilityMap.get(key);
+		for(OccurrenceProbability op : opcollection) {
 			int occur = op.getOccurrence();
 			if(totalOccurrance > 0) {
 				op.setProbability(((double)op.getOccurrence()) / ((double)totalOccurrance));
@@ -166,6 +346,46 @@ public class CollectorStats<K extends Comparable<K>, T extends List<K> & Compara
 		}
 	}
 	
+	/**
+	 * Gets the alias table for this state, building it if necessary.
+	 * @return AliasSampler<K> or null if there are no occurrences
+	 */
+	@JsonIgnore
+	public AliasSampler<K> getAliasSampler() {
+		AliasSampler<K> sampler = aliasSampler;
+		if(sampler == null && totalOccurrance > 0) {
+			List<K> keys = new ArrayList<>(occurrenceProbabilityMap.size());
+			long[] weights = new long[occurrenceProbabilityMap.size()];
+			int i = 0;
+			for(Map.Entry<K, OccurrenceProbability> entry : occurrenceProbabilityMap.entrySet()) {
+				keys.add(entry.getKey());
+				weights[i++] = entry.getValue().getOccurrence();
+			}
+			sampler = new AliasSampler<>(keys, weights);
+			aliasSampler = sampler;
+		}
+		return sampler;
+	}
+	
+	/**
+	 * Selects the next K in O(1) according to the occurrence probabilities.
+	 * @param random the source of randomness
+	 * @return K or null if there are no occurrences
+	 */
+	public K sampleNext(Random random) {
+		AliasSampler<K> sampler = getAliasSampler();
+		return sampler == null ? null : sampler.sample(random);
+	}
+	
+	/**
+	 * Samples the next K with the RandomSource of the owning CollectorStatsMap, or the default if there is none.
+	 * @return K or null if there are no occurrences
+	 */
+	public K sampleNext() {
+		CollectorStatsMap<K,T,R> map = owner;
+		return sampleNext((map == null ? RandomSource.getDefault() : map.getRandomSource()).current());
+	}
+	
 	public int size() {
 		return occurrenceProbabilityMap.size();
 	}
@@ -175,20 +395,167 @@ public class CollectorStats<K extends Comparable<K>, T extends List<K> & Compara
 	}
 
 	public void setTotalOccurrance(int totalOccurrance) {
+		int previousTotal = this.totalOccurrance;
 		this.totalOccurrance = totalOccurrance;
+		totalChanged(previousTotal);
+	}
+	
+	/**
+	 * Sets the CollectorStatsMap to notify of changes to totalOccurrance, null to detach.
+	 */
+	void setOwner(CollectorStatsMap<K,T,R> map, T key) {
+		if(map != null) {
+			useSupplierNames(map.getSupplierNames());
+		}
+		owner = map;
+		ownerKey = key;
+	}
+	
+	/*
+	 * Switches to the SupplierNames of a new owner, re-keying the supplier counts if they used other ids
+	 */
+	private void useSupplierNames(SupplierNames names) {
+		SupplierNames current = supplierNames;
+		if(current != null && current != names) {
+			for(Map.Entry<K, SupplierCounts> entry : supplierCounts.entrySet()) {
+				SupplierCounts counts = new SupplierCounts();
+				counts.addAll(entry.getValue(), current, names);
+				entry.setValue(counts);
+			}
+		}
+		supplierNames = names;
+	}
+	
+	private SupplierNames supplierNames() {
+		SupplierNames names = supplierNames;
+		if(names == null) {
+			names = new SupplierNames();
+			supplierNames = names;
+		}
+		return names;
+	}
+	
+	CollectorStatsMap<K,T,R> getOwner() {
+		return owner;
+	}
+	
+	private void flagsChanged() {
+		CollectorStatsMap<K,T,R> map = owner;
+		if(map != null) {
+			map.stateChanged();
+		}
+	}
+	
+	private void totalChanged(int previousTotal) {
+		CollectorStatsMap<K,T,R> map = owner;
+		if(map != null && previousTotal != totalOccurrance) {
+			map.totalOccurranceChanged(ownerKey, previousTotal, totalOccurrance);
+		}
 	}
 
 	public Collection<R> getSuppliers() {
 		return suppliers.values();
 	}
 	
+	/**
+	 * @return the Supplier Map keyed by Supplier name
+	 */
+	Map<String, R> getSupplierMap() {
+		return suppliers;
+	}
+	
+	/**
+	 * @return the supplier counts keyed by next K, ids are those of the owner's SupplierNames
+	 */
+	Map<K, SupplierCounts> getSupplierCountsMap() {
+		return supplierCounts;
+	}
+	
+	/*
+	 * restore methods are used by snapshot readers to rebuild a CollectorStats from raw counts.
+	 * Probabilities are recomputed when the CollectorStats is sealed.
+	 */
+	void restoreOccurrence(K key, int occurrence) {
+		occurrenceProbabilityMap.put(key, new OccurrenceProbability(occurrence, 1.0));
+		totalOccurrance += occurrence;
+		totalChanged(totalOccurrance - occurrence);
+		sealed = false;
+		aliasSampler = null;
+	}
+	
+	void restoreSupplierCount(K key, String supplierName, int count) {
+		supplierCountsOf(key).set(supplierNames().intern(supplierName), count);
+	}
+	
+	void restoreSupplier(String supplierName, R supplier) {
+		suppliers.put(supplierName, supplier);
+	}
+	
+	private SupplierCounts supplierCountsOf(K key) {
+		SupplierCounts counts = supplierCounts.get(key);
+		if(counts == null) {
+			counts = new SupplierCounts();
+			supplierCounts.put(key, counts);
+		}
+		return counts;
+	}
+	
+	/**
+	 * Creates a Map of every supplier count. Use getSupplierCounts(K) or getSupplierCount(K, R) for one K.
+	 * @return new Map of (K, Supplier name) to count
+	 */
+	@JsonProperty("supplierCounts")
 	public Map<OrderedPair<K,String>, Integer> getSupplierCounts() {
-		return this.supplierCounts;
+		Map<OrderedPair<K,String>, Integer> scounts = new TreeMap<>();
+		for(Map.Entry<K, SupplierCounts> entry : supplierCounts.entrySet()) {
+			SupplierCounts counts = entry.getValue();
+			for(int slot=0; slot<counts.capacity(); slot++) {
+				int id = counts.idAt(slot);
+				if(!SupplierCounts.isEmpty(id)) {
+					scounts.put(new OrderedPair<>(entry.getKey(), supplierNames.nameOf(id)), counts.countAt(slot));
+				}
+			}
+		}
+		return scounts;
+	}
+	
+	/**
+	 * @param key a next K
+	 * @return new Map of Supplier name to count for the K, empty if it never occurred
+	 */
+	public Map<String, Integer> getSupplierCounts(K key) {
+		Map<String, Integer> scounts = new TreeMap<>();
+		SupplierCounts counts = supplierCounts.get(key);
+		if(counts != null) {
+			for(int slot=0; slot<counts.capacity(); slot++) {
+				int id = counts.idAt(slot);
+				if(!SupplierCounts.isEmpty(id)) {
+					scounts.put(supplierNames.nameOf(id), counts.countAt(slot));
+				}
+			}
+		}
+		return scounts;
+	}
+	
+	/**
+	 * @return the number of (K, Supplier) counts
+	 */
+	@JsonIgnore
+	public int getSupplierCountsSize() {
+		int size = 0;
+		for(SupplierCounts counts : supplierCounts.values()) {
+			size += counts.size();
+		}
+		return size;
 	}
 	
 	public int getSupplierCount(K collectable, R supplier) {
-		OrderedPair<K, String> key = new OrderedPair<>(collectable, supplier.getName());
-		return (supplierCounts.containsKey(key)) ? supplierCounts.get(key) : 0;
+		SupplierCounts counts = supplierCounts.get(collectable);
+		if(counts == null) {
+			return 0;		// no supplierNames either if nothing was counted
+		}
+		int id = supplierNames.idOf(supplier != null ? supplier.getName() : NO_SUPPLIER);
+		return id == SupplierNames.NOT_FOUND ? 0 : counts.get(id);
 	}
 
 	public boolean isShowSupplierCounts() {
@@ -201,6 +568,7 @@ public class CollectorStats<K extends Comparable<K>, T extends List<K> & Compara
 
 	public String toString(boolean totalsOnly) {
 		StringBuilder sb = new StringBuilder();
+		seal();
 		for(K key : occurrenceProbabilityMap.keySet()) {
 			OccurrenceProbability op = occurrenceProbabilityMap.get(key);
 			sb.append("   '" + key.toString() + "'\t" + op.getOccurrence());
@@ -219,17 +587,13 @@ public class CollectorStats<K extends Comparable<K>, T extends List<K> & Compara
 		if(sb == null) {
 			sb = new StringBuilder();
 		}
-		Map<OrderedPair<K,String>, Integer> scounts = getSupplierCounts();
 		int i=0;
-		for(OrderedPair<K,String> suppop : scounts.keySet()) {
-			K x = suppop.getX();
-			if(x.compareTo(key)==0) {
-				if(i == 0) {
-					sb.append("\t{");
-				}
-				i++;
-				sb.append(suppop.getY() + ":" + scounts.get(suppop) + ",");
+		for(Map.Entry<String, Integer> entry : getSupplierCounts(key).entrySet()) {
+			if(i == 0) {
+				sb.append("\t{");
 			}
+			i++;
+			sb.append(entry.getKey() + ":" + entry.getValue() + ",");
 		}
 		if(i > 0) {
 			sb.deleteCharAt(sb.length()-1);
@@ -270,7 +634,7 @@ public class CollectorStats<K extends Comparable<K>, T extends List<K> & Compara
 	}
 	
 	public LinkedHashMap<K, OccurrenceProbability> sortByValue() {
-		return (LinkedHashMap<K, OccurrenceProbability>) this.occurrenceProbabilityMap.entrySet().stream()
+		return (LinkedHashMap<K, OccurrenceProbability>) getOccurrenceProbabilityMap().entrySet().stream()
 			.sorted((e1, e2) -> e1.getValue().compareTo(e2.getValue()))
 			.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (e1, e2) -> e1, LinkedHashMap::new));
 	}
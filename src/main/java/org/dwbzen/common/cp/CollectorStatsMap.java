@@ -1,16 +1,23 @@
 package org.dwbzen.common.cp;
 
 import java.util.ArrayList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.TreeSet;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -20,6 +27,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.dwbzen.common.util.INameable;
+import org.dwbzen.common.util.RandomSource;
 
 /**
  * A TreeMap bound to a base class K a class T that implements a List<K>, and class R which supplies T instances.
@@ -40,12 +48,28 @@ public class CollectorStatsMap<K extends Comparable<K>, T extends List<K> & Comp
 	private static final long serialVersionUID = 4801227327750662977L;
 	static ObjectMapper objectMapper = new ObjectMapper();
 	
-	@JsonIgnore private Map<T, Integer> summaryMap = null;
-	@JsonIgnore private Map<Integer, List<T>> invertedSummaryMap = null;
+	/*
+	 * States by total occurrence, highest first, each count's states in natural order.
+	 * Built on first use then maintained on every put, remove and change of a CollectorStats total.
+	 */
+	@JsonIgnore private transient TreeMap<Integer, TreeSet<T>> countIndex = null;
+	@JsonIgnore private transient Map<T, Integer> summaryMap = null;
 	@JsonIgnore protected boolean trace = false;
 	@JsonIgnore boolean pickInitialSeed = false;
+	@JsonIgnore boolean weightedSeed = false;
+	/*
+	 * Indexed keys and initial/terminal keys for O(1) seed selection. Built on demand and discarded
+	 * when keys are added or removed or a CollectorStats in the map changes its total or flags.
+	 */
+	@JsonIgnore private transient SeedIndex<K,T,R> seedIndex = null;
 	// optional bespoke class to pick seed
 	@JsonIgnore Optional<ISeedPicker<K,T,R>> seedPicker = Optional.empty();	
+	// null uses RandomSource.getDefault() at the time of the call
+	@JsonIgnore private transient RandomSource randomSource = null;
+	// interned Supplier names of the supplier counts of every CollectorStats in this map
+	@JsonIgnore private transient SupplierNames supplierNames = new SupplierNames();
+	// null unless metrics are enabled, so the hot paths only test a field
+	@JsonIgnore private transient volatile CollectorMetrics metrics = null;
 
 	protected static final Logger log = LogManager.getLogger(CollectorStatsMap.class);
 
@@ -73,41 +97,431 @@ public class CollectorStatsMap<K extends Comparable<K>, T extends List<K> & Comp
 		this.pickInitialSeed = pickInitialSeed;
 	}
 
+	public boolean isWeightedSeed() {
+		return weightedSeed;
+	}
+
+	/**
+	 * If true, seeds are selected with probability proportional to their total occurrences
+	 * instead of uniformly.
+	 * @param weightedSeed
+	 */
+	public void setWeightedSeed(boolean weightedSeed) {
+		this.weightedSeed = weightedSeed;
+	}
+
 	/**
 	 * @return T seed
 	 */
 	public T pickSeed() {
+		return pickSeed(getRandomSource().current());
+	}
+	
+	/**
+	 * Selects a seed in O(1), uniformly or weighted by occurrence (isWeightedSeed()),<br>
+	 * restricted to initial states if isPickInitialSeed() and there is at least one initial state.
+	 * @param random the source of randomness
+	 * @return T seed or null if this map is empty
+	 */
+	public T pickSeed(Random random) {
+		CollectorMetrics myMetrics = metrics;
+		if(myMetrics == null) {
+			return selectSeed(random, null);
+		}
+		long start = System.nanoTime();
+		T seed = selectSeed(random, myMetrics);
+		myMetrics.pickSeedLatency.record(System.nanoTime() - start);
+		myMetrics.seedsPicked.increment();
+		return seed;
+	}
+	
+	private T selectSeed(Random random, CollectorMetrics myMetrics) {
 		T seed = null;
-		CollectorStats<K,T,R> cstats = null;
 		if(seedPicker.isPresent()) {
 			ISeedPicker<K,T,R> mySeedPicker = seedPicker.get();
 			return mySeedPicker.pickSeed();
 		}
-		while(true) {
-			seed = pickCandidateSeed();
-			cstats = get(seed);
-			if(!pickInitialSeed || (pickInitialSeed && cstats.isInitial())) {
-				break;
+		if(isEmpty()) {
+			return null;
+		}
+		if(pickInitialSeed && getSeedIndex().hasInitial()) {
+			seed = getSeedIndex().pickInitial(random, weightedSeed);
+		}
+		else {
+			if(pickInitialSeed && myMetrics != null) {
+				myMetrics.initialSeedFallbacks.increment();
 			}
+			seed = pickCandidateSeed(random);
 		}
 		logMessage("picked seed: '" + seed + "'");
 		return seed;
 	}
 	
+	/**
+	 * Selects the next K following a given state in O(1) using the state's alias table.
+	 * @param state the current T state
+	 * @param random the source of randomness
+	 * @return K or null if the state is not in this map or has no occurrences
+	 */
+	public K sampleNext(T state, Random random) {
+		CollectorMetrics myMetrics = metrics;
+		if(myMetrics == null) {
+			CollectorStats<K,T,R> cstats = get(state);
+			return cstats == null ? null : cstats.sampleNext(random);
+		}
+		long start = System.nanoTime();
+		CollectorStats<K,T,R> cstats = get(state);
+		K next = cstats == null ? null : cstats.sampleNext(random);
+		myMetrics.sampleLatency.record(System.nanoTime() - start);
+		myMetrics.samples.increment();
+		if(next == null) {
+			myMetrics.sampleMisses.increment();
+		}
+		return next;
+	}
+	
+	public K sampleNext(T state) {
+		return sampleNext(state, getRandomSource().current());
+	}
+	
+	/**
+	 * Recomputes probabilities and builds the sampling tables of every CollectorStats,
+	 * the seed index with its weighted samplers, and the count index.<br>
+	 * Call this once collection is complete so producers don't pay the cost on first use.
+	 * Until the chain is modified again nothing is built lazily, so a sealed chain can be
+	 * sampled and seeded from many threads.
+	 */
+	public void seal() {
+		for(CollectorStats<K,T,R> cstats : values()) {
+			cstats.seal();
+			cstats.getAliasSampler();
+		}
+		seedIndex = new SeedIndex<>(this);
+		countIndex = null;
+		getCountIndex();
+		getSummaryMap();
+	}
+	
+	/**
+	 * Removes the long tail of rare transitions and states. Transitions are pruned in parallel over the states,
+	 * then states below the state threshold are removed. Probabilities are renormalized and the sampling
+	 * and seed tables rebuilt. It can be run periodically during training, but not while other threads add occurrences.<br>
+	 * Transitions whose next state was removed are removed too, which may take further states below the threshold,
+	 * so the state removal repeats until the remaining states have no transitions to a removed state.
+	 * @param policy the thresholds
+	 * @return CompactionReport of what was removed
+	 */
+	public CompactionReport compact(CompactionPolicy policy) {
+		long start = System.currentTimeMillis();
+		countIndex = null;		// totals change on many threads, rebuilt on next use
+		int[] removed = values().parallelStream().map(cstats -> {
+			int supplierCounts = cstats.getSupplierCountsSize();
+			int transitions = cstats.prune(policy.getMinTransitionOccurrence(), policy.getMinTransitionProbability(), policy.getMaxSuccessors());
+			cstats.getAliasSampler();
+			return new int[] {transitions, supplierCounts - cstats.getSupplierCountsSize()};
+		}).reduce(new int[2], (r1, r2) -> new int[] {r1[0] + r2[0], r1[1] + r2[1]});
+		
+		int statesRemoved = 0;
+		for(List<T> removedStates = removeStates(policy, removed); !removedStates.isEmpty(); removedStates = removeStates(policy, removed)) {
+			statesRemoved += removedStates.size();
+			Set<List<K>> dangling = new HashSet<>();
+			for(T key : removedStates) {
+				dangling.add(new ArrayList<>(key));		// List equality, independent of T
+			}
+			for(CollectorStats<K,T,R> cstats : values()) {
+				int supplierCounts = cstats.getSupplierCountsSize();
+				removed[0] += cstats.removeTransitionsTo(dangling);
+				removed[1] += supplierCounts - cstats.getSupplierCountsSize();
+			}
+		}
+		reindex();
+		CompactionReport report = new CompactionReport(statesRemoved, removed[0], removed[1], System.currentTimeMillis() - start);
+		logMessage("compact: " + report);
+		return report;
+	}
+	
+	/*
+	 * Removes the states below the policy's state threshold, counting their transitions and supplier counts in removed
+	 */
+	private List<T> removeStates(CompactionPolicy policy, int[] removed) {
+		List<T> removedStates = new ArrayList<>();
+		for(Map.Entry<T, CollectorStats<K,T,R>> entry : entrySet()) {
+			CollectorStats<K,T,R> cstats = entry.getValue();
+			boolean keep = cstats.getTotalOccurrance() >= policy.getMinStateOccurrence()
+					|| (policy.isKeepTerminalStates() && cstats.isTerminal() && cstats.getTotalOccurrance() == 0);
+			if(!keep) {
+				removedStates.add(entry.getKey());
+				removed[0] += cstats.size();
+				removed[1] += cstats.getSupplierCountsSize();
+			}
+		}
+		for(T key : removedStates) {
+			remove(key);
+		}
+		return removedStates;
+	}
+	
 	/**
 	 * Selects a random T seed
 	 * @return T seed
 	 */
 	protected T pickCandidateSeed() {
-		Set<T> keys = keySet();
-		ThreadLocalRandom random = ThreadLocalRandom.current();
-		int index = random.nextInt(0, keys.size());
-		T seed = keys.stream().collect(Collectors.toList()).get(index);
-
+		return pickCandidateSeed(getRandomSource().current());
+	}
+	
+	/**
+	 * Selects a random T seed in O(1) from the seed index.
+	 * @param random the source of randomness
+	 * @return T seed
+	 */
+	protected T pickCandidateSeed(Random random) {
+		T seed = getSeedIndex().pick(random, weightedSeed);
 		log.debug("picked candidate seed: '" + seed + "'");
 		return seed;
 	}
 	
+	/**
+	 * @return unmodifiable List of the initial states, in key order
+	 */
+	public List<T> getInitialStates() {
+		return getSeedIndex().getInitialKeys();
+	}
+	
+	/**
+	 * @return unmodifiable List of the terminal states, in key order
+	 */
+	public List<T> getTerminalStates() {
+		return getSeedIndex().getTerminalKeys();
+	}
+	
+	/**
+	 * Discards the seed index so it is rebuilt on next use.<br>
+	 * This is done automatically when keys are added or removed and when a CollectorStats in the map
+	 * changes its occurrences or its initial or terminal flag.
+	 */
+	public void reindex() {
+		seedIndex = null;
+	}
+	
+	protected SeedIndex<K,T,R> getSeedIndex() {
+		SeedIndex<K,T,R> index = seedIndex;
+		if(index == null) {
+			index = new SeedIndex<>(this);
+			seedIndex = index;
+		}
+		return index;
+	}
+	
+	@Override
+	public CollectorStats<K,T,R> put(T key, CollectorStats<K,T,R> value) {
+		CollectorStats<K,T,R> previous = super.put(key, value);
+		CollectorMetrics myMetrics = metrics;
+		if(previous == null && myMetrics != null) {
+			myMetrics.statesCreated.increment();
+		}
+		if(previous == null || previous != value) {
+			seedIndex = null;
+			if(previous != null) {
+				detach(key, previous);
+			}
+			attach(key, value);
+		}
+		return previous;
+	}
+
+	/**
+	 * Same as put() for every entry. Into an empty map from a SortedMap with the same comparator
+	 * the TreeMap bulk build is used and the entries are attached afterwards.
+	 */
+	@Override
+	public void putAll(Map<? extends T, ? extends CollectorStats<K,T,R>> map) {
+		if(isEmpty() && !map.isEmpty() && map instanceof SortedMap && Objects.equals(comparator(), ((SortedMap<?,?>)map).comparator())) {
+			super.putAll(map);		// builds from the sorted entries without calling put()
+			seedIndex = null;
+			countIndex = null;
+			CollectorMetrics myMetrics = metrics;
+			if(myMetrics != null) {
+				myMetrics.statesCreated.add(map.size());
+			}
+			for(Map.Entry<? extends T, ? extends CollectorStats<K,T,R>> entry : map.entrySet()) {
+				entry.getValue().setOwner(this, entry.getKey());
+			}
+			return;
+		}
+		for(Map.Entry<? extends T, ? extends CollectorStats<K,T,R>> entry : map.entrySet()) {
+			put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public CollectorStats<K,T,R> remove(Object key) {
+		seedIndex = null;
+		CollectorStats<K,T,R> previous = super.remove(key);
+		if(previous != null) {
+			detach((T)key, previous);
+		}
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		seedIndex = null;
+		CollectorMetrics myMetrics = metrics;
+		if(myMetrics != null) {
+			myMetrics.statesRemoved.add(size());
+		}
+		for(CollectorStats<K,T,R> cstats : values()) {
+			if(cstats.getOwner() == this) {
+				cstats.setOwner(null, null);
+			}
+		}
+		countIndex = null;
+		supplierNames = new SupplierNames();		// let go of the names, detached CollectorStats keep theirs
+		super.clear();
+	}
+	
+	SupplierNames getSupplierNames() {
+		SupplierNames names = supplierNames;
+		if(names == null) {		// not set by Java deserialization
+			names = new SupplierNames();
+			supplierNames = names;
+		}
+		return names;
+	}
+
+	@Override
+	public Map.Entry<T, CollectorStats<K,T,R>> pollFirstEntry() {
+		seedIndex = null;
+		Map.Entry<T, CollectorStats<K,T,R>> entry = super.pollFirstEntry();
+		if(entry != null) {
+			detach(entry.getKey(), entry.getValue());
+		}
+		return entry;
+	}
+
+	@Override
+	public Map.Entry<T, CollectorStats<K,T,R>> pollLastEntry() {
+		seedIndex = null;
+		Map.Entry<T, CollectorStats<K,T,R>> entry = super.pollLastEntry();
+		if(entry != null) {
+			detach(entry.getKey(), entry.getValue());
+		}
+		return entry;
+	}
+	
+	private void attach(T key, CollectorStats<K,T,R> cstats) {
+		cstats.setOwner(this, key);
+		if(countIndex != null) {
+			countIndex.computeIfAbsent(cstats.getTotalOccurrance(), count -> new TreeSet<>()).add(key);
+		}
+	}
+	
+	private void detach(T key, CollectorStats<K,T,R> cstats) {
+		CollectorMetrics myMetrics = metrics;
+		if(myMetrics != null && !containsKey(key)) {
+			myMetrics.statesRemoved.increment();
+		}
+		if(cstats.getOwner() == this) {
+			cstats.setOwner(null, null);
+		}
+		if(countIndex != null) {
+			unindex(key, cstats.getTotalOccurrance());
+		}
+	}
+	
+	private void unindex(T key, int count) {
+		TreeSet<T> keys = countIndex.get(count);
+		if(keys != null && keys.remove(key) && keys.isEmpty()) {
+			countIndex.remove(count);
+		}
+	}
+	
+	/**
+	 * Called by a CollectorStats in this map when its initial or terminal flag changes.
+	 */
+	void stateChanged() {
+		seedIndex = null;
+	}
+	
+	/**
+	 * Called by a CollectorStats in this map when its total occurrence changes.
+	 */
+	void totalOccurranceChanged(T key, int previousTotal, int total) {
+		seedIndex = null;		// seed weights changed
+		CollectorMetrics myMetrics = metrics;
+		if(myMetrics != null && total > previousTotal) {
+			myMetrics.occurrencesAdded.add(total - previousTotal);
+		}
+		if(countIndex != null) {
+			unindex(key, previousTotal);
+			countIndex.computeIfAbsent(total, count -> new TreeSet<>()).add(key);
+		}
+	}
+	
+	protected TreeMap<Integer, TreeSet<T>> getCountIndex() {
+		TreeMap<Integer, TreeSet<T>> index = countIndex;
+		if(index == null) {
+			index = new TreeMap<>(new MapComparator());
+			for(Map.Entry<T, CollectorStats<K,T,R>> entry : entrySet()) {
+				index.computeIfAbsent(entry.getValue().getTotalOccurrance(), count -> new TreeSet<>()).add(entry.getKey());
+			}
+			countIndex = index;
+		}
+		return index;
+	}
+	
+
+	/**
+	 * Turns training and generation metrics on or off. Enabling starts new counters, disabling discards them.
+	 * @param enabled
+	 */
+	public void setMetricsEnabled(boolean enabled) {
+		metrics = enabled ? new CollectorMetrics() : null;
+	}
+	
+	@JsonIgnore
+	public boolean isMetricsEnabled() {
+		return metrics != null;
+	}
+	
+	/**
+	 * @return the live CollectorMetrics or null if metrics are disabled
+	 */
+	@JsonIgnore
+	public CollectorMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Captures the counters along with the number of states and transitions, fan-out and estimated heap in O(n).
+	 * @return CollectorMetricsSnapshot or null if metrics are disabled
+	 */
+	@JsonIgnore
+	public CollectorMetricsSnapshot getMetricsSnapshot() {
+		CollectorMetrics myMetrics = metrics;
+		return myMetrics == null ? null : new CollectorMetricsSnapshot(getMetricsName(), myMetrics, values());
+	}
+	
+	protected String getMetricsName() {
+		return getClass().getSimpleName();
+	}
+
+	/**
+	 * @return the RandomSource used by pickSeed() and sampleNext() without a Random
+	 */
+	@JsonIgnore
+	public RandomSource getRandomSource() {
+		RandomSource source = randomSource;
+		return source == null ? RandomSource.getDefault() : source;
+	}
+
+	/**
+	 * @param randomSource RandomSource for this map, null to use the default
+	 */
+	public void setRandomSource(RandomSource randomSource) {
+		this.randomSource = randomSource;
+	}
 
 	public ISeedPicker<K,T,R> getSeedPicker() {
 		return seedPicker.get();
@@ -124,7 +538,7 @@ public class CollectorStatsMap<K extends Comparable<K>, T extends List<K> & Comp
 	}
 
 	public String toString() {
-		StringBuffer sb = new StringBuffer();
+		StringBuilder sb = new StringBuilder();
 		for(T key : this.keySet()) {
 			CollectorStats<K, T, R> cstats = this.get(key);
 			sb.append("'" + key.toString() + "'\t" + cstats.getTotalOccurrance());
@@ -133,61 +547,70 @@ public class CollectorStatsMap<K extends Comparable<K>, T extends List<K> & Comp
 		return sb.toString();
 	}
 	
-	private void createSummaryMap() {
-		summaryMap = new TreeMap<T, Integer>();
-		for(T key : this.keySet()) {
-			CollectorStats<K, T, R> cstats = this.get(key);
-			Integer totalOccurrance = cstats.getTotalOccurrance();
-			summaryMap.put(key, totalOccurrance);
-		}
-	}
-
 	/**
-	 * TODO - add toJson()
-	 * 
+	 * States sorted by total occurrence, highest first, with equal totals in natural order.<br>
+	 * Reads the count index so the cost is O(n) rather than a sort.
 	 * @return LinkedHashMap 
 	 */
 	public LinkedHashMap<T, CollectorStats<K,T,R>>  sortByValue() {
-		return (LinkedHashMap<T,CollectorStats<K,T,R>> ) this.entrySet().stream()
-			.sorted((e1, e2) -> e1.getValue().compareTo(e2.getValue()))
-			.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (e1, e2) -> e1, LinkedHashMap::new));
+		return sortByValue(size());
 	}
 	
-	public Map<T, Integer> getSummaryMap() {
-		if(summaryMap == null) {
-			createSummaryMap();
+	/**
+	 * @param k the number of states
+	 * @return LinkedHashMap of the k states with the highest total occurrence, in the order of sortByValue()
+	 */
+	public LinkedHashMap<T, CollectorStats<K,T,R>>  sortByValue(int k) {
+		LinkedHashMap<T, CollectorStats<K,T,R>> sorted = new LinkedHashMap<>();
+		for(T key : getTopStates(k)) {
+			sorted.put(key, get(key));
 		}
-		return summaryMap;
+		return sorted;
 	}
 	
-	private void createInvertedSummaryMap() {
-		invertedSummaryMap = new TreeMap<Integer, List<T>>(new MapComparator());
-		for(T key : keySet()) {
-			CollectorStats<K, T,R> cstats = get(key); 
-			Integer totalOccurrance = cstats.getTotalOccurrance();
-			if(invertedSummaryMap.containsKey(totalOccurrance)) {
-				List<T> vals = invertedSummaryMap.get(totalOccurrance);
-				vals.add(key);
-				log.debug("T val: " + vals.toString());
-			}
-			else {
-				List<T> vals = new ArrayList<T>();
-				vals.add(key);
-				invertedSummaryMap.put(totalOccurrance, vals);
+	/**
+	 * Reads the k states with the highest total occurrence in O(k) from the count index,
+	 * which is kept current as occurrences are added.
+	 * @param k the number of states
+	 * @return List of at most k states, highest total occurrence first, equal totals in natural order
+	 */
+	public List<T> getTopStates(int k) {
+		List<T> top = new ArrayList<>(Math.min(k, size()));
+		for(TreeSet<T> keys : getCountIndex().values()) {
+			for(T key : keys) {
+				if(top.size() == k) {
+					return top;
+				}
+				top.add(key);
 			}
 		}
+		return top;
+	}
+	
+	/**
+	 * @return unmodifiable live view of the total occurrence of each state, in key order
+	 */
+	public Map<T, Integer> getSummaryMap() {
+		if(summaryMap == null) {
+			summaryMap = new SummaryMap<>(this);
+		}
+		return summaryMap;
 	}
 	
+	/**
+	 * @return the states grouped by total occurrence, highest first, copied from the current count index
+	 */
 	public Map<Integer, List<T>> getInvertedSummaryMap() {
-		if(invertedSummaryMap == null) {
-			createInvertedSummaryMap();
+		Map<Integer, List<T>> invertedSummaryMap = new TreeMap<Integer, List<T>>(new MapComparator());
+		for(Map.Entry<Integer, TreeSet<T>> entry : getCountIndex().entrySet()) {
+			invertedSummaryMap.put(entry.getKey(), new ArrayList<>(entry.getValue()));
 		}
 		return invertedSummaryMap;
 	}
 	
 	public String getSummaryMapText() {
 		StringBuilder sb = new StringBuilder();
-		getSummaryMap();
+		Map<T, Integer> summaryMap = getSummaryMap();
 		int totalCount = 0;
 		for(T key : summaryMap.keySet()) {
 			Integer count = summaryMap.get(key);
@@ -210,7 +633,7 @@ public class CollectorStatsMap<K extends Comparable<K>, T extends List<K> & Comp
 	public String getInvertedSummaryMapText(boolean jsonFormat, boolean pretty) {
 		StringBuilder sb = new StringBuilder();
 		String result = "";
-		getInvertedSummaryMap();
+		Map<Integer, List<T>> invertedSummaryMap = getInvertedSummaryMap();
 		if(jsonFormat) {
 			sb.append("{\n");
 			for(Integer count : invertedSummaryMap.keySet()) {
@@ -253,6 +676,134 @@ public class CollectorStatsMap<K extends Comparable<K>, T extends List<K> & Comp
 	}
 }
 
+/**
+ * Array index of the keys of a CollectorStatsMap and of its initial and terminal states
+ * so that seeds can be selected in O(1) without allocation.
+ */
+class SeedIndex<K extends Comparable<K>, T extends List<K> & Comparable<T>, R extends Supplier<T> & INameable> {
+	
+	private final List<T> keys;
+	private final List<T> initialKeys;
+	private final List<T> terminalKeys;
+	private final AliasSampler<T> weightedSampler;			// null if there are no occurrences
+	private final AliasSampler<T> weightedInitialSampler;
+	
+	SeedIndex(CollectorStatsMap<K,T,R> map) {
+		keys = new ArrayList<>(map.size());
+		List<T> initial = new ArrayList<>();
+		List<T> terminal = new ArrayList<>();
+		long[] weights = new long[map.size()];
+		List<Long> iweights = new ArrayList<>();
+		int i = 0;
+		for(Map.Entry<T, CollectorStats<K,T,R>> entry : map.entrySet()) {
+			T key = entry.getKey();
+			CollectorStats<K,T,R> cstats = entry.getValue();
+			keys.add(key);
+			weights[i++] = cstats.getTotalOccurrance();
+			if(cstats.isInitial()) {
+				initial.add(key);
+				iweights.add((long)cstats.getTotalOccurrance());
+			}
+			if(cstats.isTerminal()) {
+				terminal.add(key);
+			}
+		}
+		initialKeys = Collections.unmodifiableList(initial);
+		terminalKeys = Collections.unmodifiableList(terminal);
+		long[] initialWeights = iweights.stream().mapToLong(Long::longValue).toArray();
+		weightedSampler = createSampler(keys, weights);
+		weightedInitialSampler = createSampler(initialKeys, initialWeights);
+	}
+	
+	boolean hasInitial() {
+		return !initialKeys.isEmpty();
+	}
+	
+	T pick(Random random, boolean weighted) {
+		if(weighted && weightedSampler != null) {
+			return weightedSampler.sample(random);
+		}
+		return keys.get(random.nextInt(keys.size()));
+	}
+	
+	T pickInitial(Random random, boolean weighted) {
+		if(weighted && weightedInitialSampler != null) {
+			return weightedInitialSampler.sample(random);
+		}
+		return initialKeys.get(random.nextInt(initialKeys.size()));
+	}
+	
+	private AliasSampler<T> createSampler(List<T> outcomes, long[] w) {
+		for(long weight : w) {
+			if(weight > 0) {
+				return new AliasSampler<>(outcomes, w);
+			}
+		}
+		return null;		// no occurrences at all, fall back to uniform
+	}
+
+	List<T> getInitialKeys() {
+		return initialKeys;
+	}
+
+	List<T> getTerminalKeys() {
+		return terminalKeys;
+	}
+}
+
+/**
+ * Read-only view of the total occurrence of each state of a CollectorStatsMap.
+ */
+class SummaryMap<K extends Comparable<K>, T extends List<K> & Comparable<T>, R extends Supplier<T> & INameable> extends AbstractMap<T, Integer> {
+	
+	private final CollectorStatsMap<K,T,R> map;
+	
+	SummaryMap(CollectorStatsMap<K,T,R> map) {
+		this.map = map;
+	}
+
+	@Override
+	public Integer get(Object key) {
+		CollectorStats<K,T,R> cstats = map.get(key);
+		return cstats == null ? null : cstats.getTotalOccurrance();
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return map.containsKey(key);
+	}
+
+	@Override
+	public int size() {
+		return map.size();
+	}
+
+	@Override
+	public Set<Map.Entry<T, Integer>> entrySet() {
+		return new AbstractSet<Map.Entry<T, Integer>>() {
+			@Override
+			public Iterator<Map.Entry<T, Integer>> iterator() {
+				Iterator<Map.Entry<T, CollectorStats<K,T,R>>> entries = map.entrySet().iterator();
+				return new Iterator<Map.Entry<T, Integer>>() {
+					@Override
+					public boolean hasNext() {
+						return entries.hasNext();
+					}
+					@Override
+					public Map.Entry<T, Integer> next() {
+						Map.Entry<T, CollectorStats<K,T,R>> entry = entries.next();
+						return new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().getTotalOccurrance());
+					}
+				};
+			}
+			@Override
+			public int size() {
+				return map.size();
+			}
+		};
+	}
+}
+
 class MapComparator implements Comparator<Integer>
 {
 	private boolean reverse = true;
@@ -0,0 +1,68 @@
+package org.dwbzen.common.cp;
+
+/**
+ * Thresholds for CollectorStatsMap.compact(). The defaults remove nothing.<br>
+ * Transitions are pruned first, then states whose remaining total occurrence is below minStateOccurrence are removed
+ * together with the transitions leading to them.
+ * States that are only terminal have no occurrences, keepTerminalStates (the default) keeps them.
+ */
+public class CompactionPolicy {
+
+	private int minStateOccurrence = 0;
+	private int minTransitionOccurrence = 0;
+	private double minTransitionProbability = 0.0;
+	private int maxSuccessors = 0;
+	private boolean keepTerminalStates = true;
+
+	public int getMinStateOccurrence() {
+		return minStateOccurrence;
+	}
+
+	/**
+	 * @param minStateOccurrence states with a lower total occurrence after pruning are removed
+	 */
+	public void setMinStateOccurrence(int minStateOccurrence) {
+		this.minStateOccurrence = minStateOccurrence;
+	}
+
+	public int getMinTransitionOccurrence() {
+		return minTransitionOccurrence;
+	}
+
+	/**
+	 * @param minTransitionOccurrence transitions with fewer occurrences are removed
+	 */
+	public void setMinTransitionOccurrence(int minTransitionOccurrence) {
+		this.minTransitionOccurrence = minTransitionOccurrence;
+	}
+
+	public double getMinTransitionProbability() {
+		return minTransitionProbability;
+	}
+
+	/**
+	 * @param minTransitionProbability transitions with a lower probability are removed
+	 */
+	public void setMinTransitionProbability(double minTransitionProbability) {
+		this.minTransitionProbability = minTransitionProbability;
+	}
+
+	public int getMaxSuccessors() {
+		return maxSuccessors;
+	}
+
+	/**
+	 * @param maxSuccessors keep only the maxSuccessors most frequent transitions of each state, 0 for no limit
+	 */
+	public void setMaxSuccessors(int maxSuccessors) {
+		this.maxSuccessors = maxSuccessors;
+	}
+
+	public boolean isKeepTerminalStates() {
+		return keepTerminalStates;
+	}
+
+	public void setKeepTerminalStates(boolean keepTerminalStates) {
+		this.keepTerminalStates = keepTerminalStates;
+	}
+}
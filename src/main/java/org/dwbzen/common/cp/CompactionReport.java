@@ -0,0 +1,63 @@
+package org.dwbzen.common.cp;
+
+/**
+ * What CollectorStatsMap.compact() removed, with an estimate of the heap reclaimed
+ * based on the typical size of the map entries and objects behind each state, transition and supplier count.
+ */
+public class CompactionReport {
+
+	/*
+	 * approximate bytes with compressed oops
+	 */
+	public static final long STATE_BYTES = 400;				// CollectorStats, its TreeMaps and the map entry
+	public static final long TRANSITION_BYTES = 260;		// TreeMap entries, OccurrenceProbability and an empty SupplierCounts
+	public static final long SUPPLIER_COUNT_BYTES = 16;		// int id and count slots of the SupplierCounts table at its average load
+
+	private final int statesRemoved;
+	private final int transitionsRemoved;
+	private final int supplierCountsRemoved;
+	private final long elapsedMillis;
+
+	public CompactionReport(int statesRemoved, int transitionsRemoved, int supplierCountsRemoved, long elapsedMillis) {
+		this.statesRemoved = statesRemoved;
+		this.transitionsRemoved = transitionsRemoved;
+		this.supplierCountsRemoved = supplierCountsRemoved;
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	public int getStatesRemoved() {
+		return statesRemoved;
+	}
+
+	/**
+	 * @return transitions removed, including those of the removed states
+	 */
+	public int getTransitionsRemoved() {
+		return transitionsRemoved;
+	}
+
+	/**
+	 * @return supplier counts removed, including those of the removed states
+	 */
+	public int getSupplierCountsRemoved() {
+		return supplierCountsRemoved;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	/**
+	 * @return estimated bytes reclaimed, not counting the T keys of removed states
+	 */
+	public long getEstimatedBytesReclaimed() {
+		return statesRemoved * STATE_BYTES + transitionsRemoved * TRANSITION_BYTES + supplierCountsRemoved * SUPPLIER_COUNT_BYTES;
+	}
+
+	@Override
+	public String toString() {
+		return "states removed: " + statesRemoved + ", transitions removed: " + transitionsRemoved
+				+ ", supplier counts removed: " + supplierCountsRemoved
+				+ ", ~" + getEstimatedBytesReclaimed()/1024 + " KB reclaimed in " + elapsedMillis + " ms";
+	}
+}
@@ -0,0 +1,134 @@
+package org.dwbzen.common.cp;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.dwbzen.common.util.INameable;
+
+/**
+ * Thread-safe counterpart of CollectorStats for collecting one state from many threads.<br>
+ * Occurrence, supplier and total counts are striped LongAdders in ConcurrentHashMaps, so addOccurrence
+ * never takes a lock and contended increments of the same K do not serialize.
+ * Probabilities are not maintained, toCollectorStats() takes a snapshot as a CollectorStats
+ * which computes them on first read.
+ *
+ * @param <K> a base class
+ * @param <T> class that implements List<K>
+ * @param <R> class that is a Supplier of <T>
+ */
+public class ConcurrentCollectorStats<K extends Comparable<K>, T extends List<K> & Comparable<T>, R extends Supplier<T> & INameable> {
+
+	private final T subset;
+	/*
+	 * occurrence count and per Supplier name counts of each K
+	 */
+	private final Map<K, Transition> transitions = new ConcurrentHashMap<>();
+	/*
+	 * Maps Supplier name to Supplier instance, empty if the Supplier was null
+	 */
+	private final Map<String, Optional<R>> suppliers = new ConcurrentHashMap<>();
+	private final LongAdder totalOccurrance = new LongAdder();
+	private volatile boolean terminal = false;
+	private volatile boolean initial = false;
+
+	static final class Transition {
+		final LongAdder occurrence = new LongAdder();
+		final Map<String, LongAdder> supplierCounts = new ConcurrentHashMap<>();
+	}
+
+	public ConcurrentCollectorStats(T sub) {
+		subset = sub;
+	}
+
+	public T getSubset() {
+		return subset;
+	}
+
+	public boolean isTerminal() {
+		return terminal;
+	}
+
+	public void setTerminal(boolean terminal) {
+		this.terminal = terminal;
+	}
+
+	public boolean isInitial() {
+		return initial;
+	}
+
+	public void setInitial(boolean initial) {
+		this.initial = initial;
+	}
+
+	/**
+	 * Adds an occurrence of K. Safe to call from any number of threads.<br>
+	 * As in CollectorStats, the Supplier is recorded when it is the first to supply a K.
+	 * @param toccur the next K
+	 * @param theSupplier may be null
+	 */
+	public void addOccurrence(K toccur, R theSupplier) {
+		String name = theSupplier != null ? theSupplier.getName() : CollectorStats.NO_SUPPLIER;
+		Transition transition = transitions.get(toccur);
+		if(transition == null) {
+			Transition created = new Transition();
+			transition = transitions.putIfAbsent(toccur, created);
+			if(transition == null) {
+				transition = created;
+				suppliers.putIfAbsent(name, Optional.ofNullable(theSupplier));
+			}
+		}
+		transition.occurrence.increment();
+		transition.supplierCounts.computeIfAbsent(name, n -> new LongAdder()).increment();
+		totalOccurrance.increment();
+	}
+
+	public void addOccurrence(K toccur) {
+		addOccurrence(toccur, null);
+	}
+
+	/**
+	 * @return the total occurrence, exact when no addOccurrence is in progress
+	 */
+	public int getTotalOccurrance() {
+		return totalOccurrance.intValue();
+	}
+
+	/**
+	 * @param toccur
+	 * @return the occurrence count of K, exact when no addOccurrence is in progress
+	 */
+	public int getOccurrence(K toccur) {
+		Transition transition = transitions.get(toccur);
+		return transition == null ? 0 : transition.occurrence.intValue();
+	}
+
+	public int size() {
+		return transitions.size();
+	}
+
+	/**
+	 * Copies the counts, suppliers and flags to a new CollectorStats.
+	 * Call it once all addOccurrence calls have completed for an exact copy.
+	 * @return a new CollectorStats
+	 */
+	public CollectorStats<K,T,R> toCollectorStats() {
+		CollectorStats<K,T,R> cstats = new CollectorStats<>(subset);
+		cstats.setInitial(initial);
+		cstats.setTerminal(terminal);
+		for(Map.Entry<K, Transition> entry : transitions.entrySet()) {
+			K k = entry.getKey();
+			cstats.restoreOccurrence(k, entry.getValue().occurrence.intValue());
+			for(Map.Entry<String, LongAdder> supplierCount : entry.getValue().supplierCounts.entrySet()) {
+				cstats.restoreSupplierCount(k, supplierCount.getKey(), supplierCount.getValue().intValue());
+			}
+		}
+		for(Map.Entry<String, Optional<R>> entry : suppliers.entrySet()) {
+			cstats.restoreSupplier(entry.getKey(), entry.getValue().orElse(null));
+		}
+		return cstats;
+	}
+}
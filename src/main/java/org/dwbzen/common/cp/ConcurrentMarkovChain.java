@@ -0,0 +1,123 @@
+package org.dwbzen.common.cp;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.dwbzen.common.util.INameable;
+
+/**
+ * Thread-safe MarkovChain builder for collectors running on many threads at once.<br>
+ * States are kept in a ConcurrentSkipListMap ordered like the MarkovChain, each state is a ConcurrentCollectorStats,
+ * so any number of threads can call addOccurrence, setInitial and setTerminal on the same chain without a global lock.
+ * Once collection is complete, toMarkovChain() copies the counts to a MarkovChain for producers.<br>
+ * Usage:<br>
+ * <code>
+ * ConcurrentMarkovChain&lt;Character, Word, Sentence&gt; chain = new ConcurrentMarkovChain&lt;&gt;(order);<br>
+ * sentences.parallelStream().forEach(sentence -> collect(chain, sentence));<br>
+ * MarkovChain&lt;Character, Word, Sentence&gt; markovChain = chain.toMarkovChain();
+ * </code>
+ *
+ * @param <K> a base class
+ * @param <T> class that implements List<K>
+ * @param <R> class that is a Supplier of <T>
+ */
+public class ConcurrentMarkovChain<K extends Comparable<K>, T extends List<K> & Comparable<T>, R extends Supplier<T> & INameable> {
+
+	protected static final Logger log = LogManager.getLogger(ConcurrentMarkovChain.class);
+
+	private final ConcurrentSkipListMap<T, ConcurrentCollectorStats<K,T,R>> states;
+	private final Comparator<? super T> comparator;
+	private final int order;
+	private volatile String name = INameable.DEFAULT_NAME;
+
+	/**
+	 * @param comparator Comparator to use to order the states, if null natural ordering is used.
+	 * @param order the order of the MarkovChain
+	 */
+	public ConcurrentMarkovChain(Comparator<? super T> comparator, int order) {
+		this.comparator = comparator;
+		this.order = order;
+		states = new ConcurrentSkipListMap<>(comparator);
+	}
+
+	public ConcurrentMarkovChain(int order) {
+		this(null, order);
+	}
+
+	/**
+	 * @param state
+	 * @return the ConcurrentCollectorStats of the state, adding it if it is new
+	 */
+	public ConcurrentCollectorStats<K,T,R> getOrCreate(T state) {
+		ConcurrentCollectorStats<K,T,R> cstats = states.get(state);
+		if(cstats == null) {
+			cstats = states.computeIfAbsent(state, s -> new ConcurrentCollectorStats<>(s));
+		}
+		return cstats;
+	}
+
+	/**
+	 * @param state
+	 * @return the ConcurrentCollectorStats of the state or null
+	 */
+	public ConcurrentCollectorStats<K,T,R> get(T state) {
+		return states.get(state);
+	}
+
+	/**
+	 * Adds an occurrence of K following a state, adding the state if it is new. Safe to call from any number of threads.
+	 * @param state
+	 * @param toccur the next K
+	 * @param theSupplier may be null
+	 */
+	public void addOccurrence(T state, K toccur, R theSupplier) {
+		getOrCreate(state).addOccurrence(toccur, theSupplier);
+	}
+
+	public void setInitial(T state) {
+		getOrCreate(state).setInitial(true);
+	}
+
+	public void setTerminal(T state) {
+		getOrCreate(state).setTerminal(true);
+	}
+
+	public int size() {
+		return states.size();
+	}
+
+	public int getOrder() {
+		return order;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Copies the states to a new MarkovChain with the same Comparator.
+	 * Call it once all collector threads have completed for an exact copy.
+	 * @return a new MarkovChain
+	 */
+	public MarkovChain<K,T,R> toMarkovChain() {
+		MarkovChain<K,T,R> markovChain = new MarkovChain<K,T,R>(comparator, order);
+		markovChain.setName(name);
+		TreeMap<T, CollectorStats<K,T,R>> sorted = new TreeMap<>(comparator);
+		for(Map.Entry<T, ConcurrentCollectorStats<K,T,R>> entry : states.entrySet()) {
+			sorted.put(entry.getKey(), entry.getValue().toCollectorStats());
+		}
+		markovChain.putAll(sorted);		// sorted bulk load
+		log.debug("copied " + sorted.size() + " states");
+		return markovChain;
+	}
+}
@@ -0,0 +1,143 @@
+package org.dwbzen.common.cp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import org.dwbzen.common.util.INameable;
+
+/**
+ * An immutable copy of a MarkovChain for generation, created by MarkovChain.freeze().<br>
+ * Every sampling table is built up front and nothing is modified afterwards,
+ * so any number of threads can share one FrozenMarkovChain without locks,
+ * each sampling with its own Random. Changes to the MarkovChain after freeze() are not seen.
+ *
+ * @param <K> a base class
+ * @param <T> class that implements List<K>
+ * @param <R> class that is a Supplier of <T>
+ */
+public final class FrozenMarkovChain<K extends Comparable<K>, T extends List<K> & Comparable<T>, R extends Supplier<T> & INameable> {
+
+	private final String name;
+	private final int order;
+	private final Map<T, State<K>> states;
+	private final List<T> seeds;
+	private final AliasSampler<T> weightedSeeds;		// null if not weighted or there are no occurrences
+	private final List<T> initialStates;
+	private final List<T> terminalStates;
+
+	FrozenMarkovChain(MarkovChain<K,T,R> markovChain) {
+		name = markovChain.getName();
+		order = markovChain.getOrder();
+		Map<T, State<K>> frozenStates = new TreeMap<>(markovChain.comparator());
+		List<T> keys = new ArrayList<>(markovChain.size());
+		List<T> initial = new ArrayList<>();
+		List<T> terminal = new ArrayList<>();
+		for(Map.Entry<T, CollectorStats<K,T,R>> entry : markovChain.entrySet()) {
+			CollectorStats<K,T,R> cstats = entry.getValue();
+			cstats.seal();
+			frozenStates.put(entry.getKey(), new State<>(cstats.getAliasSampler(), cstats.getTotalOccurrance()));
+			keys.add(entry.getKey());
+			if(cstats.isInitial()) {
+				initial.add(entry.getKey());
+			}
+			if(cstats.isTerminal()) {
+				terminal.add(entry.getKey());
+			}
+		}
+		states = Collections.unmodifiableMap(frozenStates);
+		initialStates = Collections.unmodifiableList(initial);
+		terminalStates = Collections.unmodifiableList(terminal);
+		seeds = Collections.unmodifiableList(markovChain.isPickInitialSeed() && !initial.isEmpty() ? initial : keys);
+		AliasSampler<T> sampler = null;
+		if(markovChain.isWeightedSeed()) {
+			long[] weights = new long[seeds.size()];
+			long total = 0;
+			for(int i=0; i<weights.length; i++) {
+				weights[i] = frozenStates.get(seeds.get(i)).total;
+				total += weights[i];
+			}
+			sampler = total > 0 ? new AliasSampler<>(seeds, weights) : null;
+		}
+		weightedSeeds = sampler;
+	}
+
+	/**
+	 * Selects a seed the way the MarkovChain did when it was frozen:
+	 * from the initial states if isPickInitialSeed(), uniformly or weighted by occurrence.
+	 * @param random the source of randomness
+	 * @return T seed or null if there are no states
+	 */
+	public T pickSeed(Random random) {
+		if(seeds.isEmpty()) {
+			return null;
+		}
+		return weightedSeeds != null ? weightedSeeds.sample(random) : seeds.get(random.nextInt(seeds.size()));
+	}
+
+	/**
+	 * @param state the current T state
+	 * @param random the source of randomness
+	 * @return K or null if the state is unknown or has no occurrences
+	 */
+	public K sampleNext(T state, Random random) {
+		State<K> frozenState = states.get(state);
+		return frozenState == null || frozenState.sampler == null ? null : frozenState.sampler.sample(random);
+	}
+
+	public boolean containsKey(T state) {
+		return states.containsKey(state);
+	}
+
+	/**
+	 * @return the total occurrence of a state, 0 if unknown
+	 */
+	public int getTotalOccurrance(T state) {
+		State<K> frozenState = states.get(state);
+		return frozenState == null ? 0 : frozenState.total;
+	}
+
+	public int size() {
+		return states.size();
+	}
+
+	public boolean isEmpty() {
+		return states.isEmpty();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getOrder() {
+		return order;
+	}
+
+	/**
+	 * @return unmodifiable List of the initial states in key order
+	 */
+	public List<T> getInitialStates() {
+		return initialStates;
+	}
+
+	/**
+	 * @return unmodifiable List of the terminal states in key order
+	 */
+	public List<T> getTerminalStates() {
+		return terminalStates;
+	}
+
+	private static final class State<K> {
+		final AliasSampler<K> sampler;		// null if there are no occurrences
+		final int total;
+
+		State(AliasSampler<K> sampler, int total) {
+			this.sampler = sampler;
+			this.total = total;
+		}
+	}
+}
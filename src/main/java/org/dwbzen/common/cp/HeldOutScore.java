@@ -0,0 +1,84 @@
+package org.dwbzen.common.cp;
+
+import org.dwbzen.common.util.IJson;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * How well a MarkovChain predicts a held-out corpus: the average log loss per predicted K (cross entropy, in bits)
+ * and the perplexity 2<sup>cross entropy</sup>.<br>
+ * Created by MarkovChainAnalyzer.score().
+ */
+public class HeldOutScore implements IJson {
+
+	@JsonProperty	private long sequences;
+	@JsonProperty	private long predictions;
+	@JsonProperty	private long unseenStates;
+	@JsonProperty	private long unseenTransitions;
+	@JsonProperty	private double logLoss;
+	@JsonProperty	private double crossEntropy;
+	@JsonProperty	private double perplexity;
+
+	HeldOutScore(Accumulator accumulator) {
+		sequences = accumulator.sequences;
+		predictions = accumulator.predictions;
+		unseenStates = accumulator.unseenStates;
+		unseenTransitions = accumulator.unseenTransitions;
+		logLoss = accumulator.logLoss;
+		crossEntropy = predictions == 0 ? 0 : logLoss / predictions;
+		perplexity = Math.pow(2, crossEntropy);
+	}
+
+	public long getSequences() {
+		return sequences;
+	}
+
+	public long getPredictions() {
+		return predictions;
+	}
+
+	/**
+	 * @return the number of predictions from a state that is not in the chain
+	 */
+	public long getUnseenStates() {
+		return unseenStates;
+	}
+
+	/**
+	 * @return the number of predictions of a K never seen after a known state
+	 */
+	public long getUnseenTransitions() {
+		return unseenTransitions;
+	}
+
+	/**
+	 * @return the total of -log2 p over all predictions
+	 */
+	public double getLogLoss() {
+		return logLoss;
+	}
+
+	public double getCrossEntropy() {
+		return crossEntropy;
+	}
+
+	public double getPerplexity() {
+		return perplexity;
+	}
+
+	static class Accumulator {
+		long sequences;
+		long predictions;
+		long unseenStates;
+		long unseenTransitions;
+		double logLoss;
+
+		void combine(Accumulator other) {
+			sequences += other.sequences;
+			predictions += other.predictions;
+			unseenStates += other.unseenStates;
+			unseenTransitions += other.unseenTransitions;
+			logLoss += other.logLoss;
+		}
+	}
+}
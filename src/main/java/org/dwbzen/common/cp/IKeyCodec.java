@@ -0,0 +1,51 @@
+package org.dwbzen.common.cp;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary encoding of the K instances (states and transitions) of a MarkovChain,
+ * used by the snapshot formats to write the dictionary of K.
+ *
+ * @param <K> a base class
+ */
+public interface IKeyCodec<K> {
+	
+	void write(K key, DataOutput out) throws IOException;
+	
+	K read(DataInput in) throws IOException;
+	
+	public static final IKeyCodec<Character> CHARACTER = new IKeyCodec<Character>() {
+		@Override
+		public void write(Character key, DataOutput out) throws IOException {
+			out.writeChar(key);
+		}
+		@Override
+		public Character read(DataInput in) throws IOException {
+			return in.readChar();
+		}
+	};
+	
+	public static final IKeyCodec<String> STRING = new IKeyCodec<String>() {
+		@Override
+		public void write(String key, DataOutput out) throws IOException {
+			out.writeUTF(key);
+		}
+		@Override
+		public String read(DataInput in) throws IOException {
+			return in.readUTF();
+		}
+	};
+	
+	public static final IKeyCodec<Integer> INTEGER = new IKeyCodec<Integer>() {
+		@Override
+		public void write(Integer key, DataOutput out) throws IOException {
+			out.writeInt(key);
+		}
+		@Override
+		public Integer read(DataInput in) throws IOException {
+			return in.readInt();
+		}
+	};
+}
@@ -1,7 +1,11 @@
 package org.dwbzen.common.cp;
 
+import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Represents a function that accepts one argument and produces a result.
@@ -26,4 +30,27 @@ public interface IProducer<T, R>  extends Function<T, R> {
 		return produce(true);
 	}
 	
+	/**
+	 * Results as they are produced. The default materializes produce(false),
+	 * producers that can generate one result at a time override this so memory use stays constant.<br>
+	 * Unlike produce() the results are not de-duplicated.
+	 * @return Stream<R> production results
+	 */
+	default Stream<R> stream() {
+		return produce(false).stream();
+	}
+	
+	default Iterator<R> iterator() {
+		return stream().iterator();
+	}
+	
+	/**
+	 * Publishes the results of stream() to each subscriber, producing only as many as it has requested.
+	 * @param executor runs the production, one task at a time per subscriber
+	 * @return Flow.Publisher<R>
+	 */
+	default Flow.Publisher<R> publisher(Executor executor) {
+		return new IteratorPublisher<>(this::iterator, executor);
+	}
+	
 }
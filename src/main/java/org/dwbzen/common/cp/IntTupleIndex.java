@@ -0,0 +1,139 @@
+package org.dwbzen.common.cp;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash index that interns fixed-width int tuples to dense ids 0..size()-1.<br>
+ * Tuples are stored back to back in one int array and the table holds only ids,
+ * so there is no per-entry object. Lookups use linear probing, the table is doubled at 50% load.
+ */
+public class IntTupleIndex {
+
+	public static final int NOT_FOUND = -1;
+	static final int EMPTY = -1;
+
+	private final int width;
+	private int[] tuples;
+	private int[] table;
+	private int mask;
+	private int size = 0;
+
+	/**
+	 * @param width the number of ints in each tuple
+	 * @param expectedSize initial capacity in tuples
+	 */
+	public IntTupleIndex(int width, int expectedSize) {
+		if(width <= 0) {
+			throw new IllegalArgumentException("width must be positive");
+		}
+		this.width = width;
+		int capacity = Integer.highestOneBit(Math.max(8, expectedSize * 2 - 1)) << 1;
+		table = new int[capacity];
+		Arrays.fill(table, EMPTY);
+		mask = capacity - 1;
+		tuples = new int[Math.max(8, expectedSize) * width];
+	}
+
+	public IntTupleIndex(int width) {
+		this(width, 16);
+	}
+
+	/**
+	 * @param tuple int[width] to look up, from offset 0
+	 * @return the id of the tuple or NOT_FOUND
+	 */
+	public int find(int[] tuple) {
+		for(int slot = hash(tuple) & mask; ; slot = (slot + 1) & mask) {
+			int id = table[slot];
+			if(id == EMPTY) {
+				return NOT_FOUND;
+			}
+			if(matches(id, tuple)) {
+				return id;
+			}
+		}
+	}
+
+	/**
+	 * @param tuple int[width] to intern, from offset 0. The array is copied.
+	 * @return the id of the tuple, assigning the next id if it is new
+	 */
+	public int intern(int[] tuple) {
+		int slot = hash(tuple) & mask;
+		for(; ; slot = (slot + 1) & mask) {
+			int id = table[slot];
+			if(id == EMPTY) {
+				break;
+			}
+			if(matches(id, tuple)) {
+				return id;
+			}
+		}
+		int id = size++;
+		if(tuples.length < size * width) {
+			tuples = Arrays.copyOf(tuples, tuples.length * 2);
+		}
+		System.arraycopy(tuple, 0, tuples, id * width, width);
+		table[slot] = id;
+		if(size * 2 > table.length) {
+			rehash(table.length * 2);
+		}
+		return id;
+	}
+
+	/**
+	 * @param id a tuple id
+	 * @param i position in the tuple
+	 * @return the int at position i of tuple id
+	 */
+	public int get(int id, int i) {
+		return tuples[id * width + i];
+	}
+
+	public int width() {
+		return width;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private boolean matches(int id, int[] tuple) {
+		int offset = id * width;
+		for(int i=0; i<width; i++) {
+			if(tuples[offset + i] != tuple[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int hash(int[] tuple) {
+		return mix(tuple, 0);
+	}
+
+	private int hashOf(int id) {
+		return mix(tuples, id * width);
+	}
+
+	private int mix(int[] values, int offset) {
+		int h = 0;
+		for(int i=0; i<width; i++) {
+			h = h * 0x9E3779B9 + values[offset + i];
+		}
+		return h ^ (h >>> 16);
+	}
+
+	private void rehash(int capacity) {
+		table = new int[capacity];
+		Arrays.fill(table, EMPTY);
+		mask = capacity - 1;
+		for(int id=0; id<size; id++) {
+			int slot = hashOf(id) & mask;
+			while(table[slot] != EMPTY) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = id;
+		}
+	}
+}
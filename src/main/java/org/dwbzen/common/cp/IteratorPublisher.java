@@ -0,0 +1,114 @@
+package org.dwbzen.common.cp;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A Flow.Publisher that pulls from a new Iterator for each subscriber, as fast as the subscriber requests.<br>
+ * Nothing is buffered: an element is taken from the Iterator only when there is outstanding demand,
+ * so a slow subscriber slows down the production instead of filling memory.
+ *
+ * @param <R> the published element
+ */
+public class IteratorPublisher<R> implements Flow.Publisher<R> {
+
+	private final Supplier<Iterator<R>> iteratorSupplier;
+	private final Executor executor;
+
+	public IteratorPublisher(Supplier<Iterator<R>> iteratorSupplier, Executor executor) {
+		this.iteratorSupplier = Objects.requireNonNull(iteratorSupplier);
+		this.executor = Objects.requireNonNull(executor);
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super R> subscriber) {
+		Objects.requireNonNull(subscriber);
+		IteratorSubscription<R> subscription = new IteratorSubscription<>(subscriber, iteratorSupplier, executor);
+		subscriber.onSubscribe(subscription);
+	}
+
+	static class IteratorSubscription<R> implements Flow.Subscription, Runnable {
+
+		private final Flow.Subscriber<? super R> subscriber;
+		private final Supplier<Iterator<R>> iteratorSupplier;
+		private final Executor executor;
+		private final AtomicLong demand = new AtomicLong();
+		private Iterator<R> iterator = null;		// created on the first request, only used by run()
+		private volatile boolean done = false;
+		private volatile Throwable error = null;		// an invalid request, emitted by run()
+
+		IteratorSubscription(Flow.Subscriber<? super R> subscriber, Supplier<Iterator<R>> iteratorSupplier, Executor executor) {
+			this.subscriber = subscriber;
+			this.iteratorSupplier = iteratorSupplier;
+			this.executor = executor;
+		}
+
+		@Override
+		public void request(long n) {
+			if(done) {
+				return;
+			}
+			long added = n;
+			if(n <= 0) {
+				// signalled from run() like everything else, one more unit of demand makes sure it runs
+				error = new IllegalArgumentException("request must be > 0");
+				added = 1;
+			}
+			long previous = demand.getAndAccumulate(added, (current, more) -> current + more < 0 ? Long.MAX_VALUE : current + more);
+			if(previous == 0) {
+				// demand was exhausted so no task is running
+				executor.execute(this);
+			}
+		}
+
+		@Override
+		public void cancel() {
+			done = true;
+		}
+
+		/**
+		 * Emits until demand is exhausted, then completes if the Iterator is too.
+		 * Only one run() is active at a time per subscription, so all signals come from here.
+		 */
+		@Override
+		public void run() {
+			try {
+				if(iterator == null) {
+					iterator = iteratorSupplier.get();
+				}
+				long emitted = 0;
+				long requested = demand.get();
+				while(!done) {
+					if(error != null) {
+						done = true;
+						subscriber.onError(error);
+						return;
+					}
+					if(!iterator.hasNext()) {
+						// completion needs no demand
+						done = true;
+						subscriber.onComplete();
+						return;
+					}
+					if(emitted == requested) {
+						requested = demand.addAndGet(-emitted);
+						emitted = 0;
+						if(requested == 0) {
+							return;
+						}
+					}
+					subscriber.onNext(iterator.next());
+					emitted++;
+				}
+			}
+			catch(RuntimeException e) {
+				done = true;
+				subscriber.onError(e);
+			}
+		}
+	}
+}
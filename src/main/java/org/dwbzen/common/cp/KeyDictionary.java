@@ -0,0 +1,59 @@
+package org.dwbzen.common.cp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns instances to dense int ids 0..size()-1 in the order they are first seen,
+ * so that the primitive structures in this package can refer to them by id.
+ *
+ * @param <E> the interned type
+ */
+public class KeyDictionary<E> {
+
+	public static final int NOT_FOUND = -1;
+
+	private final Map<E, Integer> ids = new HashMap<>();
+	private final List<E> values = new ArrayList<>();
+
+	/**
+	 * @param e the instance to intern
+	 * @return the id of e, assigning the next id if it is new
+	 */
+	public int intern(E e) {
+		Integer id = ids.get(e);
+		if(id == null) {
+			id = values.size();
+			ids.put(e, id);
+			values.add(e);
+		}
+		return id;
+	}
+
+	/**
+	 * @param e
+	 * @return the id of e or NOT_FOUND
+	 */
+	public int idOf(E e) {
+		Integer id = ids.get(e);
+		return id == null ? NOT_FOUND : id;
+	}
+
+	public E get(int id) {
+		return values.get(id);
+	}
+
+	public int size() {
+		return values.size();
+	}
+
+	/**
+	 * @return unmodifiable List of the values in id order
+	 */
+	public List<E> getValues() {
+		return Collections.unmodifiableList(values);
+	}
+}
@@ -0,0 +1,83 @@
+package org.dwbzen.common.cp;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds with one bucket per power of 2.<br>
+ * Recording is a LongAdder increment, so threads don't contend. Percentiles are
+ * reported as the upper bound of their bucket, within a factor of 2 of the true value.
+ */
+public class LatencyHistogram {
+
+	static final int BUCKETS = 40;		// 2^40 ns is about 18 minutes
+
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+	public LatencyHistogram() {
+		for(int i=0; i<BUCKETS; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	public void record(long nanos) {
+		if(nanos < 0) {
+			nanos = 0;
+		}
+		buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos))].increment();
+		totalNanos.add(nanos);
+		maxNanos.accumulate(nanos);
+	}
+
+	public long getCount() {
+		long count = 0;
+		for(LongAdder bucket : buckets) {
+			count += bucket.sum();
+		}
+		return count;
+	}
+
+	public double getMeanNanos() {
+		long count = getCount();
+		return count == 0 ? 0 : (double)totalNanos.sum() / count;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	/**
+	 * @param percentile 0 to 100
+	 * @return the upper bound in nanoseconds of the bucket holding the percentile, 0 if nothing was recorded
+	 */
+	public long getPercentileNanos(double percentile) {
+		long[] counts = new long[BUCKETS];
+		long count = 0;
+		for(int i=0; i<BUCKETS; i++) {
+			counts[i] = buckets[i].sum();
+			count += counts[i];
+		}
+		if(count == 0) {
+			return 0;
+		}
+		long rank = (long)Math.ceil(count * percentile / 100.0);
+		long seen = 0;
+		for(int i=0; i<BUCKETS; i++) {
+			seen += counts[i];
+			if(seen >= rank && counts[i] > 0) {
+				return Math.min((1L << i) - 1, getMaxNanos());
+			}
+		}
+		return getMaxNanos();
+	}
+
+	public void reset() {
+		for(LongAdder bucket : buckets) {
+			bucket.reset();
+		}
+		totalNanos.reset();
+		maxNanos.reset();
+	}
+}
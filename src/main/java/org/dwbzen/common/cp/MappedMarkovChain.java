@@ -0,0 +1,521 @@
+package org.dwbzen.common.cp;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.dwbzen.common.math.OccurrenceProbability;
+import org.dwbzen.common.util.INameable;
+import org.dwbzen.common.util.RandomSource;
+
+/**
+ * Read-only view of a trained MarkovChain backed by a memory-mapped file.<br>
+ * States, successor lists and cumulative counts are flat int arrays in the mapping and are read
+ * in place, so opening is O(#distinct K) and the pages are shared by every process that maps the same file.
+ * Only the dictionary of K and its index are held on the heap.<br>
+ * States are stored sorted by their K indexes, get(T) is a binary search over the mapping,
+ * next-state sampling is a binary search over the state's cumulative counts.<br>
+ * Layout (version 1), all values are big-endian ints unless noted:
+ * <pre>
+ * MAGIC, VERSION, order, #states, #transitions, #initial states, #keys, #state keys
+ * stateKeyOffsets[#states+1]     start of each state in stateKeys
+ * stateKeys[#state keys]         K indexes of each state
+ * flags[#states]                 FLAG_INITIAL | FLAG_TERMINAL
+ * transitionOffsets[#states+1]   start of each state's successors
+ * transitionKeys[#transitions]   K index of each successor
+ * transitionCumulative[#transitions]  cumulative occurrence within the state
+ * seedCumulative[#states]        long, cumulative total occurrence over all states
+ * initialStates[#initial]        state indexes of the initial states
+ * initialCumulative[#initial]    long, cumulative total occurrence over the initial states
+ * UTF name, then each K written by the IKeyCodec
+ * </pre>
+ * Suppliers are not stored. A single mapping is limited to 2GB.
+ * Instances are immutable and can be shared by any number of threads, each using its own Random.
+ *
+ * @param <K> a base class
+ * @param <T> class that implements List<K>
+ * @param <R> class that is a Supplier of <T>
+ */
+public class MappedMarkovChain<K extends Comparable<K>, T extends List<K> & Comparable<T>, R extends Supplier<T> & INameable> {
+
+	protected static final Logger log = LogManager.getLogger(MappedMarkovChain.class);
+
+	public static final int MAGIC = 0x4D4B4D50;	// "MKMP"
+	public static final int VERSION = 1;
+	static final int HEADER_INTS = 8;
+
+	private final ByteBuffer buffer;
+	private final Function<List<K>, T> stateFactory;
+	private final String name;
+	private final int order;
+	private final int nstates;
+	private final int ninitial;
+	private final List<K> keys;
+	private final Map<K, Integer> keyIndex;
+	/*
+	 * byte offsets of each section
+	 */
+	private final int stateKeyOffsets;
+	private final int stateKeys;
+	private final int flags;
+	private final int transitionOffsets;
+	private final int transitionKeys;
+	private final int transitionCumulative;
+	private final int seedCumulative;
+	private final int initialStates;
+	private final int initialCumulative;
+
+	private boolean pickInitialSeed = false;
+	private boolean weightedSeed = false;
+
+	private MappedMarkovChain(ByteBuffer buffer, IKeyCodec<K> keyCodec, Function<List<K>, T> stateFactory) throws IOException {
+		this.buffer = buffer;
+		this.stateFactory = stateFactory;
+		if(buffer.capacity() < HEADER_INTS * Integer.BYTES || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a mapped MarkovChain");
+		}
+		int version = buffer.getInt(4);
+		if(version != VERSION) {
+			throw new IOException("Unsupported mapped MarkovChain version: " + version);
+		}
+		order = buffer.getInt(8);
+		nstates = buffer.getInt(12);
+		int ntransitions = buffer.getInt(16);
+		ninitial = buffer.getInt(20);
+		int nkeys = buffer.getInt(24);
+		int nstateKeys = buffer.getInt(28);
+
+		stateKeyOffsets = HEADER_INTS * Integer.BYTES;
+		stateKeys = stateKeyOffsets + (nstates + 1) * Integer.BYTES;
+		flags = stateKeys + nstateKeys * Integer.BYTES;
+		transitionOffsets = flags + nstates * Integer.BYTES;
+		transitionKeys = transitionOffsets + (nstates + 1) * Integer.BYTES;
+		transitionCumulative = transitionKeys + ntransitions * Integer.BYTES;
+		seedCumulative = transitionCumulative + ntransitions * Integer.BYTES;
+		initialStates = seedCumulative + nstates * Long.BYTES;
+		initialCumulative = initialStates + ninitial * Integer.BYTES;
+		int dictionary = initialCumulative + ninitial * Long.BYTES;
+
+		byte[] dictionaryBytes = new byte[buffer.capacity() - dictionary];
+		buffer.slice().position(dictionary).get(dictionaryBytes);
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(dictionaryBytes));
+		name = in.readUTF();
+		keys = new ArrayList<>(nkeys);
+		keyIndex = new HashMap<>(nkeys * 2);
+		for(int i=0; i<nkeys; i++) {
+			K k = keyCodec.read(in);
+			keyIndex.put(k, i);
+			keys.add(k);
+		}
+	}
+
+	/**
+	 * Maps a file written by write() read-only. The mapping stays valid after the FileChannel is closed.
+	 * @param path the file to map
+	 * @param keyCodec reads K
+	 * @param stateFactory creates a T state from the List of its K
+	 * @return a new MappedMarkovChain
+	 * @throws IOException if the file is not a mapped MarkovChain or has an unsupported version
+	 */
+	public static <K extends Comparable<K>, T extends List<K> & Comparable<T>, R extends Supplier<T> & INameable>
+			MappedMarkovChain<K,T,R> open(Path path, IKeyCodec<K> keyCodec, Function<List<K>, T> stateFactory) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if(channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Mapped MarkovChain too large: " + channel.size());
+			}
+			MappedByteBuffer mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new MappedMarkovChain<>(mappedBuffer, keyCodec, stateFactory);
+		}
+	}
+
+	/**
+	 * Writes a MarkovChain in the mapped layout, replacing the file if it exists.
+	 * @param markovChain MarkovChain to write
+	 * @param path the file to write
+	 * @param keyCodec writes K
+	 * @throws IOException
+	 */
+	public static <K extends Comparable<K>, T extends List<K> & Comparable<T>, R extends Supplier<T> & INameable>
+			void write(MarkovChain<K,T,R> markovChain, Path path, IKeyCodec<K> keyCodec) throws IOException {
+		try(OutputStream outputStream = Files.newOutputStream(path)) {
+			write(markovChain, outputStream, keyCodec);
+		}
+	}
+
+	/**
+	 * Writes a MarkovChain in the mapped layout. The OutputStream is flushed but not closed.
+	 * @param markovChain MarkovChain to write
+	 * @param outputStream
+	 * @param keyCodec writes K
+	 * @throws IOException
+	 */
+	public static <K extends Comparable<K>, T extends List<K> & Comparable<T>, R extends Supplier<T> & INameable>
+			void write(MarkovChain<K,T,R> markovChain, OutputStream outputStream, IKeyCodec<K> keyCodec) throws IOException {
+		/*
+		 * K indexes are assigned in K order so that sorting the states by index is their natural order
+		 */
+		TreeMap<K, Integer> sortedKeys = new TreeMap<>();
+		for(Map.Entry<T, CollectorStats<K,T,R>> entry : markovChain.entrySet()) {
+			for(K k : entry.getKey()) {
+				sortedKeys.put(k, 0);
+			}
+			for(K k : entry.getValue().getOccurrenceProbabilityMap().keySet()) {
+				sortedKeys.put(k, 0);
+			}
+		}
+		int index = 0;
+		for(Map.Entry<K, Integer> entry : sortedKeys.entrySet()) {
+			entry.setValue(index++);
+		}
+		List<int[]> stateIndexes = new ArrayList<>(markovChain.size());
+		List<CollectorStats<K,T,R>> states = new ArrayList<>(markovChain.size());
+		for(Map.Entry<T, CollectorStats<K,T,R>> entry : markovChain.entrySet()) {
+			int[] stateIndex = entry.getKey().stream().mapToInt(sortedKeys::get).toArray();
+			stateIndexes.add(stateIndex);
+			states.add(entry.getValue());
+		}
+		Integer[] order = new Integer[states.size()];
+		Arrays.setAll(order, i -> i);
+		Arrays.sort(order, (i, j) -> Arrays.compare(stateIndexes.get(i), stateIndexes.get(j)));
+
+		int nstateKeys = 0;
+		int ntransitions = 0;
+		int ninitial = 0;
+		for(int i=0; i<order.length; i++) {
+			nstateKeys += stateIndexes.get(i).length;
+			ntransitions += states.get(i).size();
+			ninitial += states.get(i).isInitial() ? 1 : 0;
+		}
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream, MarkovChainSnapshot.BUFFER_SIZE));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(markovChain.getOrder());
+		out.writeInt(order.length);
+		out.writeInt(ntransitions);
+		out.writeInt(ninitial);
+		out.writeInt(sortedKeys.size());
+		out.writeInt(nstateKeys);
+		int offset = 0;
+		for(Integer i : order) {
+			out.writeInt(offset);
+			offset += stateIndexes.get(i).length;
+		}
+		out.writeInt(offset);
+		for(Integer i : order) {
+			for(int k : stateIndexes.get(i)) {
+				out.writeInt(k);
+			}
+		}
+		for(Integer i : order) {
+			CollectorStats<K,T,R> cstats = states.get(i);
+			out.writeInt((cstats.isInitial() ? MarkovChainSnapshot.FLAG_INITIAL : 0) | (cstats.isTerminal() ? MarkovChainSnapshot.FLAG_TERMINAL : 0));
+		}
+		offset = 0;
+		for(Integer i : order) {
+			out.writeInt(offset);
+			offset += states.get(i).size();
+		}
+		out.writeInt(offset);
+		for(Integer i : order) {
+			for(K k : states.get(i).getOccurrenceProbabilityMap().keySet()) {
+				out.writeInt(sortedKeys.get(k));
+			}
+		}
+		for(Integer i : order) {
+			int cumulative = 0;
+			for(OccurrenceProbability op : states.get(i).getOccurrenceProbabilityMap().values()) {
+				cumulative += op.getOccurrence();
+				out.writeInt(cumulative);
+			}
+		}
+		long cumulative = 0;
+		for(Integer i : order) {
+			cumulative += states.get(i).getTotalOccurrance();
+			out.writeLong(cumulative);
+		}
+		for(int i=0; i<order.length; i++) {
+			if(states.get(order[i]).isInitial()) {
+				out.writeInt(i);
+			}
+		}
+		cumulative = 0;
+		for(Integer i : order) {
+			if(states.get(i).isInitial()) {
+				cumulative += states.get(i).getTotalOccurrance();
+				out.writeLong(cumulative);
+			}
+		}
+		out.writeUTF(markovChain.getName());
+		for(K k : sortedKeys.keySet()) {
+			keyCodec.write(k, out);
+		}
+		out.flush();
+		log.debug("wrote " + order.length + " states, " + ntransitions + " transitions, " + sortedKeys.size() + " keys");
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getOrder() {
+		return order;
+	}
+
+	public int size() {
+		return nstates;
+	}
+
+	public boolean isEmpty() {
+		return nstates == 0;
+	}
+
+	public boolean isPickInitialSeed() {
+		return pickInitialSeed;
+	}
+
+	public void setPickInitialSeed(boolean pickInitialSeed) {
+		this.pickInitialSeed = pickInitialSeed;
+	}
+
+	public boolean isWeightedSeed() {
+		return weightedSeed;
+	}
+
+	/**
+	 * If true, seeds are selected with probability proportional to their total occurrences
+	 * instead of uniformly.
+	 * @param weightedSeed
+	 */
+	public void setWeightedSeed(boolean weightedSeed) {
+		this.weightedSeed = weightedSeed;
+	}
+
+	public boolean containsKey(T state) {
+		return indexOf(state) >= 0;
+	}
+
+	/**
+	 * Materializes the CollectorStats of a state from the mapping. The result has no Suppliers
+	 * and is not cached, use sampleNext() and getTotalOccurrance() on hot paths.
+	 * @param state the T state
+	 * @return a new CollectorStats or null if the state is not in the mapping
+	 */
+	public CollectorStats<K,T,R> get(T state) {
+		int index = indexOf(state);
+		if(index < 0) {
+			return null;
+		}
+		CollectorStats<K,T,R> cstats = new CollectorStats<>(stateFactory.apply(new ArrayList<>(state)));
+		int flag = getInt(flags, index);
+		cstats.setInitial((flag & MarkovChainSnapshot.FLAG_INITIAL) != 0);
+		cstats.setTerminal((flag & MarkovChainSnapshot.FLAG_TERMINAL) != 0);
+		int previous = 0;
+		for(int t = getInt(transitionOffsets, index); t < getInt(transitionOffsets, index + 1); t++) {
+			int cumulative = getInt(transitionCumulative, t);
+			cstats.restoreOccurrence(keys.get(getInt(transitionKeys, t)), cumulative - previous);
+			previous = cumulative;
+		}
+		return cstats;
+	}
+
+	/**
+	 * @param state the T state
+	 * @return the total occurrence of the state or 0 if it is not in the mapping
+	 */
+	public int getTotalOccurrance(T state) {
+		int index = indexOf(state);
+		return index < 0 ? 0 : totalOccurrance(index);
+	}
+
+	/**
+	 * Selects the next K following a given state in O(log #successors) directly from the mapping.
+	 * @param state the current T state
+	 * @param random the source of randomness
+	 * @return K or null if the state is not in the mapping or has no occurrences
+	 */
+	public K sampleNext(T state, Random random) {
+		int index = indexOf(state);
+		if(index < 0) {
+			return null;
+		}
+		int low = getInt(transitionOffsets, index);
+		int high = getInt(transitionOffsets, index + 1) - 1;
+		if(high < low) {
+			return null;
+		}
+		int r = random.nextInt(getInt(transitionCumulative, high));
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(getInt(transitionCumulative, mid) > r) {
+				high = mid;
+			}
+			else {
+				low = mid + 1;
+			}
+		}
+		return keys.get(getInt(transitionKeys, low));
+	}
+
+	public K sampleNext(T state) {
+		return sampleNext(state, RandomSource.getDefault().current());
+	}
+
+	public T pickSeed() {
+		return pickSeed(RandomSource.getDefault().current());
+	}
+
+	/**
+	 * Selects a seed uniformly or weighted by occurrence (isWeightedSeed()),<br>
+	 * restricted to initial states if isPickInitialSeed() and there is at least one initial state.
+	 * @param random the source of randomness
+	 * @return T seed or null if the mapping is empty
+	 */
+	public T pickSeed(Random random) {
+		if(nstates == 0) {
+			return null;
+		}
+		int index;
+		if(pickInitialSeed && ninitial > 0) {
+			int i = weightedSeed ? pickWeighted(initialCumulative, ninitial, random) : -1;
+			index = getInt(initialStates, i >= 0 ? i : random.nextInt(ninitial));
+		}
+		else {
+			int i = weightedSeed ? pickWeighted(seedCumulative, nstates, random) : -1;
+			index = i >= 0 ? i : random.nextInt(nstates);
+		}
+		return getState(index);
+	}
+
+	/**
+	 * @return List of the initial states, ordered lexicographically by their K values (the K-index order of the mapping),<br>
+	 *  which need not match the order of the chain that was written
+	 */
+	public List<T> getInitialStates() {
+		List<T> initial = new ArrayList<>(ninitial);
+		for(int i=0; i<ninitial; i++) {
+			initial.add(getState(getInt(initialStates, i)));
+		}
+		return initial;
+	}
+
+	/**
+	 * @return List of all the states, ordered lexicographically by their K values (the K-index order of the mapping),<br>
+	 *  which need not match the order of the chain that was written
+	 */
+	public List<T> getStates() {
+		List<T> states = new ArrayList<>(nstates);
+		for(int i=0; i<nstates; i++) {
+			states.add(getState(i));
+		}
+		return states;
+	}
+
+	private T getState(int index) {
+		int start = getInt(stateKeyOffsets, index);
+		int end = getInt(stateKeyOffsets, index + 1);
+		List<K> stateKeyList = new ArrayList<>(end - start);
+		for(int i=start; i<end; i++) {
+			stateKeyList.add(keys.get(getInt(stateKeys, i)));
+		}
+		return stateFactory.apply(stateKeyList);
+	}
+
+	private int totalOccurrance(int index) {
+		int end = getInt(transitionOffsets, index + 1);
+		return end > getInt(transitionOffsets, index) ? getInt(transitionCumulative, end - 1) : 0;
+	}
+
+	/**
+	 * Binary search for the state with the same K indexes.
+	 * @return the state index or -1
+	 */
+	private int indexOf(T state) {
+		int[] target = new int[state.size()];
+		for(int i=0; i<target.length; i++) {
+			Integer k = keyIndex.get(state.get(i));
+			if(k == null) {
+				return -1;
+			}
+			target[i] = k;
+		}
+		int low = 0;
+		int high = nstates - 1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compareState(mid, target);
+			if(cmp < 0) {
+				low = mid + 1;
+			}
+			else if(cmp > 0) {
+				high = mid - 1;
+			}
+			else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	private int compareState(int index, int[] target) {
+		int start = getInt(stateKeyOffsets, index);
+		int length = getInt(stateKeyOffsets, index + 1) - start;
+		for(int i=0; i<length && i<target.length; i++) {
+			int cmp = Integer.compare(getInt(stateKeys, start + i), target[i]);
+			if(cmp != 0) {
+				return cmp;
+			}
+		}
+		return Integer.compare(length, target.length);
+	}
+
+	/**
+	 * @return the index of the first cumulative weight > a random value, or -1 if all weights are 0
+	 */
+	private int pickWeighted(int section, int n, Random random) {
+		long total = getLong(section, n - 1);
+		if(total <= 0) {
+			return -1;
+		}
+		long r = (long)(random.nextDouble() * total);
+		int low = 0;
+		int high = n - 1;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(getLong(section, mid) > r) {
+				high = mid;
+			}
+			else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	private int getInt(int section, int i) {
+		return buffer.getInt(section + i * Integer.BYTES);
+	}
+
+	private long getLong(int section, int i) {
+		return buffer.getLong(section + i * Long.BYTES);
+	}
+}
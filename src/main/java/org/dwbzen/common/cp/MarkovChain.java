@@ -1,17 +1,25 @@
 package org.dwbzen.common.cp;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.SortedMap;
 import java.util.SortedSet;
-import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
@@ -49,6 +57,7 @@ public class MarkovChain<K extends Comparable<K>, T extends List<K> & Comparable
 	
 	static String COMMA_SPACE = ", ";
 	static OutputStyle outputStyle = OutputStyle.TEXT;
+	static final int BUFFER_SIZE = 1 << 16;
 	
 	/**
 	 * Creates a MarkovChain with a given Comparator.
@@ -65,16 +74,41 @@ public class MarkovChain<K extends Comparable<K>, T extends List<K> & Comparable
 	}
 	
 	/**
-	 * Effectively combine another MarkovChain to this to create a single instance.
-	 * @param chainToAdd
+	 * Effectively combine another MarkovChain to this to create a single instance.<br>
+	 * CollectorStats for the same key are merged by summing their occurrence and supplier counts,
+	 * new keys are added as copies so the two chains don't share state.
+	 * @param chainToAdd MarkovChain to add, unchanged
 	 */
 	public MarkovChain<K,T,R> add(MarkovChain<K,T,R> chainToAdd) {
-		for(T key : chainToAdd.keySet()) {
-			CollectorStats<K, T, R> cstats = chainToAdd.get(key);
-			this.put(key, cstats);
+		for(Map.Entry<T, CollectorStats<K, T, R>> entry : chainToAdd.entrySet()) {
+			CollectorStats<K, T, R> cstats = get(entry.getKey());
+			if(cstats == null) {
+				cstats = new CollectorStats<>(entry.getValue().getSubsetLength());
+				put(entry.getKey(), cstats);
+			}
+			cstats.merge(entry.getValue());
 		}
+		reindex();
 		return this;
 	}
+	
+	/**
+	 * Seals this MarkovChain and copies its sampling tables into an immutable FrozenMarkovChain
+	 * that any number of threads can generate from without locks.
+	 * @return a new FrozenMarkovChain
+	 */
+	public FrozenMarkovChain<K,T,R> freeze() {
+		return new FrozenMarkovChain<>(this);
+	}
+
+	/**
+	 * Creates the sparse state-to-state transition matrix of this MarkovChain.
+	 * @param stateFactory creates a T state from the List of its K
+	 * @return a new TransitionMatrix
+	 */
+	public TransitionMatrix<K,T> getTransitionMatrix(Function<List<K>, T> stateFactory) {
+		return new TransitionMatrix<>(this, stateFactory);
+	}
 
 	public String getName() {
 		return name;
@@ -84,6 +118,11 @@ public class MarkovChain<K extends Comparable<K>, T extends List<K> & Comparable
 		this.name = name;
 	}
 	
+	@Override
+	protected String getMetricsName() {
+		return name;
+	}
+	
 	public int getOrder() {
 		return order;
 	}
@@ -100,15 +139,7 @@ public class MarkovChain<K extends Comparable<K>, T extends List<K> & Comparable
 	}
 	
 	public String getMarkovChainDisplayText(boolean showSupplierCounts) {
-		StringBuilder sb = new StringBuilder();
-		for(T key : this.keySet()) {
-			CollectorStats<K, T, R> cstats = this.get(key);
-			cstats.setShowSupplierCounts(showSupplierCounts);
-			sb.append("'" + key.toString() + "'\t" + cstats.getTotalOccurrance());
-			sb.append("\n");
-			sb.append(cstats.toString(showSupplierCounts));
-		}
-		return sb.toString();
+		return getMarkovChainDisplayText(OutputStyle.TEXT, showSupplierCounts);
 	}
 	
 	public String getMarkovChainDisplayText(OutputStyle outputStyle) {
@@ -116,63 +147,123 @@ public class MarkovChain<K extends Comparable<K>, T extends List<K> & Comparable
 	}
 	
 	public String getMarkovChainDisplayText(OutputStyle outputStyle, boolean showSupplierCounts) {
-		String output = null;
+		StringWriter writer = new StringWriter();
+		try {
+			writeMarkovChainDisplayText(outputStyle, showSupplierCounts, writer);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);		// not thrown by StringWriter
+		}
+		return writer.toString();
+	}
+	
+	/**
+	 * Streams the MarkovChain display text one state at a time so memory use does not grow with the size of the chain.
+	 * The OutputStream is flushed but not closed.
+	 * @param outputStyle TEXT, JSON or CSV
+	 * @param showSupplierCounts
+	 * @param outputStream written as UTF-8
+	 * @throws IOException
+	 */
+	public void writeMarkovChainDisplayText(OutputStyle outputStyle, boolean showSupplierCounts, OutputStream outputStream) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+		writeMarkovChainDisplayText(outputStyle, showSupplierCounts, writer);
+		writer.flush();
+	}
+	
+	/**
+	 * Streams the MarkovChain display text one state at a time. The Writer is not flushed or closed.
+	 * @param outputStyle TEXT, JSON or CSV
+	 * @param showSupplierCounts
+	 * @param writer
+	 * @throws IOException
+	 */
+	public void writeMarkovChainDisplayText(OutputStyle outputStyle, boolean showSupplierCounts, Writer writer) throws IOException {
 		if(outputStyle == OutputStyle.TEXT) {
-			output =  getMarkovChainDisplayText(showSupplierCounts) ;
+			for(Map.Entry<T, CollectorStats<K, T, R>> entry : entrySet()) {
+				CollectorStats<K, T, R> cstats = entry.getValue();
+				cstats.setShowSupplierCounts(showSupplierCounts);
+				writer.write("'" + entry.getKey().toString() + "'\t" + cstats.getTotalOccurrance());
+				writer.write("\n");
+				writer.write(cstats.toString(showSupplierCounts));
+			}
 		}
 		else if(outputStyle==OutputStyle.JSON) {
-			output = toJson(true);
+			writeJson(writer);
 		}
 		else if(outputStyle == OutputStyle.CSV) {
-			output = getMarkovChainCsv();
+			writeMarkovChainCsv(writer);
 		}
-		return output;
 	}
 	
-	private String getMarkovChainCsv() {
-		StringBuilder sb = new StringBuilder();		// rows+values
-
-		/*
-		 * Build a sorted list of column headings and values by row
-		 */
+	/**
+	 * Streams the same JSON as toJson(true) through a JsonGenerator. The Writer is not closed.
+	 * @param writer
+	 * @throws IOException
+	 */
+	public void writeJson(Writer writer) throws IOException {
+		JsonGenerator generator = IJson.mapper.getFactory().createGenerator(writer);
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		IJson.mapper.writerWithDefaultPrettyPrinter()
+			.with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+			.with(SerializationFeature.WRITE_ENUMS_USING_TO_STRING)
+			.without(SerializationFeature.WRITE_CHAR_ARRAYS_AS_JSON_ARRAYS)
+			.without(SerializationFeature.WRITE_SINGLE_ELEM_ARRAYS_UNWRAPPED)
+			.writeValue(generator, this);
+		generator.flush();
+	}
+	
+	/**
+	 * Streams the transition matrix as a dense CSV, one row per state in key order and one column per distinct K.<br>
+	 * Only the column headings are held in memory. For large vocabularies use writeSparseCsv.
+	 * @param writer
+	 * @throws IOException
+	 */
+	public void writeMarkovChainCsv(Writer writer) throws IOException {
 		SortedSet<String> columnSet = new TreeSet<>();
-		SortedSet<String> rowSet = new TreeSet<>();
-		SortedMap<String, Map<String, OccurrenceProbability>> rowValues = new TreeMap<>();
-		
-		for(T key : this.keySet()) {
-			CollectorStats<K, T, R> cstats = get(key);
-			rowSet.add(key.toString());
-			Map<K, OccurrenceProbability> probabilityMap = cstats.getOccurrenceProbabilityMap();
-			Map<String, OccurrenceProbability> probValue = new HashMap<>();
-			for(K k : probabilityMap.keySet()) {
+		for(CollectorStats<K, T, R> cstats : values()) {
+			for(K k : cstats.getOccurrenceProbabilityMap().keySet()) {
 				columnSet.add(k.toString());
-				OccurrenceProbability occurrenceProbability = probabilityMap.get(k);
-				probValue.put(k.toString(), occurrenceProbability);
-				rowValues.put(key.toString(), probValue);
 			}
 		}
-		/*
-		 * Create the spreadsheet from rowValues map
-		 */
-		sb.append("key");
+		writer.write("key");
 		for(String columnKey : columnSet) { // row 1 column headings
-			sb.append("," + columnKey);
+			writer.write("," + columnKey);
 		}
-		sb.append("\n");
+		writer.write("\n");
 		OccurrenceProbability zeroProb = new OccurrenceProbability();
-		for(String rowKey : rowValues.keySet()) {
-			Map<String, OccurrenceProbability> probValue = rowValues.get(rowKey);
-			sb.append(rowKey);
+		Map<String, OccurrenceProbability> probValue = new HashMap<>();
+		for(Map.Entry<T, CollectorStats<K, T, R>> entry : entrySet()) {
+			Map<K, OccurrenceProbability> probabilityMap = entry.getValue().getOccurrenceProbabilityMap();
+			if(probabilityMap.isEmpty()) {
+				continue;
+			}
+			probValue.clear();
+			for(Map.Entry<K, OccurrenceProbability> occurrence : probabilityMap.entrySet()) {
+				probValue.put(occurrence.getKey().toString(), occurrence.getValue());
+			}
+			writer.write(entry.getKey().toString());
 			for(String columnKey : columnSet) {
-				OccurrenceProbability op = zeroProb;
-				if(probValue.containsKey(columnKey)) {
-					 op = probValue.get(columnKey);
-				}
-				sb.append("," + op.getProbabilityText());
+				writer.write("," + probValue.getOrDefault(columnKey, zeroProb).getProbabilityText());
+			}
+			writer.write("\n");
+		}
+	}
+	
+	/**
+	 * Streams the non-zero entries of the transition matrix as CSV rows of key,next,occurrence,probability
+	 * in key order. Nothing is held in memory.
+	 * @param writer
+	 * @throws IOException
+	 */
+	public void writeSparseCsv(Writer writer) throws IOException {
+		writer.write("key,next,occurrence,probability\n");
+		for(Map.Entry<T, CollectorStats<K, T, R>> entry : entrySet()) {
+			String key = entry.getKey().toString();
+			for(Map.Entry<K, OccurrenceProbability> occurrence : entry.getValue().getOccurrenceProbabilityMap().entrySet()) {
+				OccurrenceProbability op = occurrence.getValue();
+				writer.write(key + "," + occurrence.getKey() + "," + op.getOccurrence() + "," + op.getProbabilityText() + "\n");
 			}
-			sb.append("\n");
 		}
-		return sb.toString();
 	}
 	
 	public String getSortedDisplayText(OutputStyle outputStyle) {
@@ -180,54 +271,90 @@ public class MarkovChain<K extends Comparable<K>, T extends List<K> & Comparable
 	}
 	
 	public String getSortedDisplayText(OutputStyle outputStyle, boolean showSupplierCounts) {
+		StringWriter writer = new StringWriter();
+		try {
+			writeSortedDisplayText(outputStyle, showSupplierCounts, writer);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);		// not thrown by StringWriter
+		}
+		return writer.toString();
+	}
+	
+	/**
+	 * Streams the states sorted by total occurrence, and the transitions of each state sorted by occurrence.
+	 * The OutputStream is flushed but not closed.
+	 * @param outputStyle TEXT, JSON or CSV
+	 * @param showSupplierCounts
+	 * @param outputStream written as UTF-8
+	 * @throws IOException
+	 */
+	public void writeSortedDisplayText(OutputStyle outputStyle, boolean showSupplierCounts, OutputStream outputStream) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+		writeSortedDisplayText(outputStyle, showSupplierCounts, writer);
+		writer.flush();
+	}
+	
+	/**
+	 * Streams the states sorted by total occurrence, and the transitions of each state sorted by occurrence.<br>
+	 * Only the sort order of the states is held in memory. CSV output is the same as writeMarkovChainCsv.
+	 * The Writer is not closed.
+	 * @param outputStyle TEXT, JSON or CSV
+	 * @param showSupplierCounts
+	 * @param writer
+	 * @throws IOException
+	 */
+	public void writeSortedDisplayText(OutputStyle outputStyle, boolean showSupplierCounts, Writer writer) throws IOException {
 		if(outputStyle==OutputStyle.CSV) {
-			return getMarkovChainCsv();
+			writeMarkovChainCsv(writer);
+			return;
 		}
-		StringBuilder sb = new StringBuilder();
-		LinkedHashMap<T, CollectorStats<K,T, R>> sortedChain = (LinkedHashMap<T, CollectorStats<K,T,R>>) sortByValue();
+		JsonGenerator generator = null;
 		if(outputStyle==OutputStyle.JSON) {
-			sb.append("[\n");
+			generator = IJson.mapper.getFactory().createGenerator(writer);
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			generator.useDefaultPrettyPrinter();
+			generator.writeStartArray();
 		}
+		LinkedHashMap<T, CollectorStats<K,T, R>> sortedChain = (LinkedHashMap<T, CollectorStats<K,T,R>>) sortByValue();
 		for(T t : sortedChain.keySet()) {
 			CollectorStats<K, T, R>  cstats = (CollectorStats<K, T, R>) sortedChain.get(t);
 			Map<K, OccurrenceProbability> sortedStats = (Map<K, OccurrenceProbability>) cstats.sortByValue();
 			if(outputStyle==OutputStyle.TEXT) {
-				sb.append(t.toString() + "\t" + cstats.getTotalOccurrance());
-				sb.append("\n");
+				writer.write(t.toString() + "\t" + cstats.getTotalOccurrance());
+				writer.write("\n");
 			}
 			else if(outputStyle==OutputStyle.JSON) {
-				sb.append("{ " + "\"" + t.toString() + "\" : \n  {\n" );
-				sb.append("  \"totalOccurrence\" : " + cstats.getTotalOccurrance() + ",\n");
+				generator.writeStartObject();
+				generator.writeObjectFieldStart(t.toString());
+				generator.writeNumberField("totalOccurrence", cstats.getTotalOccurrance());
 			}
 			for(K key2 : sortedStats.keySet()) {
 				OccurrenceProbability op = sortedStats.get(key2);
 				if(outputStyle==OutputStyle.TEXT) {
-					sb.append("  " + key2 + "\t" + op.getOccurrence() + "\t" + op.getProbabilityText());
+					StringBuilder sb = new StringBuilder("  " + key2 + "\t" + op.getOccurrence() + "\t" + op.getProbabilityText());
 					if(showSupplierCounts) {
 						cstats.getSupplierCountsString(key2, sb);
 					}
 					sb.append("\n");
+					writer.write(sb.toString());
 				}
 				else if(outputStyle==OutputStyle.JSON) {
-					sb.append("   \"" + key2 + "\": {\n" 
-							+ "      \"occurrence\" : "  + op.getOccurrence() + ",\n"
-							+ "      \"probability\" : " + op.getProbabilityText());
-					sb.append("\n    },\n");
+					generator.writeObjectFieldStart(key2.toString());
+					generator.writeNumberField("occurrence", op.getOccurrence());
+					generator.writeFieldName("probability");
+					generator.writeNumber(op.getProbabilityText());
+					generator.writeEndObject();
 				}
 			}
 			if(outputStyle==OutputStyle.JSON) {
-				sb.deleteCharAt(sb.length()-2);	// trailing comma
-				sb.append("  }\n},\n");		// closing braces
+				generator.writeEndObject();
+				generator.writeEndObject();
 			}
 		}
 		if(outputStyle==OutputStyle.JSON) {
-			sb.deleteCharAt(sb.length()-2);	// trailing comma
-			sb.append("]");
+			generator.writeEndArray();
+			generator.flush();
 		}
-		return sb.toString();
 	}
 	
 }
-
-
-
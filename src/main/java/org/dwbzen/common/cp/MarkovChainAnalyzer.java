@@ -0,0 +1,136 @@
+package org.dwbzen.common.cp;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.dwbzen.common.math.OccurrenceProbability;
+import org.dwbzen.common.util.INameable;
+
+/**
+ * Computes chain-quality statistics of a MarkovChain from raw occurrence counts, to help choose the order
+ * and the CompactionPolicy thresholds.<br>
+ * getStatistics() makes one parallel pass over the states. score() streams a held-out corpus through the chain
+ * without materializing it, using additive smoothing over the K vocabulary of the chain.<br>
+ * The MarkovChain is sealed by the constructor and must not be changed while analyzing.
+ *
+ * @param <K> a base class
+ * @param <T> class that implements List<K>
+ * @param <R> class that is a Supplier of <T>
+ */
+public class MarkovChainAnalyzer<K extends Comparable<K>, T extends List<K> & Comparable<T>, R extends Supplier<T> & INameable> {
+
+	protected static final Logger log = LogManager.getLogger(MarkovChainAnalyzer.class);
+
+	public static final double DEFAULT_SMOOTHING = 1.0;
+
+	private final MarkovChain<K,T,R> markovChain;
+	private final Function<List<K>, T> stateFactory;
+	private double smoothing = DEFAULT_SMOOTHING;
+
+	/**
+	 * @param markovChain a trained MarkovChain
+	 * @param stateFactory creates a T state from a List of K
+	 */
+	public MarkovChainAnalyzer(MarkovChain<K,T,R> markovChain, Function<List<K>, T> stateFactory) {
+		this.markovChain = markovChain;
+		this.stateFactory = stateFactory;
+		markovChain.seal();
+	}
+
+	/**
+	 * @return ChainStatistics of the MarkovChain computed in one parallel pass
+	 */
+	public ChainStatistics<T> getStatistics() {
+		ChainStatistics.Accumulator<T> accumulator = markovChain.entrySet().parallelStream().collect(
+				ChainStatistics.Accumulator<T>::new,
+				(acc, entry) -> {
+					CollectorStats<K,T,R> cstats = entry.getValue();
+					acc.add(entry.getKey(), counts(cstats), cstats.getTotalOccurrance());
+				},
+				ChainStatistics.Accumulator::combine);
+		return new ChainStatistics<>(accumulator);
+	}
+
+	private int[] counts(CollectorStats<K,T,R> cstats) {
+		Map<K, OccurrenceProbability> map = cstats.getOccurrenceProbabilityMap();
+		int[] counts = new int[map.size()];
+		int i = 0;
+		for(OccurrenceProbability op : map.values()) {
+			counts[i++] = op.getOccurrence();
+		}
+		return counts;
+	}
+
+	/**
+	 * @return the number of distinct K in the states and successors of the MarkovChain
+	 */
+	public long getVocabularySize() {
+		return markovChain.entrySet().parallelStream()
+				.flatMap(entry -> Stream.concat(entry.getKey().stream(), entry.getValue().getOccurrenceProbabilityMap().keySet().stream()))
+				.distinct()
+				.count();
+	}
+
+	/**
+	 * Scores a held-out corpus. Each sequence predicts every K after its first order K from the state before it.
+	 * A K seen c times after a state seen N times has probability (c + smoothing) / (N + smoothing * V), V the vocabulary size,
+	 * and a K after an unknown state has probability 1/V.<br>
+	 * The stream is consumed once and may be parallel.
+	 * 
+	 * @param sequences the held-out sequences, for example the words of a Sentence
+	 * @return HeldOutScore
+	 */
+	public HeldOutScore score(Stream<? extends List<K>> sequences) {
+		int order = markovChain.getOrder();
+		double vocabulary = Math.max(1, getVocabularySize());
+		HeldOutScore.Accumulator accumulator = sequences.collect(
+				HeldOutScore.Accumulator::new,
+				(acc, sequence) -> {
+					acc.sequences++;
+					for(int i = 0; i + order < sequence.size(); i++) {
+						T state = stateFactory.apply(sequence.subList(i, i + order));
+						CollectorStats<K,T,R> cstats = markovChain.get(state);
+						double probability;
+						if(cstats == null) {
+							acc.unseenStates++;
+							probability = 1 / vocabulary;
+						}
+						else {
+							OccurrenceProbability op = cstats.getOccurrenceProbabilityMap().get(sequence.get(i + order));
+							int count = op == null ? 0 : op.getOccurrence();
+							if(count == 0) {
+								acc.unseenTransitions++;
+							}
+							probability = (count + smoothing) / (cstats.getTotalOccurrance() + smoothing * vocabulary);
+						}
+						acc.predictions++;
+						acc.logLoss -= ChainStatistics.log2(probability);
+					}
+				},
+				HeldOutScore.Accumulator::combine);
+		return new HeldOutScore(accumulator);
+	}
+
+	public double getSmoothing() {
+		return smoothing;
+	}
+
+	/**
+	 * @param smoothing the additive smoothing count, must be > 0 so unseen transitions have a finite log loss
+	 */
+	public void setSmoothing(double smoothing) {
+		if(smoothing <= 0) {
+			throw new IllegalArgumentException("smoothing must be > 0: " + smoothing);
+		}
+		this.smoothing = smoothing;
+	}
+
+	public MarkovChain<K,T,R> getMarkovChain() {
+		return markovChain;
+	}
+}
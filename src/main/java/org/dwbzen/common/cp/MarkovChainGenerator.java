@@ -0,0 +1,192 @@
+package org.dwbzen.common.cp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.dwbzen.common.util.INameable;
+import org.dwbzen.common.util.RandomSource;
+
+/**
+ * Runs many independent random walks over a FrozenMarkovChain in parallel.<br>
+ * Walk i uses its own Random, RandomSource.split(i), so a run with a seeded RandomSource is reproducible:
+ * for a given seed, generate() returns the same sequences in the same order
+ * whatever the parallelism. Walks share nothing but the FrozenMarkovChain, so throughput
+ * scales with the number of threads.
+ *
+ * @param <K> a base class
+ * @param <T> class that implements List<K>
+ * @param <R> class that is a Supplier of <T>
+ */
+public class MarkovChainGenerator<K extends Comparable<K>, T extends List<K> & Comparable<T>, R extends Supplier<T> & INameable> implements IProducer<T, T> {
+
+	protected static final Logger log = LogManager.getLogger(MarkovChainGenerator.class);
+
+	private final FrozenMarkovChain<K,T,R> markovChain;
+	private final Function<List<K>, T> stateFactory;
+	private RandomSource randomSource = null;		// null uses the default RandomSource if seeded, see getRandomSource()
+	private int count = MarkovChainProducer.DEFAULT_COUNT;
+	private int maxLength = MarkovChainProducer.DEFAULT_MAX_LENGTH;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/**
+	 * @param markovChain a FrozenMarkovChain
+	 * @param stateFactory creates a T from a List of K, for states and results
+	 */
+	public MarkovChainGenerator(FrozenMarkovChain<K,T,R> markovChain, Function<List<K>, T> stateFactory) {
+		this.markovChain = markovChain;
+		this.stateFactory = stateFactory;
+	}
+
+	/**
+	 * Produces one sequence starting with a seed state, using the calling thread's Random.
+	 */
+	@Override
+	public T apply(T start) {
+		return walk(start, getRandomSource().current());
+	}
+
+	/**
+	 * @param index the walk number
+	 * @return T the sequence of walk index, or null if the chain is empty
+	 */
+	public T walk(long index) {
+		return walk(index, getRandomSource());
+	}
+
+	private T walk(long index, RandomSource source) {
+		Random random = source.split(index);
+		T start = markovChain.pickSeed(random);
+		return start == null ? null : walk(start, random);
+	}
+
+	private T walk(T start, Random random) {
+		int order = markovChain.getOrder();
+		List<K> keys = new ArrayList<>(maxLength);
+		keys.addAll(start);
+		T state = start;
+		while(keys.size() < maxLength) {
+			K next = markovChain.sampleNext(state, random);
+			if(next == null) {
+				break;
+			}
+			keys.add(next);
+			state = stateFactory.apply(new ArrayList<>(keys.subList(keys.size() - order, keys.size())));
+		}
+		return stateFactory.apply(keys);
+	}
+
+	/**
+	 * Runs walks 0 to count-1 in the ForkJoinPool.
+	 * @return List of T, element i is walk i
+	 */
+	public List<T> generate() {
+		if(markovChain.isEmpty()) {
+			return new ArrayList<>();
+		}
+		try {
+			return pool.submit(() -> stream().parallel().collect(Collectors.toList())).get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+		catch(ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	@Override
+	public Set<T> produce(boolean enableDisplay) {
+		Set<T> results = new TreeSet<>(generate());
+		if(enableDisplay) {
+			results.forEach(System.out::println);
+		}
+		return results;
+	}
+
+	/**
+	 * @return a lazy Stream of walks 0 to count-1, the same sequences sequential or parallel
+	 */
+	@Override
+	public Stream<T> stream() {
+		if(markovChain.isEmpty()) {
+			return Stream.empty();
+		}
+		RandomSource source = getRandomSource();
+		return IntStream.range(0, count).mapToObj(index -> walk(index, source));
+	}
+
+	public FrozenMarkovChain<K,T,R> getMarkovChain() {
+		return markovChain;
+	}
+
+	public long getSeed() {
+		return getRandomSource().getSeed();
+	}
+
+	/**
+	 * @param seed the seed of the whole run. The default is the seed of the default RandomSource if it has one,
+	 * otherwise System.nanoTime()
+	 */
+	public synchronized void setSeed(long seed) {
+		randomSource = new RandomSource(seed);
+	}
+
+	/*
+	 * Without a seed of its own the generator uses the default RandomSource at the time of the call if it is seeded,
+	 * otherwise it fixes a System.nanoTime() seed on first use so the walks of a run come from one seed.
+	 */
+	private synchronized RandomSource getRandomSource() {
+		RandomSource source = randomSource;
+		if(source == null) {
+			source = RandomSource.getDefault();
+			if(!source.isSeeded()) {
+				source = new RandomSource(System.nanoTime());
+				randomSource = source;
+			}
+		}
+		return source;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public void setCount(int count) {
+		this.count = count;
+	}
+
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * @param maxLength the longest sequence, in K, including the seed
+	 */
+	public void setMaxLength(int maxLength) {
+		this.maxLength = maxLength;
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * @param pool runs generate(), default is the common pool
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+}
@@ -0,0 +1,177 @@
+package org.dwbzen.common.cp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.dwbzen.common.util.INameable;
+import org.dwbzen.common.util.RandomSource;
+
+/**
+ * Produces sequences by random walks over a MarkovChain.<br>
+ * Each walk starts from a seed state picked by the MarkovChain and appends one sampled K at a time
+ * until the current state has no successors or maxLength is reached.<br>
+ * stream() and batches() generate lazily, so results can be written out as they are produced in constant memory.
+ * Any number of producers and parallel streams can share one MarkovChain, which is sealed by the constructor
+ * and must not be changed while producing.
+ *
+ * @param <K> a base class
+ * @param <T> class that implements List<K>
+ * @param <R> class that is a Supplier of <T>
+ */
+public class MarkovChainProducer<K extends Comparable<K>, T extends List<K> & Comparable<T>, R extends Supplier<T> & INameable> implements IProducer<T, T> {
+
+	protected static final Logger log = LogManager.getLogger(MarkovChainProducer.class);
+
+	public static final int DEFAULT_COUNT = 100;
+	public static final int DEFAULT_MAX_LENGTH = 50;
+
+	private final MarkovChain<K,T,R> markovChain;
+	private final Function<List<K>, T> stateFactory;
+	private int count = DEFAULT_COUNT;
+	private int maxLength = DEFAULT_MAX_LENGTH;
+	private RandomSource randomSource = null;		// null uses the MarkovChain's RandomSource
+
+	/**
+	 * @param markovChain a trained MarkovChain
+	 * @param stateFactory creates a T from a List of K, for states and results
+	 */
+	public MarkovChainProducer(MarkovChain<K,T,R> markovChain, Function<List<K>, T> stateFactory) {
+		this.markovChain = markovChain;
+		this.stateFactory = stateFactory;
+		markovChain.seal();
+	}
+
+	/**
+	 * Produces one sequence starting with a seed state.
+	 * @param seed T state of the MarkovChain
+	 * @return T the generated sequence
+	 */
+	@Override
+	public T apply(T seed) {
+		return apply(seed, getRandomSource().current());
+	}
+
+	public T apply(T seed, Random random) {
+		int order = markovChain.getOrder();
+		List<K> keys = new ArrayList<>(maxLength);
+		keys.addAll(seed);
+		T state = seed;
+		while(keys.size() < maxLength) {
+			K next = markovChain.sampleNext(state, random);
+			if(next == null) {
+				break;
+			}
+			keys.add(next);
+			state = stateFactory.apply(new ArrayList<>(keys.subList(keys.size() - order, keys.size())));
+		}
+		return stateFactory.apply(keys);
+	}
+
+	/**
+	 * Materializes count sequences, de-duplicated.
+	 * @param enableDisplay if true, writes to System.out results as they are produced.
+	 * @return Set<T> production results
+	 */
+	@Override
+	public Set<T> produce(boolean enableDisplay) {
+		Set<T> results = new TreeSet<>();
+		stream().forEach(result -> {
+			if(enableDisplay) {
+				System.out.println(result);
+			}
+			results.add(result);
+		});
+		return results;
+	}
+
+	/**
+	 * @return a lazy Stream of count sequences, which can be made parallel
+	 */
+	@Override
+	public Stream<T> stream() {
+		if(markovChain.isEmpty()) {
+			return Stream.empty();
+		}
+		return IntStream.range(0, count).mapToObj(i -> next(getRandomSource().current()));
+	}
+
+	/**
+	 * The count sequences in Lists of batchSize, the last one may be shorter.
+	 * Each batch is generated by one thread with its own RandomSource.split(batch), so a parallel Stream of batches
+	 * spreads the walks over threads with less per-element overhead, and is reproducible with a seeded RandomSource.
+	 * @param batchSize sequences per batch
+	 * @return a lazy Stream of batches
+	 */
+	public Stream<List<T>> batches(int batchSize) {
+		if(batchSize <= 0) {
+			throw new IllegalArgumentException("batchSize must be > 0");
+		}
+		if(markovChain.isEmpty()) {
+			return Stream.empty();
+		}
+		int nbatches = (count + batchSize - 1) / batchSize;
+		return IntStream.range(0, nbatches).mapToObj(batch -> {
+			Random random = getRandomSource().split(batch);
+			int size = Math.min(batchSize, count - batch * batchSize);
+			List<T> results = new ArrayList<>(size);
+			for(int i=0; i<size; i++) {
+				results.add(next(random));
+			}
+			return results;
+		});
+	}
+
+	private T next(Random random) {
+		return apply(markovChain.pickSeed(random), random);
+	}
+
+	public MarkovChain<K,T,R> getMarkovChain() {
+		return markovChain;
+	}
+
+	/**
+	 * @return the RandomSource of this producer if set, otherwise that of the MarkovChain
+	 */
+	public RandomSource getRandomSource() {
+		RandomSource source = randomSource;
+		return source == null ? markovChain.getRandomSource() : source;
+	}
+
+	/**
+	 * @param randomSource RandomSource for this producer, null to use the MarkovChain's
+	 */
+	public void setRandomSource(RandomSource randomSource) {
+		this.randomSource = randomSource;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @param count the number of sequences produced by produce(), stream() and batches()
+	 */
+	public void setCount(int count) {
+		this.count = count;
+	}
+
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * @param maxLength the longest sequence, in K, including the seed
+	 */
+	public void setMaxLength(int maxLength) {
+		this.maxLength = maxLength;
+	}
+}
@@ -0,0 +1,277 @@
+package org.dwbzen.common.cp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.dwbzen.common.math.OccurrenceProbability;
+import org.dwbzen.common.util.INameable;
+
+/**
+ * Compact, versioned binary format for a trained MarkovChain.<br>
+ * Every distinct K (in states and transitions) and every Supplier name is written once to a dictionary
+ * and referenced by index. All integers are unsigned varints. Only raw counts are stored,
+ * probabilities and ranges are recomputed when the loaded CollectorStats are first read.<br>
+ * Layout (version 1):
+ * <pre>
+ * int      MAGIC
+ * varint   VERSION
+ * UTF      name
+ * varint   order
+ * varint   #keys, then each K written by the IKeyCodec
+ * varint   #supplier names, then each name as UTF
+ * varint   #states, then for each state in key order:
+ *   varint   subset length, then the key index of each K in the subset
+ *   byte     flags (FLAG_INITIAL | FLAG_TERMINAL)
+ *   varint   #transitions, then (key index, occurrence) for each
+ *   varint   #supplier counts, then (key index, supplier index, count) for each
+ *   varint   #suppliers, then the supplier index of each
+ * </pre>
+ * Writing streams the states so only the dictionaries are held in memory.
+ *
+ * @param <K> a base class
+ * @param <T> class that implements List<K>
+ * @param <R> class that is a Supplier of <T>
+ */
+public class MarkovChainSnapshot<K extends Comparable<K>, T extends List<K> & Comparable<T>, R extends Supplier<T> & INameable> {
+
+	protected static final Logger log = LogManager.getLogger(MarkovChainSnapshot.class);
+
+	public static final int MAGIC = 0x4D4B4348;	// "MKCH"
+	public static final int VERSION = 1;
+	public static final int FLAG_INITIAL = 1;
+	public static final int FLAG_TERMINAL = 2;
+	static final int BUFFER_SIZE = 1 << 16;
+
+	private final IKeyCodec<K> keyCodec;
+	private final Function<List<K>, T> stateFactory;
+	private Function<String, R> supplierFactory = null;
+
+	/**
+	 * @param keyCodec reads and writes K
+	 * @param stateFactory creates a T state from the List of its K
+	 */
+	public MarkovChainSnapshot(IKeyCodec<K> keyCodec, Function<List<K>, T> stateFactory) {
+		this.keyCodec = keyCodec;
+		this.stateFactory = stateFactory;
+	}
+
+	/**
+	 * Only Supplier names are stored, the supplierFactory recreates an R from its name when loading.
+	 * If not set, the Suppliers of the loaded CollectorStats are null.
+	 * @param supplierFactory Function from Supplier name to R
+	 */
+	public void setSupplierFactory(Function<String, R> supplierFactory) {
+		this.supplierFactory = supplierFactory;
+	}
+
+	/**
+	 * Writes the MarkovChain. The OutputStream is flushed but not closed.
+	 * @param markovChain MarkovChain to write
+	 * @param outputStream
+	 * @throws IOException
+	 */
+	public void write(MarkovChain<K,T,R> markovChain, OutputStream outputStream) throws IOException {
+		Map<K, Integer> keyIndex = new TreeMap<>();
+		Map<String, Integer> supplierIndex = new HashMap<>();
+		List<K> keys = new ArrayList<>();
+		List<String> supplierNames = new ArrayList<>();
+		SupplierNames names = markovChain.getSupplierNames();		// shared by all the states of the chain
+		int[] supplierIds = new int[16];		// supplier index + 1 by SupplierNames id, 0 if not indexed yet
+		for(Map.Entry<T, CollectorStats<K,T,R>> entry : markovChain.entrySet()) {
+			CollectorStats<K,T,R> cstats = entry.getValue();
+			for(K k : entry.getKey()) {
+				index(k, keyIndex, keys);
+			}
+			for(K k : cstats.getOccurrenceProbabilityMap().keySet()) {
+				index(k, keyIndex, keys);
+			}
+			for(SupplierCounts counts : cstats.getSupplierCountsMap().values()) {
+				for(int slot=0; slot<counts.capacity(); slot++) {
+					int id = counts.idAt(slot);
+					if(SupplierCounts.isEmpty(id)) {
+						continue;
+					}
+					if(id >= supplierIds.length) {
+						supplierIds = Arrays.copyOf(supplierIds, Math.max(id + 1, supplierIds.length * 2));
+					}
+					if(supplierIds[id] == 0) {
+						supplierIds[id] = index(names.nameOf(id), supplierIndex, supplierNames) + 1;
+					}
+				}
+			}
+			for(String name : cstats.getSupplierMap().keySet()) {
+				index(name, supplierIndex, supplierNames);
+			}
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
+		out.writeInt(MAGIC);
+		writeVarInt(out, VERSION);
+		out.writeUTF(markovChain.getName());
+		writeVarInt(out, markovChain.getOrder());
+		writeVarInt(out, keys.size());
+		for(K k : keys) {
+			keyCodec.write(k, out);
+		}
+		writeVarInt(out, supplierNames.size());
+		for(String name : supplierNames) {
+			out.writeUTF(name);
+		}
+		writeVarInt(out, markovChain.size());
+		for(Map.Entry<T, CollectorStats<K,T,R>> entry : markovChain.entrySet()) {
+			T state = entry.getKey();
+			CollectorStats<K,T,R> cstats = entry.getValue();
+			writeVarInt(out, state.size());
+			for(K k : state) {
+				writeVarInt(out, keyIndex.get(k));
+			}
+			out.writeByte((cstats.isInitial() ? FLAG_INITIAL : 0) | (cstats.isTerminal() ? FLAG_TERMINAL : 0));
+			Map<K, OccurrenceProbability> occurrences = cstats.getOccurrenceProbabilityMap();
+			writeVarInt(out, occurrences.size());
+			for(Map.Entry<K, OccurrenceProbability> occurrence : occurrences.entrySet()) {
+				writeVarInt(out, keyIndex.get(occurrence.getKey()));
+				writeVarInt(out, occurrence.getValue().getOccurrence());
+			}
+			writeVarInt(out, cstats.getSupplierCountsSize());
+			for(Map.Entry<K, SupplierCounts> supplierCounts : cstats.getSupplierCountsMap().entrySet()) {
+				int kindex = keyIndex.get(supplierCounts.getKey());
+				SupplierCounts counts = supplierCounts.getValue();
+				for(int slot=0; slot<counts.capacity(); slot++) {
+					int id = counts.idAt(slot);
+					if(!SupplierCounts.isEmpty(id)) {
+						writeVarInt(out, kindex);
+						writeVarInt(out, supplierIds[id] - 1);
+						writeVarInt(out, counts.countAt(slot));
+					}
+				}
+			}
+			Map<String, R> suppliers = cstats.getSupplierMap();
+			writeVarInt(out, suppliers.size());
+			for(String name : suppliers.keySet()) {
+				writeVarInt(out, supplierIndex.get(name));
+			}
+		}
+		out.flush();
+		log.debug("wrote " + markovChain.size() + " states, " + keys.size() + " keys, " + supplierNames.size() + " suppliers");
+	}
+
+	public MarkovChain<K,T,R> read(InputStream inputStream) throws IOException {
+		return read(inputStream, null);
+	}
+
+	/**
+	 * Reads a MarkovChain. The InputStream is not closed.
+	 * @param inputStream
+	 * @param comparator Comparator for the MarkovChain, if null natural ordering is used.
+	 * @return a new MarkovChain
+	 * @throws IOException if the stream is not a snapshot or has an unsupported version
+	 */
+	public MarkovChain<K,T,R> read(InputStream inputStream, Comparator<? super T> comparator) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream, BUFFER_SIZE));
+		if(in.readInt() != MAGIC) {
+			throw new IOException("Not a MarkovChain snapshot");
+		}
+		int version = readVarInt(in);
+		if(version != VERSION) {
+			throw new IOException("Unsupported MarkovChain snapshot version: " + version);
+		}
+		String name = in.readUTF();
+		int order = readVarInt(in);
+		int nkeys = readVarInt(in);
+		List<K> keys = new ArrayList<>(nkeys);
+		for(int i=0; i<nkeys; i++) {
+			keys.add(keyCodec.read(in));
+		}
+		int nsuppliers = readVarInt(in);
+		List<String> supplierNames = new ArrayList<>(nsuppliers);
+		List<R> suppliers = new ArrayList<>(nsuppliers);
+		for(int i=0; i<nsuppliers; i++) {
+			String supplierName = in.readUTF();
+			supplierNames.add(supplierName);
+			suppliers.add(supplierFactory != null ? supplierFactory.apply(supplierName) : null);
+		}
+
+		MarkovChain<K,T,R> markovChain = new MarkovChain<K,T,R>(comparator, order);
+		markovChain.setName(name);
+		TreeMap<T, CollectorStats<K,T,R>> states = new TreeMap<>(comparator);
+		int nstates = readVarInt(in);
+		for(int i=0; i<nstates; i++) {
+			int length = readVarInt(in);
+			List<K> stateKeys = new ArrayList<>(length);
+			for(int j=0; j<length; j++) {
+				stateKeys.add(keys.get(readVarInt(in)));
+			}
+			CollectorStats<K,T,R> cstats = new CollectorStats<>(stateFactory.apply(stateKeys));
+			int flags = in.readByte();
+			cstats.setInitial((flags & FLAG_INITIAL) != 0);
+			cstats.setTerminal((flags & FLAG_TERMINAL) != 0);
+			int noccurrences = readVarInt(in);
+			for(int j=0; j<noccurrences; j++) {
+				K k = keys.get(readVarInt(in));
+				cstats.restoreOccurrence(k, readVarInt(in));
+			}
+			int nsupplierCounts = readVarInt(in);
+			for(int j=0; j<nsupplierCounts; j++) {
+				K k = keys.get(readVarInt(in));
+				String supplierName = supplierNames.get(readVarInt(in));
+				cstats.restoreSupplierCount(k, supplierName, readVarInt(in));
+			}
+			int nstateSuppliers = readVarInt(in);
+			for(int j=0; j<nstateSuppliers; j++) {
+				int index = readVarInt(in);
+				cstats.restoreSupplier(supplierNames.get(index), suppliers.get(index));
+			}
+			states.put(cstats.getSubset(), cstats);
+		}
+		markovChain.putAll(states);		// sorted bulk load
+		return markovChain;
+	}
+
+	private static <E> int index(E e, Map<E, Integer> index, List<E> list) {
+		Integer i = index.get(e);
+		if(i == null) {
+			i = list.size();
+			index.put(e, i);
+			list.add(e);
+		}
+		return i;
+	}
+
+	static void writeVarInt(DataOutput out, int value) throws IOException {
+		while((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	static int readVarInt(DataInput in) throws IOException {
+		int value = 0;
+		for(int shift = 0; shift < 32; shift += 7) {
+			int b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			if((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+}
@@ -0,0 +1,114 @@
+package org.dwbzen.common.cp;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.dwbzen.common.util.INameable;
+
+/**
+ * Trains a MarkovChain in parallel by splitting the input into shards, collecting each shard
+ * into its own partial MarkovChain on a ForkJoinPool and merging the partials with MarkovChain.add().<br>
+ * The collectFunction is the body of an ICollector: it adds the occurrences of one unit to a MarkovChain.
+ * It is only ever called with the partial chain owned by the calling thread so needs no synchronization.<br>
+ * Usage:<br>
+ * <code>
+ * ParallelMarkovChainCollector&lt;Character, Word, Sentence&gt; collector = 
+ *     new ParallelMarkovChainCollector&lt;&gt;(() -> new MarkovChain&lt;&gt;(order), (chain, sentence) -> collect(chain, sentence));<br>
+ * MarkovChain&lt;Character, Word, Sentence&gt; markovChain = collector.collect(sentences);
+ * </code>
+ *
+ * @param <K> a base class
+ * @param <T> class that implements List<K>
+ * @param <R> class that is a Supplier of <T>
+ */
+public class ParallelMarkovChainCollector<K extends Comparable<K>, T extends List<K> & Comparable<T>, R extends Supplier<T> & INameable> {
+
+	protected static final Logger log = LogManager.getLogger(ParallelMarkovChainCollector.class);
+	public static final int SHARDS_PER_THREAD = 4;
+	
+	private final Supplier<MarkovChain<K,T,R>> chainFactory;
+	private final BiConsumer<MarkovChain<K,T,R>, R> collectFunction;
+	private int shardSize = 0;		// 0 = automatic
+	
+	/**
+	 * @param chainFactory creates an empty MarkovChain, called once per shard and for the result
+	 * @param collectFunction adds the occurrences of one R to a MarkovChain
+	 */
+	public ParallelMarkovChainCollector(Supplier<MarkovChain<K,T,R>> chainFactory, BiConsumer<MarkovChain<K,T,R>, R> collectFunction) {
+		this.chainFactory = chainFactory;
+		this.collectFunction = collectFunction;
+	}
+
+	public int getShardSize() {
+		return shardSize;
+	}
+
+	/**
+	 * Every partial MarkovChain has to be merged, so shards should be as large as load balancing allows.
+	 * The default (0) is SHARDS_PER_THREAD shards per thread of the pool.
+	 * @param shardSize maximum number of inputs collected sequentially into one partial MarkovChain, or 0 for automatic
+	 */
+	public void setShardSize(int shardSize) {
+		if(shardSize < 0) {
+			throw new IllegalArgumentException("shardSize must be >= 0");
+		}
+		this.shardSize = shardSize;
+	}
+	
+	/**
+	 * Collects in the common ForkJoinPool.
+	 * @param inputs List of R to collect
+	 * @return a new MarkovChain containing the occurrences of all the inputs
+	 */
+	public MarkovChain<K,T,R> collect(List<R> inputs) {
+		return collect(inputs, ForkJoinPool.commonPool());
+	}
+	
+	public MarkovChain<K,T,R> collect(List<R> inputs, ForkJoinPool pool) {
+		long start = System.currentTimeMillis();
+		int size = shardSize > 0 ? shardSize : Math.max(1, inputs.size() / (SHARDS_PER_THREAD * pool.getParallelism()));
+		MarkovChain<K,T,R> markovChain = inputs.isEmpty() ? chainFactory.get() : pool.invoke(new ShardTask(inputs, 0, inputs.size(), size));
+		log.debug("collected " + inputs.size() + " inputs into " + markovChain.size() + " states in " 
+				+ (System.currentTimeMillis() - start) + " ms, parallelism: " + pool.getParallelism());
+		return markovChain;
+	}
+	
+	private class ShardTask extends RecursiveTask<MarkovChain<K,T,R>> {
+		private static final long serialVersionUID = -2297036384406474129L;
+		private final List<R> inputs;
+		private final int from;
+		private final int to;
+		private final int size;
+		
+		ShardTask(List<R> inputs, int from, int to, int size) {
+			this.inputs = inputs;
+			this.from = from;
+			this.to = to;
+			this.size = size;
+		}
+
+		@Override
+		protected MarkovChain<K,T,R> compute() {
+			if(to - from <= size) {
+				MarkovChain<K,T,R> partial = chainFactory.get();
+				for(int i=from; i<to; i++) {
+					collectFunction.accept(partial, inputs.get(i));
+				}
+				return partial;
+			}
+			int mid = (from + to) >>> 1;
+			ShardTask left = new ShardTask(inputs, from, mid, size);
+			ShardTask right = new ShardTask(inputs, mid, to, size);
+			right.fork();
+			MarkovChain<K,T,R> leftChain = left.compute();
+			MarkovChain<K,T,R> rightChain = right.join();
+			// merge the smaller partial into the larger
+			return leftChain.size() >= rightChain.size() ? leftChain.add(rightChain) : rightChain.add(leftChain);
+		}
+	}
+}
@@ -0,0 +1,532 @@
+package org.dwbzen.common.cp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.dwbzen.common.math.OccurrenceProbability;
+import org.dwbzen.common.math.OrderedPair;
+import org.dwbzen.common.util.INameable;
+import org.dwbzen.common.util.RandomSource;
+
+/**
+ * Dictionary-encoded MarkovChain engine for large vocabularies.<br>
+ * Each K is interned to an int id and each state T of length order is interned as an int tuple
+ * in an open-addressing IntTupleIndex, so a lookup is one hash probe instead of O(log n) List compareTo calls.
+ * Successors of a state are kept in two int arrays (K id and count) sorted by K id,
+ * and supplier counts are interned (state, K, supplier) tuples with an int count.
+ * There are no TreeMaps or per-transition objects.<br>
+ * The methods mirror those of CollectorStatsMap and MarkovChain: get(T) materializes a CollectorStats,
+ * pickSeed() and sampleNext() work directly on the primitive arrays. Convert with from() and toMarkovChain().<br>
+ * Adding occurrences is not thread-safe. Once collection is complete and seal() has been called any number of threads can read and sample.
+ *
+ * @param <K> a base class
+ * @param <T> class that implements List<K>
+ * @param <R> class that is a Supplier of <T>
+ */
+public class PrimitiveMarkovChain<K extends Comparable<K>, T extends List<K> & Comparable<T>, R extends Supplier<T> & INameable> {
+
+	protected static final Logger log = LogManager.getLogger(PrimitiveMarkovChain.class);
+
+	static final int INITIAL_CAPACITY = 4;
+	static final byte FLAG_INITIAL = 1;
+	static final byte FLAG_TERMINAL = 2;
+
+	private String name = INameable.DEFAULT_NAME;
+	private final int order;
+	private final Function<List<K>, T> stateFactory;
+	private final KeyDictionary<K> keys = new KeyDictionary<>();
+	private final KeyDictionary<String> supplierNames = new KeyDictionary<>();
+	private final List<R> suppliers = new ArrayList<>();
+	private final IntTupleIndex states;
+	private final IntTupleIndex supplierCountIndex = new IntTupleIndex(3);
+	/*
+	 * indexed by state id
+	 */
+	private int[][] successorKeys = new int[16][];
+	private int[][] successorCounts = new int[16][];
+	private int[][] cumulative = new int[16][];		// built on demand, null when stale
+	private int[] successorSize = new int[16];
+	private int[] totals = new int[16];
+	private byte[] flags = new byte[16];
+	private int[] firstSupplierCount = new int[16];
+	/*
+	 * indexed by supplier count id, nextSupplierCount links the supplier counts of a state
+	 */
+	private int[] supplierCounts = new int[16];
+	private int[] nextSupplierCount = new int[16];
+	/*
+	 * cumulative totals for weighted seed selection, built on demand and discarded when counts change
+	 */
+	private long[] seedCumulative = null;
+	private int[] initialStates = null;
+	private long[] initialCumulative = null;
+
+	private boolean pickInitialSeed = false;
+	private boolean weightedSeed = false;
+	private final int[] stateBuffer;
+	private final int[] supplierCountBuffer = new int[3];
+
+	/**
+	 * @param order the length of every state
+	 * @param stateFactory creates a T state from the List of its K
+	 */
+	public PrimitiveMarkovChain(int order, Function<List<K>, T> stateFactory) {
+		this.order = order;
+		this.stateFactory = stateFactory;
+		states = new IntTupleIndex(order);
+		stateBuffer = new int[order];
+	}
+
+	/**
+	 * Creates a PrimitiveMarkovChain with the same states, counts, suppliers and flags as a MarkovChain.
+	 * @param markovChain the MarkovChain to copy, unchanged
+	 * @param stateFactory creates a T state from the List of its K
+	 */
+	public static <K extends Comparable<K>, T extends List<K> & Comparable<T>, R extends Supplier<T> & INameable>
+			PrimitiveMarkovChain<K,T,R> from(MarkovChain<K,T,R> markovChain, Function<List<K>, T> stateFactory) {
+		PrimitiveMarkovChain<K,T,R> chain = new PrimitiveMarkovChain<>(markovChain.getOrder(), stateFactory);
+		chain.setName(markovChain.getName());
+		for(Map.Entry<T, CollectorStats<K,T,R>> entry : markovChain.entrySet()) {
+			CollectorStats<K,T,R> cstats = entry.getValue();
+			int state = chain.internState(entry.getKey());
+			chain.flags[state] |= (cstats.isInitial() ? FLAG_INITIAL : 0) | (cstats.isTerminal() ? FLAG_TERMINAL : 0);
+			for(Map.Entry<K, OccurrenceProbability> occurrence : cstats.getOccurrenceProbabilityMap().entrySet()) {
+				chain.addCount(state, chain.keys.intern(occurrence.getKey()), occurrence.getValue().getOccurrence());
+			}
+			for(Map.Entry<String, R> supplier : cstats.getSupplierMap().entrySet()) {
+				chain.internSupplier(supplier.getKey(), supplier.getValue());
+			}
+			for(Map.Entry<OrderedPair<K,String>, Integer> supplierCount : cstats.getSupplierCounts().entrySet()) {
+				int supplier = chain.internSupplier(supplierCount.getKey().getY(), null);
+				chain.addSupplierCount(state, chain.keys.intern(supplierCount.getKey().getX()), supplier, supplierCount.getValue());
+			}
+		}
+		return chain;
+	}
+
+	/**
+	 * @param comparator Comparator for the MarkovChain, if null natural ordering is used.
+	 * @return a new MarkovChain with the same states, counts, suppliers and flags
+	 */
+	public MarkovChain<K,T,R> toMarkovChain(Comparator<? super T> comparator) {
+		MarkovChain<K,T,R> markovChain = new MarkovChain<K,T,R>(comparator, order);
+		markovChain.setName(name);
+		for(int state=0; state<states.size(); state++) {
+			CollectorStats<K,T,R> cstats = getCollectorStats(state);
+			markovChain.put(cstats.getSubset(), cstats);
+		}
+		return markovChain;
+	}
+
+	public MarkovChain<K,T,R> toMarkovChain() {
+		return toMarkovChain(null);
+	}
+
+	/**
+	 * Adds an occurrence of K following a state, adding the state if it is new.
+	 * @param state T of length order
+	 * @param toccur the next K
+	 * @param theSupplier the Supplier of the state, may be null
+	 */
+	public void addOccurrence(T state, K toccur, R theSupplier) {
+		int stateId = internState(state);
+		int key = keys.intern(toccur);
+		int supplier = internSupplier(theSupplier != null ? theSupplier.getName() : CollectorStats.NO_SUPPLIER, theSupplier);
+		addCount(stateId, key, 1);
+		addSupplierCount(stateId, key, supplier, 1);
+	}
+
+	public void addOccurrence(T state, K toccur) {
+		addOccurrence(state, toccur, null);
+	}
+
+	/**
+	 * Adds the state if it is new and marks it as initial.
+	 * @param state T of length order
+	 */
+	public void setInitial(T state) {
+		flags[internState(state)] |= FLAG_INITIAL;
+		initialStates = null;
+		initialCumulative = null;
+	}
+
+	/**
+	 * Adds the state if it is new and marks it as terminal.
+	 * @param state T of length order
+	 */
+	public void setTerminal(T state) {
+		flags[internState(state)] |= FLAG_TERMINAL;
+	}
+
+	public boolean containsKey(T state) {
+		return findState(state) != IntTupleIndex.NOT_FOUND;
+	}
+
+	/**
+	 * Materializes the CollectorStats of a state. The result is not cached or backed by this chain.
+	 * @param state the T state
+	 * @return a new CollectorStats or null if the state is not in this chain
+	 */
+	public CollectorStats<K,T,R> get(T state) {
+		int stateId = findState(state);
+		return stateId == IntTupleIndex.NOT_FOUND ? null : getCollectorStats(stateId);
+	}
+
+	/**
+	 * @param state the T state
+	 * @return the total occurrence of the state or 0 if it is not in this chain
+	 */
+	public int getTotalOccurrance(T state) {
+		int stateId = findState(state);
+		return stateId == IntTupleIndex.NOT_FOUND ? 0 : totals[stateId];
+	}
+
+	/**
+	 * Selects the next K following a given state in O(log #successors).
+	 * @param state the current T state
+	 * @param random the source of randomness
+	 * @return K or null if the state is not in this chain or has no occurrences
+	 */
+	public K sampleNext(T state, Random random) {
+		int stateId = findState(state);
+		if(stateId == IntTupleIndex.NOT_FOUND || totals[stateId] == 0) {
+			return null;
+		}
+		int[] stateCumulative = getCumulative(stateId);
+		int index = Arrays.binarySearch(stateCumulative, 0, successorSize[stateId], random.nextInt(totals[stateId]) + 1);
+		return keys.get(successorKeys[stateId][index >= 0 ? index : -index - 1]);
+	}
+
+	public K sampleNext(T state) {
+		return sampleNext(state, RandomSource.getDefault().current());
+	}
+
+	public T pickSeed() {
+		return pickSeed(RandomSource.getDefault().current());
+	}
+
+	/**
+	 * Selects a seed uniformly or weighted by occurrence (isWeightedSeed()),<br>
+	 * restricted to initial states if isPickInitialSeed() and there is at least one initial state.
+	 * @param random the source of randomness
+	 * @return T seed or null if this chain is empty
+	 */
+	public T pickSeed(Random random) {
+		if(states.size() == 0) {
+			return null;
+		}
+		int stateId;
+		if(pickInitialSeed && getInitialStateIds().length > 0) {
+			int i = weightedSeed ? pickWeighted(getInitialCumulative(), random) : -1;
+			stateId = initialStates[i >= 0 ? i : random.nextInt(initialStates.length)];
+		}
+		else {
+			int i = weightedSeed ? pickWeighted(getSeedCumulative(), random) : -1;
+			stateId = i >= 0 ? i : random.nextInt(states.size());
+		}
+		return getState(stateId);
+	}
+
+	/**
+	 * @return List of the initial states, in the order they were added
+	 */
+	public List<T> getInitialStates() {
+		List<T> initial = new ArrayList<>();
+		for(int stateId : getInitialStateIds()) {
+			initial.add(getState(stateId));
+		}
+		return initial;
+	}
+
+	/**
+	 * @return List of the terminal states, in the order they were added
+	 */
+	public List<T> getTerminalStates() {
+		List<T> terminal = new ArrayList<>();
+		for(int stateId=0; stateId<states.size(); stateId++) {
+			if((flags[stateId] & FLAG_TERMINAL) != 0) {
+				terminal.add(getState(stateId));
+			}
+		}
+		return terminal;
+	}
+
+	/**
+	 * @return List of all the states, in the order they were added
+	 */
+	public List<T> getStates() {
+		List<T> all = new ArrayList<>(states.size());
+		for(int stateId=0; stateId<states.size(); stateId++) {
+			all.add(getState(stateId));
+		}
+		return all;
+	}
+
+	/**
+	 * Builds the sampling tables of every state and the seed tables.<br>
+	 * Call this once collection is complete so producers don't pay the cost on first use.
+	 */
+	public void seal() {
+		for(int stateId=0; stateId<states.size(); stateId++) {
+			getCumulative(stateId);
+		}
+		getSeedCumulative();
+		getInitialCumulative();
+	}
+
+	public int size() {
+		return states.size();
+	}
+
+	public boolean isEmpty() {
+		return states.size() == 0;
+	}
+
+	/**
+	 * @return the number of distinct K
+	 */
+	public int getVocabularySize() {
+		return keys.size();
+	}
+
+	public int getOrder() {
+		return order;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public boolean isPickInitialSeed() {
+		return pickInitialSeed;
+	}
+
+	public void setPickInitialSeed(boolean pickInitialSeed) {
+		this.pickInitialSeed = pickInitialSeed;
+	}
+
+	public boolean isWeightedSeed() {
+		return weightedSeed;
+	}
+
+	/**
+	 * If true, seeds are selected with probability proportional to their total occurrences
+	 * instead of uniformly.
+	 * @param weightedSeed
+	 */
+	public void setWeightedSeed(boolean weightedSeed) {
+		this.weightedSeed = weightedSeed;
+	}
+
+	private CollectorStats<K,T,R> getCollectorStats(int stateId) {
+		CollectorStats<K,T,R> cstats = new CollectorStats<>(getState(stateId));
+		cstats.setInitial((flags[stateId] & FLAG_INITIAL) != 0);
+		cstats.setTerminal((flags[stateId] & FLAG_TERMINAL) != 0);
+		for(int i=0; i<successorSize[stateId]; i++) {
+			cstats.restoreOccurrence(keys.get(successorKeys[stateId][i]), successorCounts[stateId][i]);
+		}
+		for(int id = firstSupplierCount[stateId]; id != IntTupleIndex.NOT_FOUND; id = nextSupplierCount[id]) {
+			int supplier = supplierCountIndex.get(id, 2);
+			cstats.restoreSupplierCount(keys.get(supplierCountIndex.get(id, 1)), supplierNames.get(supplier), supplierCounts[id]);
+			cstats.restoreSupplier(supplierNames.get(supplier), suppliers.get(supplier));
+		}
+		return cstats;
+	}
+
+	private T getState(int stateId) {
+		List<K> stateKeys = new ArrayList<>(order);
+		for(int i=0; i<order; i++) {
+			stateKeys.add(keys.get(states.get(stateId, i)));
+		}
+		return stateFactory.apply(stateKeys);
+	}
+
+	private int findState(T state) {
+		if(state.size() != order) {
+			return IntTupleIndex.NOT_FOUND;
+		}
+		int[] tuple = new int[order];
+		for(int i=0; i<order; i++) {
+			int key = keys.idOf(state.get(i));
+			if(key == KeyDictionary.NOT_FOUND) {
+				return IntTupleIndex.NOT_FOUND;
+			}
+			tuple[i] = key;
+		}
+		return states.find(tuple);
+	}
+
+	private int internState(T state) {
+		if(state.size() != order) {
+			throw new IllegalArgumentException("state '" + state + "' length must be " + order);
+		}
+		for(int i=0; i<order; i++) {
+			stateBuffer[i] = keys.intern(state.get(i));
+		}
+		int stateId = states.intern(stateBuffer);
+		if(stateId == successorSize.length) {
+			int capacity = stateId * 2;
+			successorKeys = Arrays.copyOf(successorKeys, capacity);
+			successorCounts = Arrays.copyOf(successorCounts, capacity);
+			cumulative = Arrays.copyOf(cumulative, capacity);
+			successorSize = Arrays.copyOf(successorSize, capacity);
+			totals = Arrays.copyOf(totals, capacity);
+			flags = Arrays.copyOf(flags, capacity);
+			firstSupplierCount = Arrays.copyOf(firstSupplierCount, capacity);
+		}
+		if(successorKeys[stateId] == null) {
+			successorKeys[stateId] = new int[INITIAL_CAPACITY];
+			successorCounts[stateId] = new int[INITIAL_CAPACITY];
+			firstSupplierCount[stateId] = IntTupleIndex.NOT_FOUND;
+			seedCumulative = null;
+			initialStates = null;
+			initialCumulative = null;
+		}
+		return stateId;
+	}
+
+	private int internSupplier(String supplierName, R supplier) {
+		int id = supplierNames.intern(supplierName);
+		if(id == suppliers.size()) {
+			suppliers.add(supplier);
+		}
+		else if(suppliers.get(id) == null) {
+			suppliers.set(id, supplier);
+		}
+		return id;
+	}
+
+	private void addCount(int stateId, int key, int count) {
+		int[] stateKeys = successorKeys[stateId];
+		int n = successorSize[stateId];
+		int index = Arrays.binarySearch(stateKeys, 0, n, key);
+		if(index >= 0) {
+			successorCounts[stateId][index] += count;
+		}
+		else {
+			index = -index - 1;
+			if(n == stateKeys.length) {
+				successorKeys[stateId] = stateKeys = Arrays.copyOf(stateKeys, n * 2);
+				successorCounts[stateId] = Arrays.copyOf(successorCounts[stateId], n * 2);
+			}
+			int[] stateCounts = successorCounts[stateId];
+			System.arraycopy(stateKeys, index, stateKeys, index + 1, n - index);
+			System.arraycopy(stateCounts, index, stateCounts, index + 1, n - index);
+			stateKeys[index] = key;
+			stateCounts[index] = count;
+			successorSize[stateId] = n + 1;
+		}
+		totals[stateId] += count;
+		cumulative[stateId] = null;
+		seedCumulative = null;
+		initialCumulative = null;
+	}
+
+	private void addSupplierCount(int stateId, int key, int supplier, int count) {
+		supplierCountBuffer[0] = stateId;
+		supplierCountBuffer[1] = key;
+		supplierCountBuffer[2] = supplier;
+		int n = supplierCountIndex.size();
+		int id = supplierCountIndex.intern(supplierCountBuffer);
+		if(id == supplierCounts.length) {
+			supplierCounts = Arrays.copyOf(supplierCounts, id * 2);
+			nextSupplierCount = Arrays.copyOf(nextSupplierCount, id * 2);
+		}
+		if(id == n) {		// new, link it to its state
+			nextSupplierCount[id] = firstSupplierCount[stateId];
+			firstSupplierCount[stateId] = id;
+		}
+		supplierCounts[id] += count;
+	}
+
+	private int[] getCumulative(int stateId) {
+		int[] stateCumulative = cumulative[stateId];
+		if(stateCumulative == null) {
+			int n = successorSize[stateId];
+			stateCumulative = new int[n];
+			int sum = 0;
+			for(int i=0; i<n; i++) {
+				sum += successorCounts[stateId][i];
+				stateCumulative[i] = sum;
+			}
+			cumulative[stateId] = stateCumulative;
+		}
+		return stateCumulative;
+	}
+
+	private int[] getInitialStateIds() {
+		int[] initial = initialStates;
+		if(initial == null) {
+			int n = 0;
+			initial = new int[states.size()];
+			for(int stateId=0; stateId<states.size(); stateId++) {
+				if((flags[stateId] & FLAG_INITIAL) != 0) {
+					initial[n++] = stateId;
+				}
+			}
+			initial = Arrays.copyOf(initial, n);
+			initialStates = initial;
+		}
+		return initial;
+	}
+
+	private long[] getSeedCumulative() {
+		long[] seeds = seedCumulative;
+		if(seeds == null) {
+			seeds = new long[states.size()];
+			long sum = 0;
+			for(int stateId=0; stateId<seeds.length; stateId++) {
+				sum += totals[stateId];
+				seeds[stateId] = sum;
+			}
+			seedCumulative = seeds;
+		}
+		return seeds;
+	}
+
+	private long[] getInitialCumulative() {
+		long[] seeds = initialCumulative;
+		if(seeds == null) {
+			int[] initial = getInitialStateIds();
+			seeds = new long[initial.length];
+			long sum = 0;
+			for(int i=0; i<initial.length; i++) {
+				sum += totals[initial[i]];
+				seeds[i] = sum;
+			}
+			initialCumulative = seeds;
+		}
+		return seeds;
+	}
+
+	/**
+	 * @return the index of the first cumulative weight > a random value, or -1 if all weights are 0
+	 */
+	private static int pickWeighted(long[] cumulativeWeights, Random random) {
+		int n = cumulativeWeights.length;
+		if(n == 0 || cumulativeWeights[n - 1] <= 0) {
+			return -1;
+		}
+		long r = (long)(random.nextDouble() * cumulativeWeights[n - 1]) + 1;
+		int index = Arrays.binarySearch(cumulativeWeights, r);
+		if(index < 0) {
+			return -index - 1;
+		}
+		while(index > 0 && cumulativeWeights[index - 1] == r) {	// first of equal cumulative weights
+			index--;
+		}
+		return index;
+	}
+}
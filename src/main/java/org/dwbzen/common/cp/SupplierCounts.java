@@ -0,0 +1,103 @@
+package org.dwbzen.common.cp;
+
+import java.util.Arrays;
+
+/**
+ * Occurrence count per Supplier id of one transition of a CollectorStats,
+ * an open-addressing int to int map that only allocates when it grows.
+ */
+final class SupplierCounts {
+
+	private static final int EMPTY = -1;
+	private static final int INITIAL_CAPACITY = 4;
+
+	private int[] ids = newIds(INITIAL_CAPACITY);
+	private int[] counts = new int[INITIAL_CAPACITY];
+	private int size = 0;
+
+	void add(int id, int count) {
+		int slot = slot(id);
+		if(ids[slot] == EMPTY) {
+			if((size + 1) * 4 > ids.length * 3) {
+				grow();
+				slot = slot(id);
+			}
+			ids[slot] = id;
+			size++;
+		}
+		counts[slot] += count;
+	}
+
+	void set(int id, int count) {
+		add(id, count - get(id));
+	}
+
+	int get(int id) {
+		int slot = slot(id);
+		return ids[slot] == EMPTY ? 0 : counts[slot];
+	}
+
+	int size() {
+		return size;
+	}
+
+	/*
+	 * Slots 0 to capacity()-1, a slot is in use if idAt(slot) != EMPTY
+	 */
+	int capacity() {
+		return ids.length;
+	}
+
+	int idAt(int slot) {
+		return ids[slot];
+	}
+
+	int countAt(int slot) {
+		return counts[slot];
+	}
+
+	static boolean isEmpty(int id) {
+		return id == EMPTY;
+	}
+
+	/**
+	 * Adds the counts of other, translating its ids if it uses different SupplierNames.
+	 */
+	void addAll(SupplierCounts other, SupplierNames from, SupplierNames to) {
+		for(int slot=0; slot<other.ids.length; slot++) {
+			int id = other.ids[slot];
+			if(id != EMPTY) {
+				add(from == to ? id : to.intern(from.nameOf(id)), other.counts[slot]);
+			}
+		}
+	}
+
+	private int slot(int id) {
+		int mask = ids.length - 1;
+		int slot = (id * 0x9E3779B9) >>> Integer.numberOfLeadingZeros(mask);		// top log2(capacity) bits of the product
+		while(ids[slot] != EMPTY && ids[slot] != id) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void grow() {
+		int[] oldIds = ids;
+		int[] oldCounts = counts;
+		ids = newIds(oldIds.length * 2);
+		counts = new int[oldIds.length * 2];
+		for(int i=0; i<oldIds.length; i++) {
+			if(oldIds[i] != EMPTY) {
+				int slot = slot(oldIds[i]);
+				ids[slot] = oldIds[i];
+				counts[slot] = oldCounts[i];
+			}
+		}
+	}
+
+	private static int[] newIds(int capacity) {
+		int[] newIds = new int[capacity];
+		Arrays.fill(newIds, EMPTY);
+		return newIds;
+	}
+}
@@ -0,0 +1,56 @@
+package org.dwbzen.common.cp;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns Supplier names to dense int ids shared by the CollectorStats of one CollectorStatsMap,
+ * so supplier counts can be kept in primitive arrays. Names are held as long as the map,
+ * a CollectorStats that is not in a map has its own.<br>
+ * Lookups of names already interned don't lock or allocate, any number of threads can intern.
+ */
+final class SupplierNames {
+
+	static final int NOT_FOUND = -1;
+
+	private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+	private volatile String[] names = new String[16];
+	private int size = 0;		// guarded by this
+
+	/**
+	 * @param name a Supplier name
+	 * @return the id of name, assigning the next id if it is new
+	 */
+	int intern(String name) {
+		Integer id = ids.get(name);
+		return id != null ? id : add(name);
+	}
+
+	/**
+	 * @param name a Supplier name
+	 * @return the id of name or NOT_FOUND
+	 */
+	int idOf(String name) {
+		Integer id = ids.get(name);
+		return id == null ? NOT_FOUND : id;
+	}
+
+	String nameOf(int id) {
+		return names[id];
+	}
+
+	private synchronized int add(String name) {
+		Integer id = ids.get(name);
+		if(id == null) {
+			String[] current = names;
+			if(size == current.length) {
+				current = Arrays.copyOf(current, size * 2);
+			}
+			current[size] = name;
+			names = current;		// publish the name before the id
+			id = size++;
+			ids.put(name, id);
+		}
+		return id;
+	}
+}
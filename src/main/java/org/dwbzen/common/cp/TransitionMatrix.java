@@ -0,0 +1,345 @@
+package org.dwbzen.common.cp;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.dwbzen.common.math.OccurrenceProbability;
+import org.dwbzen.common.util.INameable;
+
+/**
+ * The state-to-state transition matrix of a MarkovChain in compressed sparse row (CSR) form over interned state ids.<br>
+ * State i followed by K goes to the state made of the last order K of state i and K.
+ * Ids are assigned in the key order of the MarkovChain. Memory is O(states + transitions), nothing is densified.<br>
+ * A row sums to less than 1 when a state is terminal or some of its next states were never seen as states,
+ * the missing mass is the probability of ending a sequence there. step() restarts ended sequences from the
+ * restart distribution, the initial states weighted by occurrence, which makes the chain stochastic
+ * so it has a stationary distribution.<br>
+ * Multiplications run in parallel over rows (or columns, using the transpose) and instances are immutable.
+ *
+ * @param <K> a base class
+ * @param <T> class that implements List<K>
+ */
+public class TransitionMatrix<K extends Comparable<K>, T extends List<K> & Comparable<T>> {
+
+	protected static final Logger log = LogManager.getLogger(TransitionMatrix.class);
+
+	public static final double DEFAULT_TOLERANCE = 1E-10;
+	public static final int DEFAULT_MAX_ITERATIONS = 10000;
+
+	private final KeyDictionary<T> states;
+	private final int[] rowStart;		// row i is rowStart[i] to rowStart[i+1]-1
+	private final int[] columns;		// sorted within each row
+	private final double[] values;
+	private final int[] columnStart;	// the transpose, column j is columnStart[j] to columnStart[j+1]-1
+	private final int[] rows;
+	private final double[] transposeValues;
+	private final double[] ended;		// 1 - row sum
+	private final double[] restart;
+
+	/**
+	 * @param markovChain the MarkovChain, unchanged
+	 * @param stateFactory creates a T state from the List of its K
+	 */
+	public <R extends Supplier<T> & INameable> TransitionMatrix(MarkovChain<K,T,R> markovChain, Function<List<K>, T> stateFactory) {
+		states = new KeyDictionary<>();
+		for(T state : markovChain.keySet()) {
+			states.intern(state);
+		}
+		int n = states.size();
+		rowStart = new int[n + 1];
+		long nnz = 0;
+		for(CollectorStats<K,T,R> cstats : markovChain.values()) {
+			nnz += cstats.size();
+		}
+		int[] cols = new int[(int)nnz];
+		double[] vals = new double[(int)nnz];
+		ended = new double[n];
+		double[] initialWeights = new double[n];
+		double initialTotal = 0;
+		int index = 0;
+		int row = 0;
+		for(Map.Entry<T, CollectorStats<K,T,R>> entry : markovChain.entrySet()) {
+			T state = entry.getKey();
+			CollectorStats<K,T,R> cstats = entry.getValue();
+			rowStart[row] = index;
+			int total = cstats.getTotalOccurrance();
+			int rowEnd = index;
+			for(Map.Entry<K, OccurrenceProbability> transition : cstats.getOccurrenceProbabilityMap().entrySet()) {
+				List<K> keys = new ArrayList<>(state.size());
+				keys.addAll(state.subList(Math.min(1, state.size()), state.size()));
+				keys.add(transition.getKey());
+				int column = states.idOf(stateFactory.apply(keys));
+				if(column != KeyDictionary.NOT_FOUND) {
+					cols[rowEnd] = column;
+					vals[rowEnd] = (double)transition.getValue().getOccurrence() / total;
+					rowEnd++;
+				}
+			}
+			sortRow(cols, vals, index, rowEnd);
+			rowEnd = mergeDuplicates(cols, vals, index, rowEnd);		// an order 0 chain has a single state
+			double sum = 0;
+			for(int i=index; i<rowEnd; i++) {
+				sum += vals[i];
+			}
+			ended[row] = Math.max(0, 1 - sum);
+			if(cstats.isInitial()) {
+				initialWeights[row] = Math.max(1, total);
+				initialTotal += initialWeights[row];
+			}
+			index = rowEnd;
+			row++;
+		}
+		rowStart[n] = index;
+		columns = Arrays.copyOf(cols, index);
+		values = Arrays.copyOf(vals, index);
+		restart = new double[n];
+		for(int i=0; i<n; i++) {
+			restart[i] = initialTotal > 0 ? initialWeights[i] / initialTotal : 1.0 / n;
+		}
+		/*
+		 * transpose by counting sort on the column, rows come out sorted within each column
+		 */
+		columnStart = new int[n + 1];
+		for(int column : columns) {
+			columnStart[column + 1]++;
+		}
+		for(int j=0; j<n; j++) {
+			columnStart[j + 1] += columnStart[j];
+		}
+		rows = new int[index];
+		transposeValues = new double[index];
+		int[] next = Arrays.copyOf(columnStart, n);
+		for(int i=0; i<n; i++) {
+			for(int k=rowStart[i]; k<rowStart[i + 1]; k++) {
+				int position = next[columns[k]]++;
+				rows[position] = i;
+				transposeValues[position] = values[k];
+			}
+		}
+	}
+
+	private static void sortRow(int[] cols, double[] vals, int from, int to) {
+		for(int i=from + 1; i<to; i++) {		// rows are short, insertion sort
+			int column = cols[i];
+			double value = vals[i];
+			int j = i - 1;
+			while(j >= from && cols[j] > column) {
+				cols[j + 1] = cols[j];
+				vals[j + 1] = vals[j];
+				j--;
+			}
+			cols[j + 1] = column;
+			vals[j + 1] = value;
+		}
+	}
+
+	private static int mergeDuplicates(int[] cols, double[] vals, int from, int to) {
+		int end = from;
+		for(int i=from; i<to; i++) {
+			if(end > from && cols[end - 1] == cols[i]) {
+				vals[end - 1] += vals[i];
+			}
+			else {
+				cols[end] = cols[i];
+				vals[end] = vals[i];
+				end++;
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * @return the number of states
+	 */
+	public int size() {
+		return states.size();
+	}
+
+	/**
+	 * @return the number of non-zero transition probabilities
+	 */
+	public int getNonZeros() {
+		return values.length;
+	}
+
+	public T getState(int id) {
+		return states.get(id);
+	}
+
+	/**
+	 * @return the id of a state or KeyDictionary.NOT_FOUND
+	 */
+	public int idOf(T state) {
+		return states.idOf(state);
+	}
+
+	/**
+	 * @return the probability of going from state i to state j in one step, in O(log fan-out)
+	 */
+	public double getProbability(int i, int j) {
+		int k = Arrays.binarySearch(columns, rowStart[i], rowStart[i + 1], j);
+		return k >= 0 ? values[k] : 0;
+	}
+
+	/**
+	 * @return the probability that a sequence ends at state i
+	 */
+	public double getEndProbability(int i) {
+		return ended[i];
+	}
+
+	/**
+	 * @return a copy of the restart distribution
+	 */
+	public double[] getRestartDistribution() {
+		return restart.clone();
+	}
+
+	/**
+	 * Computes P x in parallel over the rows. For example, with x the indicator of a set of states
+	 * the result is the probability of being in the set after one step from each state.
+	 * @param x a vector of size()
+	 * @return a new vector of size()
+	 */
+	public double[] multiply(double[] x) {
+		checkSize(x);
+		double[] y = new double[x.length];
+		IntStream.range(0, x.length).parallel().forEach(i -> {
+			double sum = 0;
+			for(int k=rowStart[i]; k<rowStart[i + 1]; k++) {
+				sum += values[k] * x[columns[k]];
+			}
+			y[i] = sum;
+		});
+		return y;
+	}
+
+	/**
+	 * Computes the row vector x P in parallel over the columns of P, using the transpose.
+	 * Mass of sequences that end is lost.
+	 * @param x a vector of size()
+	 * @return a new vector of size()
+	 */
+	public double[] leftMultiply(double[] x) {
+		checkSize(x);
+		double[] y = new double[x.length];
+		IntStream.range(0, x.length).parallel().forEach(j -> {
+			double sum = 0;
+			for(int k=columnStart[j]; k<columnStart[j + 1]; k++) {
+				sum += transposeValues[k] * x[rows[k]];
+			}
+			y[j] = sum;
+		});
+		return y;
+	}
+
+	/**
+	 * Advances a distribution over the states one step. Sequences that end restart from the restart distribution,
+	 * so the total probability is kept.
+	 * @param distribution probabilities of size()
+	 * @return a new distribution
+	 */
+	public double[] step(double[] distribution) {
+		double[] next = leftMultiply(distribution);
+		double endedMass = IntStream.range(0, distribution.length).parallel().mapToDouble(i -> distribution[i] * ended[i]).sum();
+		if(endedMass > 0) {
+			IntStream.range(0, next.length).parallel().forEach(j -> next[j] += endedMass * restart[j]);
+		}
+		return next;
+	}
+
+	/**
+	 * @param distribution the starting probabilities of size()
+	 * @param steps the number of steps
+	 * @return a new distribution after steps steps, by repeated sparse multiplication
+	 */
+	public double[] stepDistribution(double[] distribution, int steps) {
+		double[] current = distribution.clone();
+		for(int i=0; i<steps; i++) {
+			current = step(current);
+		}
+		return current;
+	}
+
+	/**
+	 * @param from the starting state
+	 * @param steps the number of steps
+	 * @return the probability of being in each state after steps steps, restarting sequences that end
+	 */
+	public double[] getStepProbabilities(T from, int steps) {
+		int id = states.idOf(from);
+		if(id == KeyDictionary.NOT_FOUND) {
+			throw new IllegalArgumentException("unknown state: " + from);
+		}
+		double[] distribution = new double[size()];
+		distribution[id] = 1;
+		return stepDistribution(distribution, steps);
+	}
+
+	/**
+	 * Finds the stationary distribution by power iteration from the restart distribution.
+	 * It iterates the lazy chain (I + P)/2, which has the same stationary distribution and also converges when P is periodic.
+	 * @param tolerance stop when the L1 change of an iteration is below this
+	 * @param maxIterations stop after this many iterations
+	 * @return the stationary distribution, or the last iterate if it did not converge
+	 */
+	public double[] getStationaryDistribution(double tolerance, int maxIterations) {
+		double[] current = restart.clone();
+		for(int iteration=1; iteration<=maxIterations; iteration++) {
+			double[] stepped = step(current);
+			double[] previous = current;
+			double[] next = new double[stepped.length];
+			double change = IntStream.range(0, next.length).parallel().mapToDouble(i -> {
+				next[i] = (previous[i] + stepped[i]) / 2;
+				return Math.abs(next[i] - previous[i]);
+			}).sum();
+			current = next;
+			if(change < tolerance) {
+				log.debug("stationary distribution converged in " + iteration + " iterations");
+				return current;
+			}
+		}
+		log.warn("stationary distribution did not converge in " + maxIterations + " iterations");
+		return current;
+	}
+
+	public double[] getStationaryDistribution() {
+		return getStationaryDistribution(DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATIONS);
+	}
+
+	/**
+	 * Writes one line per non-zero: from,to,probability with a header line. States are written with toString().
+	 * @param writer the Writer, not closed
+	 * @throws IOException
+	 */
+	public void writeSparseCsv(Writer writer) throws IOException {
+		writer.write("from,to,probability\n");
+		for(int i=0; i<size(); i++) {
+			String from = states.get(i).toString();
+			for(int k=rowStart[i]; k<rowStart[i + 1]; k++) {
+				writer.write(from);
+				writer.write(',');
+				writer.write(states.get(columns[k]).toString());
+				writer.write(',');
+				writer.write(String.valueOf(values[k]));
+				writer.write('\n');
+			}
+		}
+		writer.flush();
+	}
+
+	private void checkSize(double[] x) {
+		if(x.length != size()) {
+			throw new IllegalArgumentException("vector size " + x.length + " != " + size());
+		}
+	}
+}
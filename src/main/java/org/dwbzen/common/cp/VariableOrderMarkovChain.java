@@ -0,0 +1,360 @@
+package org.dwbzen.common.cp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.dwbzen.common.util.INameable;
+import org.dwbzen.common.util.RandomSource;
+
+/**
+ * Variable-order Markov model of every order from 0 to maxOrder in one suffix trie of contexts.<br>
+ * The path from the root to a node of depth n spells a context of length n most recent K first,
+ * so contexts that share their most recent K share nodes. Each node stores the successor counts of its context
+ * in parallel sorted arrays and whether the context occurred at the start (initial) or end (terminal) of a sequence.<br>
+ * At generation time sampleNext() backs off from the longest matching context to shorter ones
+ * until it finds one with at least minOccurrence occurrences.
+ * getMarkovChain(order) materializes the fixed-order MarkovChain for the CollectorStatsMap API.<br>
+ * Adding sequences is not thread-safe. Once training is complete and seal() has been called
+ * any number of threads can sample.
+ *
+ * @param <K> a base class
+ * @param <T> class that implements List<K>
+ * @param <R> class that is a Supplier of <T>
+ */
+public class VariableOrderMarkovChain<K extends Comparable<K>, T extends List<K> & Comparable<T>, R extends Supplier<T> & INameable> {
+
+	protected static final Logger log = LogManager.getLogger(VariableOrderMarkovChain.class);
+
+	private final int maxOrder;
+	private final ContextNode<K> root = new ContextNode<>();
+	private String name = INameable.DEFAULT_NAME;
+	private int minOccurrence = 1;
+	private int nodeCount = 1;
+
+	/**
+	 * @param maxOrder the longest context
+	 */
+	public VariableOrderMarkovChain(int maxOrder) {
+		if(maxOrder < 0) {
+			throw new IllegalArgumentException("maxOrder must be >= 0");
+		}
+		this.maxOrder = maxOrder;
+	}
+
+	/**
+	 * Adds the transitions of one sequence for every order up to maxOrder, in O(length * maxOrder).
+	 * Contexts do not span sequences.
+	 * @param sequence List of K, for example the characters of a word
+	 */
+	public void add(List<K> sequence) {
+		int length = sequence.size();
+		for(int i=0; i<=length; i++) {
+			K next = i < length ? sequence.get(i) : null;
+			ContextNode<K> node = root;
+			for(int n=0; n<=maxOrder && n<=i; n++) {
+				if(n > 0) {
+					node = child(node, sequence.get(i - n));
+				}
+				if(next != null) {
+					node.addCount(next, 1);
+				}
+				else {
+					node.terminal = true;
+				}
+				if(n == i) {
+					node.initial = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Selects the next K after a history, using the longest context of at most maxOrder K
+	 * that has at least minOccurrence occurrences and backing off to shorter contexts otherwise.
+	 * @param history the K generated so far, most recent last
+	 * @param random the source of randomness
+	 * @return K or null if no context of the history has occurrences
+	 */
+	public K sampleNext(List<K> history, Random random) {
+		ContextNode<K> context = findContext(history);
+		return context == null ? null : context.sample(random);
+	}
+
+	public K sampleNext(List<K> history) {
+		return sampleNext(history, RandomSource.getDefault().current());
+	}
+
+	/**
+	 * @param history the K generated so far, most recent last
+	 * @return the order of the context sampleNext would use, or -1 if there is none
+	 */
+	public int getBackoffOrder(List<K> history) {
+		ContextNode<K> context = findContext(history);
+		if(context == null) {
+			return -1;
+		}
+		int order = 0;
+		for(ContextNode<K> node = root; node != context; order++) {
+			node = node.getChild(history.get(history.size() - 1 - order));
+		}
+		return order;
+	}
+
+	/**
+	 * @param context List of K, most recent last
+	 * @return the total occurrence of the context or 0 if it was never seen
+	 */
+	public int getTotalOccurrance(List<K> context) {
+		ContextNode<K> node = root;
+		for(int i=context.size()-1; i>=0 && node != null; i--) {
+			node = node.getChild(context.get(i));
+		}
+		return node == null ? 0 : node.total;
+	}
+
+	/**
+	 * Materializes the fixed-order MarkovChain of one order from the trie.
+	 * Supplier counts are not kept in the trie, so the CollectorStats have no Suppliers.
+	 * @param order 0 to maxOrder
+	 * @param stateFactory creates a T state from the List of its K
+	 * @param comparator Comparator for the MarkovChain, if null natural ordering is used.
+	 * @return a new MarkovChain
+	 */
+	public MarkovChain<K,T,R> getMarkovChain(int order, Function<List<K>, T> stateFactory, Comparator<? super T> comparator) {
+		if(order < 0 || order > maxOrder) {
+			throw new IllegalArgumentException("order must be between 0 and " + maxOrder);
+		}
+		MarkovChain<K,T,R> markovChain = new MarkovChain<K,T,R>(comparator, order);
+		markovChain.setName(name);
+		collectStates(root, order, new ArrayList<>(order), markovChain, stateFactory);
+		return markovChain;
+	}
+
+	public MarkovChain<K,T,R> getMarkovChain(int order, Function<List<K>, T> stateFactory) {
+		return getMarkovChain(order, stateFactory, null);
+	}
+
+	private void collectStates(ContextNode<K> node, int depth, List<K> reversedContext, MarkovChain<K,T,R> markovChain, Function<List<K>, T> stateFactory) {
+		if(depth == 0) {
+			List<K> stateKeys = new ArrayList<>(reversedContext);
+			Collections.reverse(stateKeys);
+			CollectorStats<K,T,R> cstats = new CollectorStats<>(stateFactory.apply(stateKeys));
+			cstats.setInitial(node.initial);
+			cstats.setTerminal(node.terminal);
+			for(int i=0; i<node.size; i++) {
+				cstats.restoreOccurrence(node.keyAt(i), node.counts[i]);
+			}
+			markovChain.put(cstats.getSubset(), cstats);
+			return;
+		}
+		for(int i=0; i<node.childCount; i++) {
+			reversedContext.add(node.childKeyAt(i));
+			collectStates(node.children[i], depth - 1, reversedContext, markovChain, stateFactory);
+			reversedContext.remove(reversedContext.size() - 1);
+		}
+	}
+
+	/**
+	 * Builds the sampling tables of every context.<br>
+	 * Call this once training is complete so producers don't pay the cost on first use.
+	 */
+	public void seal() {
+		seal(root);
+	}
+
+	private void seal(ContextNode<K> node) {
+		node.getCumulative();
+		for(int i=0; i<node.childCount; i++) {
+			seal(node.children[i]);
+		}
+	}
+
+	private ContextNode<K> findContext(List<K> history) {
+		ContextNode<K> context = root.total >= minOccurrence ? root : null;
+		ContextNode<K> node = root;
+		for(int n=1; n<=maxOrder && n<=history.size(); n++) {
+			node = node.getChild(history.get(history.size() - n));
+			if(node == null) {
+				break;
+			}
+			if(node.total >= minOccurrence) {
+				context = node;
+			}
+		}
+		return context;
+	}
+
+	private ContextNode<K> child(ContextNode<K> node, K k) {
+		ContextNode<K> child = node.getChild(k);
+		if(child == null) {
+			child = node.addChild(k);
+			nodeCount++;
+		}
+		return child;
+	}
+
+	public int getMaxOrder() {
+		return maxOrder;
+	}
+
+	/**
+	 * @return the number of contexts of every order, including the empty context
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	public int getMinOccurrence() {
+		return minOccurrence;
+	}
+
+	/**
+	 * Contexts with fewer occurrences are skipped by sampleNext in favor of a shorter context.
+	 * @param minOccurrence default is 1
+	 */
+	public void setMinOccurrence(int minOccurrence) {
+		this.minOccurrence = minOccurrence;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+}
+
+/**
+ * A context in the trie of a VariableOrderMarkovChain: successor K and counts, and child contexts,
+ * each in parallel arrays sorted by K.
+ */
+class ContextNode<K extends Comparable<K>> {
+
+	static final int INITIAL_CAPACITY = 2;
+
+	Object[] keys = null;
+	int[] counts = null;
+	int size = 0;
+	int total = 0;
+	Object[] childKeys = null;
+	ContextNode<K>[] children = null;
+	int childCount = 0;
+	boolean initial = false;
+	boolean terminal = false;
+	private int[] cumulative = null;		// built on demand, null when stale
+
+	@SuppressWarnings("unchecked")
+	K keyAt(int i) {
+		return (K)keys[i];
+	}
+
+	@SuppressWarnings("unchecked")
+	K childKeyAt(int i) {
+		return (K)childKeys[i];
+	}
+
+	void addCount(K k, int count) {
+		int index = search(keys, size, k);
+		if(index >= 0) {
+			counts[index] += count;
+		}
+		else {
+			index = -index - 1;
+			if(keys == null) {
+				keys = new Object[INITIAL_CAPACITY];
+				counts = new int[INITIAL_CAPACITY];
+			}
+			else if(size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				counts = Arrays.copyOf(counts, size * 2);
+			}
+			System.arraycopy(keys, index, keys, index + 1, size - index);
+			System.arraycopy(counts, index, counts, index + 1, size - index);
+			keys[index] = k;
+			counts[index] = count;
+			size++;
+		}
+		total += count;
+		cumulative = null;
+	}
+
+	ContextNode<K> getChild(K k) {
+		int index = search(childKeys, childCount, k);
+		return index >= 0 ? children[index] : null;
+	}
+
+	ContextNode<K> addChild(K k) {
+		int index = -search(childKeys, childCount, k) - 1;
+		if(childKeys == null) {
+			childKeys = new Object[INITIAL_CAPACITY];
+			children = newNodeArray(INITIAL_CAPACITY);
+		}
+		else if(childCount == childKeys.length) {
+			childKeys = Arrays.copyOf(childKeys, childCount * 2);
+			children = Arrays.copyOf(children, childCount * 2);
+		}
+		System.arraycopy(childKeys, index, childKeys, index + 1, childCount - index);
+		System.arraycopy(children, index, children, index + 1, childCount - index);
+		ContextNode<K> child = new ContextNode<>();
+		childKeys[index] = k;
+		children[index] = child;
+		childCount++;
+		return child;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <K extends Comparable<K>> ContextNode<K>[] newNodeArray(int length) {
+		return (ContextNode<K>[]) new ContextNode<?>[length];
+	}
+
+	int[] getCumulative() {
+		int[] nodeCumulative = cumulative;
+		if(nodeCumulative == null) {
+			nodeCumulative = new int[size];
+			int sum = 0;
+			for(int i=0; i<size; i++) {
+				sum += counts[i];
+				nodeCumulative[i] = sum;
+			}
+			cumulative = nodeCumulative;
+		}
+		return nodeCumulative;
+	}
+
+	K sample(Random random) {
+		if(total == 0) {
+			return null;
+		}
+		int index = Arrays.binarySearch(getCumulative(), random.nextInt(total) + 1);
+		return keyAt(index >= 0 ? index : -index - 1);
+	}
+
+	@SuppressWarnings("unchecked")
+	private int search(Object[] sortedKeys, int n, K k) {
+		int low = 0;
+		int high = n - 1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = ((K)sortedKeys[mid]).compareTo(k);
+			if(cmp < 0) {
+				low = mid + 1;
+			}
+			else if(cmp > 0) {
+				high = mid - 1;
+			}
+			else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+}
@@ -2,13 +2,23 @@ package org.dwbzen.common.data;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Random;
+
+import org.dwbzen.common.util.RandomSource;
 
 public class RandomGenerator {
 
-	ThreadLocalRandom random = ThreadLocalRandom.current();
+	RandomSource randomSource;		// null uses the default RandomSource
 	
 	public RandomGenerator() {
+		this(null);
+	}
+	
+	/**
+	 * @param randomSource RandomSource for this generator, null to use the default at the time of each call
+	 */
+	public RandomGenerator(RandomSource randomSource) {
+		this.randomSource = randomSource;
 	}
 	
 	/**
@@ -21,13 +31,17 @@ public class RandomGenerator {
 	 * @return
 	 */
 	public List<Integer> randomIntegers(int origin, int bound, int numberToGenerate, boolean noReplacement){
-		if(noReplacement && numberToGenerate > bound - origin) {
+		if(origin >= bound) {
+			throw new IllegalArgumentException("bound must be greater than origin");
+		}
+		if(noReplacement && numberToGenerate > (long)bound - origin) {
 			throw new IllegalArgumentException("numberToGenerate must be <= bound-origin");
 		}
 		List<Integer> result = new ArrayList<>();
+		Random random = (randomSource == null ? RandomSource.getDefault() : randomSource).current();
 		int count = 0;
 		while(count < numberToGenerate) {
-			Integer n = random.nextInt(origin, bound);
+			Integer n = nextInt(random, origin, bound);
 			if(noReplacement) {
 				if(!result.contains(n)) {
 					result.add(n);
@@ -42,6 +56,22 @@ public class RandomGenerator {
 		return result;
 	}
 	
+	/*
+	 * origin + nextInt(range) when the range fits in an int, otherwise rejection sampling of nextInt(),
+	 * which accepts more than half of the draws for such a range
+	 */
+	private static int nextInt(Random random, int origin, int bound) {
+		long range = (long)bound - origin;
+		if(range <= Integer.MAX_VALUE) {
+			return origin + random.nextInt((int)range);
+		}
+		int n = random.nextInt();
+		while(n < origin || n >= bound) {
+			n = random.nextInt();
+		}
+		return n;
+	}
+	
 	public static void main(String...args) {
 		int origin = Integer.parseInt(args[0]);
 		int bound = Integer.parseInt(args[1]);
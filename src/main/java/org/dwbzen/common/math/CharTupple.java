@@ -0,0 +1,85 @@
+package org.dwbzen.common.math;
+
+/**
+ * An immutable Tupple of char values, see PrimitiveTupple.
+ * 
+ * @author don_bacon
+ */
+public final class CharTupple extends PrimitiveTupple<CharTupple> {
+
+	/**
+	 * @param elements one or more char, copied and sorted
+	 */
+	public CharTupple(char...elements) {
+		super(widen(elements));
+	}
+	
+	private static long[] widen(char[] elements) {
+		if(elements == null) {
+			throw new IllegalArgumentException("Incorrect arguments");
+		}
+		long[] values = new long[elements.length];
+		for(int i=0; i<elements.length; i++) {
+			values[i] = elements[i];
+		}
+		return values;
+	}
+	
+	/**
+	 * @param tupple a Tupple of Character
+	 * @return a CharTupple with the same elements
+	 */
+	public static CharTupple of(Tupple<Character> tupple) {
+		char[] elements = new char[tupple.size()];
+		for(int i=0; i<elements.length; i++) {
+			elements[i] = tupple.get(i);
+		}
+		return new CharTupple(elements);
+	}
+	
+	/**
+	 * @return a Tupple of Character with the same elements
+	 */
+	public Tupple<Character> toTupple() {
+		Character[] ts = new Character[elements.length];
+		for(int i=0; i<elements.length; i++) {
+			ts[i] = get(i);
+		}
+		return new Tupple<>(ts);
+	}
+	
+	public char get(int index) {
+		return (char)elements[index];
+	}
+	
+	/**
+	 * @return a copy of the sorted elements
+	 */
+	public char[] getElements() {
+		return narrow(elements);
+	}
+	
+	/**
+	 * @return a copy of the sorted unique elements
+	 */
+	public char[] getUniqueElements() {
+		return narrow(unique());
+	}
+	
+	public boolean isElement(char value) {
+		return contains(value);
+	}
+	
+	private static char[] narrow(long[] values) {
+		char[] narrowed = new char[values.length];
+		for(int i=0; i<values.length; i++) {
+			narrowed[i] = (char)values[i];
+		}
+		return narrowed;
+	}
+	
+	@Override
+	protected void append(StringBuilder sb, long element) {
+		sb.append((char)element);
+	}
+}
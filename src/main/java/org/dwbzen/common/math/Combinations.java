@@ -0,0 +1,175 @@
+package org.dwbzen.common.math;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Enumerates the C(n, k) k-element subsets of {0, 1, ..., n-1} directly, without visiting the other subsets of the power set.<br>
+ * Each combination is the int[] of its k bit positions in ascending order. Combinations come in increasing order of their bit mask,
+ * the same order as counting from 1 to 2<sup>n</sup>-1 and keeping the masks with k bits set.<br>
+ * For n &lt; 64 the next mask is computed with Gosper's hack on a long. For larger n the same order is produced
+ * by stepping the position array, the equivalent of Gosper's hack on a BitSet.
+ * 
+ * @author don_bacon
+ */
+public class Combinations implements Iterable<int[]> {
+
+	private final int n;
+	private final int k;
+	
+	/**
+	 * @param n the number of elements, &gt;= 0
+	 * @param k the number of elements in each combination. There are none if k &lt; 1 or k &gt; n.
+	 */
+	public Combinations(int n, int k) {
+		if(n < 0) {
+			throw new IllegalArgumentException("n must be >= 0: " + n);
+		}
+		this.n = n;
+		this.k = k;
+	}
+	
+	public int getN() {
+		return n;
+	}
+
+	public int getK() {
+		return k;
+	}
+
+	/**
+	 * @return the number of combinations, C(n, k) for k &gt;= 1
+	 */
+	public long size() {
+		return k < 1 ? 0 : binomial(n, k);
+	}
+
+	/**
+	 * @return C(n, k), 0 if k &lt; 0 or k &gt; n. Long.MAX_VALUE if it overflows.
+	 */
+	public static long binomial(int n, int k) {
+		if(k < 0 || k > n) {
+			return 0;
+		}
+		k = Math.min(k, n - k);
+		long result = 1;
+		for(int i=1; i<=k; i++) {
+			long numerator = n - k + i;
+			if(result > Long.MAX_VALUE / numerator) {
+				return Long.MAX_VALUE;
+			}
+			result = result * numerator / i;		// exact, result is C(n-k+i, i)
+		}
+		return result;
+	}
+
+	/**
+	 * Gosper's hack: the next larger long having the same number of bits set.
+	 * @param mask a non-zero long
+	 * @return the next mask, which has bit 63 set (is negative) or is 0 when there is none below 2<sup>63</sup>
+	 */
+	public static long nextCombination(long mask) {
+		long lowest = mask & -mask;
+		long ripple = mask + lowest;
+		return (((ripple ^ mask) >>> 2) / lowest) | ripple;
+	}
+
+	/**
+	 * @return an Iterator over the combinations. Each next() returns a new int[].
+	 */
+	@Override
+	public Iterator<int[]> iterator() {
+		return iterator(false);
+	}
+
+	/**
+	 * @param reuse if true next() returns the same int[] each time, overwritten by the following next()
+	 * @return an Iterator over the combinations
+	 */
+	public Iterator<int[]> iterator(boolean reuse) {
+		if(k < 1 || k > n) {
+			return new Iterator<int[]>() {
+				public boolean hasNext() { return false; }
+				public int[] next() { throw new NoSuchElementException(); }
+			};
+		}
+		return n < Long.SIZE ? new MaskIterator(reuse) : new PositionIterator(reuse);
+	}
+	
+	private class MaskIterator implements Iterator<int[]> {
+		private final long limit = n == Long.SIZE - 1 ? Long.MIN_VALUE : 1L << n;
+		private final int[] positions;
+		private final boolean reuse;
+		private long mask = (1L << k) - 1;
+
+		MaskIterator(boolean reuse) {
+			this.reuse = reuse;
+			positions = new int[k];
+		}
+
+		@Override
+		public boolean hasNext() {
+			return mask != 0 && (limit == Long.MIN_VALUE ? mask > 0 : mask < limit);
+		}
+
+		@Override
+		public int[] next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			int[] result = reuse ? positions : new int[k];
+			long bits = mask;
+			for(int i=0; i<k; i++) {
+				result[i] = Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+			}
+			mask = nextCombination(mask);
+			return result;
+		}
+	}
+	
+	private class PositionIterator implements Iterator<int[]> {
+		private final int[] positions;		// the next combination
+		private final int[] result;
+		private boolean more = true;
+
+		PositionIterator(boolean reuse) {
+			positions = new int[k];
+			result = reuse ? new int[k] : null;
+			for(int i=0; i<k; i++) {
+				positions[i] = i;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return more;
+		}
+
+		@Override
+		public int[] next() {
+			if(!more) {
+				throw new NoSuchElementException();
+			}
+			int[] combination = result == null ? positions.clone() : result;
+			System.arraycopy(positions, 0, combination, 0, k);
+			/*
+			 * move up the lowest position that can, and reset the ones below it to 0, 1, ...
+			 */
+			int i = 0;
+			while(i < k && positions[i] + 1 == (i + 1 < k ? positions[i + 1] : n)) {
+				i++;
+			}
+			if(i == k) {
+				more = false;
+			}
+			else {
+				positions[i]++;
+				for(int j=0; j<i; j++) {
+					positions[j] = j;
+				}
+			}
+			return combination;
+		}
+	}
+}
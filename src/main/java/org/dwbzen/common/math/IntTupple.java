@@ -0,0 +1,85 @@
+package org.dwbzen.common.math;
+
+/**
+ * An immutable Tupple of int values, see PrimitiveTupple.
+ * 
+ * @author don_bacon
+ */
+public final class IntTupple extends PrimitiveTupple<IntTupple> {
+
+	/**
+	 * @param elements one or more int, copied and sorted
+	 */
+	public IntTupple(int...elements) {
+		super(widen(elements));
+	}
+	
+	private static long[] widen(int[] elements) {
+		if(elements == null) {
+			throw new IllegalArgumentException("Incorrect arguments");
+		}
+		long[] values = new long[elements.length];
+		for(int i=0; i<elements.length; i++) {
+			values[i] = elements[i];
+		}
+		return values;
+	}
+	
+	/**
+	 * @param tupple a Tupple of Integer
+	 * @return a IntTupple with the same elements
+	 */
+	public static IntTupple of(Tupple<Integer> tupple) {
+		int[] elements = new int[tupple.size()];
+		for(int i=0; i<elements.length; i++) {
+			elements[i] = tupple.get(i);
+		}
+		return new IntTupple(elements);
+	}
+	
+	/**
+	 * @return a Tupple of Integer with the same elements
+	 */
+	public Tupple<Integer> toTupple() {
+		Integer[] ts = new Integer[elements.length];
+		for(int i=0; i<elements.length; i++) {
+			ts[i] = get(i);
+		}
+		return new Tupple<>(ts);
+	}
+	
+	public int get(int index) {
+		return (int)elements[index];
+	}
+	
+	/**
+	 * @return a copy of the sorted elements
+	 */
+	public int[] getElements() {
+		return narrow(elements);
+	}
+	
+	/**
+	 * @return a copy of the sorted unique elements
+	 */
+	public int[] getUniqueElements() {
+		return narrow(unique());
+	}
+	
+	public boolean isElement(int value) {
+		return contains(value);
+	}
+	
+	private static int[] narrow(long[] values) {
+		int[] narrowed = new int[values.length];
+		for(int i=0; i<values.length; i++) {
+			narrowed[i] = (int)values[i];
+		}
+		return narrowed;
+	}
+	
+	@Override
+	protected void append(StringBuilder sb, long element) {
+		sb.append((int)element);
+	}
+}
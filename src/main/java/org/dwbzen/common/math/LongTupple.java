@@ -0,0 +1,73 @@
+package org.dwbzen.common.math;
+
+/**
+ * An immutable Tupple of long values, see PrimitiveTupple.
+ * 
+ * @author don_bacon
+ */
+public final class LongTupple extends PrimitiveTupple<LongTupple> {
+
+	/**
+	 * @param elements one or more long, copied and sorted
+	 */
+	public LongTupple(long...elements) {
+		super(copy(elements));
+	}
+	
+	private static long[] copy(long[] elements) {
+		if(elements == null) {
+			throw new IllegalArgumentException("Incorrect arguments");
+		}
+		return elements.clone();
+	}
+	
+	/**
+	 * @param tupple a Tupple of Long
+	 * @return a LongTupple with the same elements
+	 */
+	public static LongTupple of(Tupple<Long> tupple) {
+		long[] elements = new long[tupple.size()];
+		for(int i=0; i<elements.length; i++) {
+			elements[i] = tupple.get(i);
+		}
+		return new LongTupple(elements);
+	}
+	
+	/**
+	 * @return a Tupple of Long with the same elements
+	 */
+	public Tupple<Long> toTupple() {
+		Long[] ts = new Long[elements.length];
+		for(int i=0; i<elements.length; i++) {
+			ts[i] = get(i);
+		}
+		return new Tupple<>(ts);
+	}
+	
+	public long get(int index) {
+		return elements[index];
+	}
+	
+	/**
+	 * @return a copy of the sorted elements
+	 */
+	public long[] getElements() {
+		return elements.clone();
+	}
+	
+	/**
+	 * @return a copy of the sorted unique elements
+	 */
+	public long[] getUniqueElements() {
+		return unique().clone();
+	}
+	
+	public boolean isElement(long value) {
+		return contains(value);
+	}
+	
+	@Override
+	protected void append(StringBuilder sb, long element) {
+		sb.append(element);
+	}
+}
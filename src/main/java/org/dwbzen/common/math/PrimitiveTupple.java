@@ -0,0 +1,117 @@
+package org.dwbzen.common.math;
+
+import java.util.Arrays;
+
+/**
+ * The shared implementation of the immutable primitive Tupples IntTupple, CharTupple and LongTupple:
+ * a sorted long[] with the hash computed once, for use as a HashMap key without boxing or building Strings.<br>
+ * Ordering and toString() are the same as Tupple. The unique elements are created when first asked for.<br>
+ * Tupples of different classes are never equal.
+ *
+ * @author don_bacon
+ *
+ * @param <P> the primitive Tupple class
+ */
+public abstract class PrimitiveTupple<P extends PrimitiveTupple<P>> implements Comparable<P> {
+
+	protected final long[] elements;
+	private final int hash;
+	private long[] uniqueElements = null;
+
+	/**
+	 * @param elements one or more values, owned by this and sorted
+	 */
+	protected PrimitiveTupple(long[] elements) {
+		if(elements.length == 0) {
+			throw new IllegalArgumentException("Incorrect arguments");
+		}
+		Arrays.sort(elements);
+		this.elements = elements;
+		hash = Arrays.hashCode(elements);
+	}
+
+	/**
+	 * Appends one element as toString() shows it
+	 */
+	protected abstract void append(StringBuilder sb, long element);
+
+	public int getDegree() {
+		return elements.length;
+	}
+
+	public int size() {
+		return elements.length;
+	}
+
+	protected boolean contains(long value) {
+		return Arrays.binarySearch(elements, value) >= 0;
+	}
+
+	/**
+	 * @return the sorted unique elements, not to be changed
+	 */
+	protected long[] unique() {
+		if(uniqueElements == null) {
+			int n = 0;
+			long[] unique = new long[elements.length];
+			for(int i=0; i<elements.length; i++) {
+				if(i == 0 || elements[i] != elements[i - 1]) {
+					unique[n++] = elements[i];
+				}
+			}
+			uniqueElements = n == elements.length ? elements : Arrays.copyOf(unique, n);
+		}
+		return uniqueElements;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if(this == other) {
+			return true;
+		}
+		return other != null && other.getClass() == getClass() && hash == other.hashCode()
+				&& Arrays.equals(elements, ((PrimitiveTupple<?>)other).elements);
+	}
+
+	/**
+	 * The same order as Tupple: by size, then by elements.
+	 */
+	@Override
+	public int compareTo(P other) {
+		long[] others = other.elements;
+		int compare = elements.length - others.length;
+		for(int i=0; compare == 0 && i<elements.length; i++) {
+			compare = Long.compare(elements[i], others[i]);
+		}
+		return compare;
+	}
+
+	public String toString(boolean formatted) {
+		StringBuilder sb = new StringBuilder();
+		if(formatted) {
+			sb.append(Tupple.displayBraces[0]);
+			for(long element : elements) {
+				append(sb, element);
+				sb.append(',');
+			}
+			sb.setLength(sb.length() - 1);
+			sb.append(Tupple.displayBraces[1]);
+		}
+		else {
+			for(long element : elements) {
+				append(sb, element);
+			}
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return toString(true);
+	}
+}
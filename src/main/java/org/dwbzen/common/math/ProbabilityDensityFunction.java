@@ -1,6 +1,6 @@
 package org.dwbzen.common.math;
 
-import java.util.concurrent.ThreadLocalRandom;
+import org.dwbzen.common.util.RandomSource;
 
 /**
  * Probability density function for Normal Distribution:
@@ -16,7 +16,7 @@ public class ProbabilityDensityFunction {
 	private double mu = 1.0;
 	private double sigma = 0;
 	private double factor;	// 1/sqrt(2 * Pi * mu^2)
-	private ThreadLocalRandom random = ThreadLocalRandom.current();
+	private RandomSource randomSource = null;		// null uses the default RandomSource
 	
 	public ProbabilityDensityFunction(double mu, double sigma) {
 		this.mu = mu;
@@ -42,9 +42,16 @@ public class ProbabilityDensityFunction {
 	 * random x value in the range.
 	 * 
 	 * @return
+	 * @throws IllegalArgumentException if the range is empty or inverted
 	 */
 	public double randomPDF() {
-		return random.nextDouble(range.getX().doubleValue(), range.getY().doubleValue());
+		double low = range.getX().doubleValue();
+		double high = range.getY().doubleValue();
+		if(!(low < high)) {
+			throw new IllegalArgumentException("range low must be less than high: " + low + ", " + high);
+		}
+		double x = low + getRandomSource().current().nextDouble() * (high - low);
+		return x < high ? x : Math.nextDown(high);		// rounding can reach high
 	}
 
 	public Point2D<Double> getRange() {
@@ -55,6 +62,21 @@ public class ProbabilityDensityFunction {
 		this.range = range;
 	}
 
+	/**
+	 * @return the RandomSource set on this function, otherwise the default RandomSource at the time of the call
+	 */
+	public RandomSource getRandomSource() {
+		RandomSource source = randomSource;
+		return source == null ? RandomSource.getDefault() : source;
+	}
+
+	/**
+	 * @param randomSource RandomSource for this function, null to use the default
+	 */
+	public void setRandomSource(RandomSource randomSource) {
+		this.randomSource = randomSource;
+	}
+
 	public double getMu() {
 		return mu;
 	}
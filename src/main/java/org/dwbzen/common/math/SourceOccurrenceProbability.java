@@ -1,12 +1,15 @@
 package org.dwbzen.common.math;
 
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.function.BiFunction;
 
 import org.dwbzen.common.relation.OccurrenceRelationBag;
 import org.dwbzen.common.util.IJson;
+import org.dwbzen.common.util.RandomSource;
+import org.dwbzen.common.util.Reservoir;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -25,6 +28,11 @@ public class SourceOccurrenceProbability<K extends Comparable<K>, T extends List
 	@JsonIgnore		private OccurrenceRelationBag<K, T, ?> occurrenceRelationBag = null;
 	@JsonIgnore		private int sourceCount = 0;
 	@JsonIgnore		private Double totalDistance = 0D;
+	/**
+	 * Samples kept instead of the complete sources and ids when a sample size is set
+	 */
+	@JsonIgnore		private Reservoir<T> sourceSample = null;
+	@JsonIgnore		private Reservoir<String> idSample = null;
 	/**
 	 * Dependency injection to compute distances - held by containing OccurrenceRelationBag
 	 */
@@ -36,11 +44,27 @@ public class SourceOccurrenceProbability<K extends Comparable<K>, T extends List
 	}
 	
 	public Set<T> getSources() {
-		return this.sources;
+		return sourceSample == null ? sources : new TreeSet<>(sourceSample.getSample());
 	}
 	
 	public Set<String> getIds() {
-		return this.ids;
+		return idSample == null ? ids : new TreeSet<>(idSample.getSample());
+	}
+	
+	/**
+	 * Keeps a uniform random sample of sampleSize source and id occurrences instead of all of them.
+	 * getSources() and getIds() return the distinct values of the sample, so there can be fewer than sampleSize
+	 * and frequent values are more likely to be among them. Set before adding sources.
+	 * @param sampleSize the sample size, 0 to keep all
+	 */
+	public void setSampleSize(int sampleSize) {
+		sourceSample = sampleSize > 0 ? new Reservoir<>(sampleSize) : null;
+		idSample = sampleSize > 0 ? new Reservoir<>(sampleSize) : null;
+	}
+	
+	@JsonIgnore
+	public int getSampleSize() {
+		return sourceSample == null ? 0 : sourceSample.getCapacity();
 	}
 	/**
 	 * Adds a T source, increments sourceCount and updates averageDistance
@@ -53,7 +77,7 @@ public class SourceOccurrenceProbability<K extends Comparable<K>, T extends List
 			sourceCount++;
 			averageDistance = totalDistance / sourceCount;
 		}
-		return sources.add(source);
+		return addSampledSource(source);
 	}
 	
 	public boolean addSource(T source, String id) {
@@ -61,9 +85,45 @@ public class SourceOccurrenceProbability<K extends Comparable<K>, T extends List
 		return addId(id);
 	}
 	
+	/**
+	 * Adds the occurrences, sources, ids and distances of other to this.
+	 * If both keep samples, the samples are merged into a sample of all the occurrences of both.
+	 * @param other a SourceOccurrenceProbability of the same key
+	 * @return this
+	 */
+	public SourceOccurrenceProbability<K,T> merge(SourceOccurrenceProbability<K,T> other) {
+		OccurrenceProbability op = other.getOccurrenceProbability();
+		occurrenceProbability.setOccurrence(occurrenceProbability.getOccurrence() + op.getOccurrence());
+		if(sourceSample != null && other.sourceSample != null) {
+			Random random = RandomSource.getDefault().current();
+			sourceSample.merge(other.sourceSample, random);
+			idSample.merge(other.idSample, random);
+		}
+		else {
+			other.getSources().forEach(this::addSampledSource);
+			other.getIds().forEach(this::addId);
+		}
+		if(other.sourceCount > 0) {
+			totalDistance += other.totalDistance;
+			sourceCount += other.sourceCount;
+			averageDistance = totalDistance / sourceCount;
+		}
+		return this;
+	}
+	
 	public boolean addId(String id) {
+		if(idSample != null) {
+			return idSample.offer(id, RandomSource.getDefault().current());
+		}
 		return ids.add(id);
 	}
+	
+	private boolean addSampledSource(T source) {
+		if(sourceSample != null) {
+			return sourceSample.offer(source, RandomSource.getDefault().current());
+		}
+		return sources.add(source);
+	}
 
 	public OccurrenceProbability getOccurrenceProbability() {
 		return occurrenceProbability;
@@ -1,6 +1,5 @@
 package org.dwbzen.common.math;
 
-import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -16,11 +15,12 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
  * A sorted Collection of n number of T instances where n=degree (or order) of the Tupple.<br>
- * The Tupple is maintained as a List<T> that is backed by a T[].
- * Changes in the backing array are reflected in the Tupple.<br>
- * In particular, elements are sorted in the constructor, or if added one at a time,<br>
- * when the Tupple is complete resulting in the backing array and element list being sorted.<br>
- * uniqueElements is a SortedSet of the unique elements of the Tupple.
+ * Elements are sorted and copied in the constructor, or if added one at a time,<br>
+ * when the Tupple is complete. A complete Tupple is immutable.<br>
+ * uniqueElements is a SortedSet of the unique elements of the Tupple, created when first asked for.<br>
+ * equals() and hashCode() are structural and the hash of a complete Tupple is computed once, so it can be a HashMap key.<br>
+ * getKey() is the hashCode of toString(). It is serialized and used as the partition key, so it keeps that definition.<br>
+ * See IntTupple, CharTupple and LongTupple for primitive elements.
  * 
  * @author don_bacon
  *
@@ -31,9 +31,9 @@ public class Tupple<T extends Comparable<T>> implements IJson, Comparable<Tupple
 	static String[] displayBraces = {"[ ", " ]" };
 	@JsonProperty	private int degree = 1; 	// a scalar
 	@JsonProperty	protected List<T> elements = null;
-	@JsonIgnore		protected SortedSet<T> uniqueElements = new TreeSet<>();
+	@JsonIgnore		protected SortedSet<T> uniqueElements = null;
 	@JsonProperty	protected Integer key = Integer.MIN_VALUE;
-	@JsonIgnore		protected T[] ts;
+	@JsonIgnore		private int hash = 0;		// of the complete Tupple
 	
 	/**
 	 * An Empty Tupple where elements are added one at a time.
@@ -46,42 +46,56 @@ public class Tupple<T extends Comparable<T>> implements IJson, Comparable<Tupple
 		elements = new ArrayList<T>(degree);
 	}
 	
+	/**
+	 * @param ts one or more T, copied and sorted
+	 */
 	@SafeVarargs
 	public Tupple(T...ts ) {
 		if(ts == null || ts.length == 0) {
 			throw new IllegalArgumentException("Incorrect arguments");
 		}
-		this.ts = ts;
-		Arrays.sort(ts);
 		degree = ts.length;
-		elements = Arrays.asList(ts);
-		uniqueElements.addAll(elements);
+		complete(ts.clone());
 	}
 	
+	/**
+	 * @param tElements one or more T, copied and sorted
+	 */
 	public Tupple(List<T> tElements) {
+		this(tElements, false);
+	}
+	
+	/**
+	 * @param tElements one or more T
+	 * @param sorted if true tElements is already sorted and used as is, for a subclass that manages the elements.
+	 * Such a subclass overrides hashCode() if it changes them.
+	 */
+	protected Tupple(List<T> tElements, boolean sorted) {
 		degree = tElements.size();
-		elements = new ArrayList<>();
-		createTArrayAndList(tElements);
-		uniqueElements.addAll(elements);
+		if(sorted) {
+			elements = tElements;
+			hash = hashOf(elements);
+		}
+		else {
+			complete(tElements.toArray());
+		}
 	}
 
+	/*
+	 * Sorts the elements, a copy owned by the Tupple, makes them an immutable List and computes the hash
+	 */
 	@SuppressWarnings("unchecked")
-	private void createTArrayAndList(List<T> tElements) {
-		@SuppressWarnings("rawtypes")
-		Class<? extends Comparable> tClass = tElements.iterator().next().getClass();
-		ts = (T[])Array.newInstance(tClass, degree);
-		for(int i=0;i<degree;i++) {
-			ts[i] = tElements.get(i);
-		}
-		Arrays.sort(ts);
-		elements = Arrays.asList(ts);
+	private void complete(Object[] sorted) {
+		Arrays.sort(sorted);
+		elements = (List<T>)(List<?>)List.of(sorted);
+		hash = hashOf(elements);
 	}
 
 	public Tupple<T> add(T t) {
 		if(elements.size() < degree) {
 			elements.add(t);
 			if(elements.size()==degree) {
-				createTArrayAndList(elements);
+				complete(elements.toArray());
 			}
 		}
 		return this;
@@ -95,11 +109,6 @@ public class Tupple<T extends Comparable<T>> implements IJson, Comparable<Tupple
 		return elements;
 	}
 	
-	@JsonIgnore
-	public T[] getElementArray() {
-		return ts;
-	}
-	
 	public T get(int index) {
 		return elements.get(index);
 	}
@@ -113,10 +122,13 @@ public class Tupple<T extends Comparable<T>> implements IJson, Comparable<Tupple
 	}
 	
 	public T index(int index) {
-		return ts[index];
+		return elements.get(index);
 	}
 
 	public Set<T> getUniqueElements() {
+		if(uniqueElements == null) {
+			uniqueElements = new TreeSet<>(elements);
+		}
 		return uniqueElements;
 	}
 
@@ -147,6 +159,30 @@ public class Tupple<T extends Comparable<T>> implements IJson, Comparable<Tupple
 	public boolean equals(Tupple<T> other) {
 		return compareTo(other) == 0 ? true : false;
 	}
+	
+	@Override
+	public boolean equals(Object other) {
+		if(this == other) {
+			return true;
+		}
+		return other instanceof Tupple && hashCode() == other.hashCode() && elements.equals(((Tupple<?>)other).elements);
+	}
+	
+	/**
+	 * @return the hash of the elements, the same as List.hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return elements.size() == degree ? hash : hashOf(elements);
+	}
+	
+	protected static int hashOf(List<?> elements) {
+		int hash = 1;
+		for(int i=0; i<elements.size(); i++) {
+			hash = 31 * hash + elements.get(i).hashCode();
+		}
+		return hash;
+	}
 
 	@Override
 	public int compareTo(Tupple<T> other) {
@@ -156,7 +192,7 @@ public class Tupple<T extends Comparable<T>> implements IJson, Comparable<Tupple
 		}
 		else {
 			for(int ind = 0;ind<size(); ind++) {
-				temp = ts[ind].compareTo(other.index(ind));
+				temp = elements.get(ind).compareTo(other.get(ind));
 				if(temp != 0) {
 					break;
 				}
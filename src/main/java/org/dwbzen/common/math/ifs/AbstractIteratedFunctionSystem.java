@@ -5,9 +5,9 @@ import java.math.MathContext;
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
 
 import org.dwbzen.common.math.JsonObject;
+import org.dwbzen.common.util.RandomSource;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -23,7 +23,7 @@ public abstract class AbstractIteratedFunctionSystem extends JsonObject implemen
 	
 	@JsonIgnore		private double totalWeight = 0.0;
 	@JsonIgnore		protected MathContext mathContext = new MathContext(precision, RoundingMode.HALF_DOWN);
-	@JsonIgnore		protected ThreadLocalRandom random = ThreadLocalRandom.current();
+	@JsonIgnore		protected RandomSource randomSource = null;		// null uses the default RandomSource
 
 	
 	public AbstractIteratedFunctionSystem() {
@@ -47,8 +47,25 @@ public abstract class AbstractIteratedFunctionSystem extends JsonObject implemen
 		this.mathContext = mathContext;
 	}
 	
+	/**
+	 * @return the RandomSource set on this system, otherwise the default RandomSource at the time of the call
+	 */
+	@JsonIgnore
+	public RandomSource getRandomSource() {
+		RandomSource source = randomSource;
+		return source == null ? RandomSource.getDefault() : source;
+	}
+
+	/**
+	 * @param randomSource RandomSource for this system, null to use the default
+	 */
+	@JsonIgnore
+	public void setRandomSource(RandomSource randomSource) {
+		this.randomSource = randomSource;
+	}
+	
 	public LinearFunction pickFunction() {
-		double d = random.nextDouble(totalWeight);
+		double d = getRandomSource().current().nextDouble() * totalWeight;
 		double sum = 0;
 		LinearFunction linearFunction = null;
 		for(LinearFunction f : functions) {
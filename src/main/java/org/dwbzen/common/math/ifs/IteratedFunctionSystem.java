@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Random;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -225,6 +226,7 @@ public class IteratedFunctionSystem extends AbstractIteratedFunctionSystem {
 	 */
 	@JsonIgnore
 	public Point2D<Double> getRandomPoint() {
+		Random random = getRandomSource().current();
 		double x = (random.nextDouble()*range) + low;
 		double y = (random.nextDouble()*range) + low;
 		return new Point2D<Double>(x,y);
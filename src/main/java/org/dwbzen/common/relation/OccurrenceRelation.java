@@ -3,14 +3,17 @@ package org.dwbzen.common.relation;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.dwbzen.common.math.Combinations;
 import org.dwbzen.common.math.Tupple;
 import org.dwbzen.common.util.IJson;
 
@@ -49,34 +52,35 @@ public abstract class OccurrenceRelation<K extends Comparable<K>, T extends List
 	
 	/**
 	 * Creates a degree-subset power set of the K elements of a give T unit.
-	 * And also creates a map of the keys.
+	 * And also creates a map of the keys.<br>
+	 * Only the C(len, degree) subsets are visited, see Combinations.
 	 */
 	public Set<? extends Tupple<K>> partition(T unit, int degree) {
 		int len = unit.size();
-		int index = 0;
 		this.degree = degree;
-		double nSets = Math.pow(2, len);	// Power set cardinality
-		for(int i = 1; i<nSets; i++) {
-			if(Partitions.nbits(i) == degree) {
-				Tupple<K> tupple = new Tupple<>(degree);
-				int j = 0;
-				do {
-					if((1 & (i>>j)) == 1) {
-						index = len - 1 - j;
-						log.debug(i + " " + j + " " + index + " (" + unit.get(index) + ")");
-						tupple.add(unit.get(index));
-					}
-				} while(Math.pow(2, j++) <= nSets);
-				partitions.add(tupple);
-				Integer key = getKey(tupple);
-				partitionKeyMap.put(tupple, key);
-				partitionKeys.add(key);
-				log.debug("added " + tupple);
+		Iterator<int[]> combinations = new Combinations(len, degree).iterator(true);
+		while(combinations.hasNext()) {
+			int[] bits = combinations.next();
+			Tupple<K> tupple = new Tupple<>(degree);
+			for(int bit : bits) {
+				tupple.add(unit.get(len - 1 - bit));
 			}
+			partitions.add(tupple);
+			Integer key = getKey(tupple);
+			partitionKeyMap.put(tupple, key);
+			partitionKeys.add(key);
+			log.debug("added " + tupple);
 		}
 		return partitions;
 	}
 
+	/**
+	 * @return a lazy Stream of the partitions of the unit, without using the partitions Set
+	 */
+	public Stream<Tupple<K>> partitionStream() {
+		return PartitionIterator.stream(unit, degree);
+	}
+
 	public Map<Tupple<K>, Integer> getPartitionKeyMap() {
 		return partitionKeyMap;
 	}
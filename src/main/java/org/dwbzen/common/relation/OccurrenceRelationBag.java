@@ -1,9 +1,16 @@
 package org.dwbzen.common.relation;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -14,6 +21,8 @@ import org.apache.logging.log4j.Logger;
 import org.dwbzen.common.math.OccurrenceProbability;
 import org.dwbzen.common.math.SourceOccurrenceProbability;
 import org.dwbzen.common.math.Tupple;
+import org.dwbzen.common.util.CountMinSketch;
+import org.dwbzen.common.util.HeavyHitters;
 import org.dwbzen.common.util.IJson;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -31,13 +40,16 @@ public abstract class OccurrenceRelationBag<K extends Comparable<K>, T extends L
 
 	protected static final Logger log = LogManager.getLogger(OccurrenceRelationBag.class);
 	public static final String indent = "      ";
+	public static final double DEFAULT_EPSILON = 1E-4;
+	public static final double DEFAULT_DELTA = 1E-3;
 	
 	@JsonProperty	private int totalOccurrences = 0;
 	@JsonProperty	private int degree = 1;
 	/**
-	 * The OccurrenceProbability and List of sources of each K-Tupple
+	 * The OccurrenceProbability and List of sources of each K-Tupple, in no particular order.
+	 * Ranks, ranges and the JSON output follow Tupple order.
 	 */
-	@JsonProperty	protected Map<Tupple<K>, SourceOccurrenceProbability<K, T>> sourceOccurrenceProbabilityMap = null;
+	@JsonIgnore		protected Map<Tupple<K>, SourceOccurrenceProbability<K, T>> sourceOccurrenceProbabilityMap = null;
 	@JsonIgnore		private boolean open = true;
 	@JsonIgnore		private boolean supressSourceOutput = false;
 	
@@ -51,9 +63,17 @@ public abstract class OccurrenceRelationBag<K extends Comparable<K>, T extends L
 	 */
 	@JsonIgnore		private BiFunction<Tupple<K>, T, Double> metricFunction = null;
 	
+	@JsonIgnore		private ForkJoinPool pool = ForkJoinPool.commonPool();
+	
+	/**
+	 * Approximate mode: only the most frequent Tupples are kept, see setTopK()
+	 */
+	@JsonIgnore		private HeavyHitters<Tupple<K>> heavyHitters = null;
+	@JsonIgnore		private int sampleSize = 0;
+	
 	protected OccurrenceRelationBag(int degree) {
 		this.degree = degree;
-		sourceOccurrenceProbabilityMap = new TreeMap<>();
+		sourceOccurrenceProbabilityMap = new HashMap<>();
 	}
 	
 	public void setIdExtractorFunction(Function<T, String> function) {
@@ -68,26 +88,115 @@ public abstract class OccurrenceRelationBag<K extends Comparable<K>, T extends L
 		return open;
 	}
 	
-	protected void addPartitionTupple(T source, Tupple<K> tupple) {
-		SourceOccurrenceProbability<K,T> sop = null;
-		if(sourceOccurrenceProbabilityMap.containsKey(tupple)) {
-			sop = sourceOccurrenceProbabilityMap.get(tupple);
+	/**
+	 * Adds the degree partitions of a source unit as they are generated by a PartitionIterator,
+	 * the same as adding an OccurrenceRelation of the source without creating it or its partition Set.<br>
+	 * Only Tupples not already in the bag are allocated.
+	 * @param source the T unit
+	 * @return true if the bag is open and source was added
+	 */
+	public boolean addUnit(T source) {
+		if(open) {
+			PartitionIterator<K> partitions = new PartitionIterator<>(source, degree, true);
+			while(partitions.hasNext()) {
+				addPartitionTupple(source, partitions.next());
+			}
 		}
-		else {
-			sop = new SourceOccurrenceProbability<>(tupple);
-			sourceOccurrenceProbabilityMap.put(tupple, sop);
-			sop.setOccurrenceRelationBag(this);
+		return open;
+	}
+	
+	/**
+	 * Adds the units in parallel in the ForkJoinPool. Each worker adds partitions to its own HashMap of SourceOccurrenceProbability
+	 * and the Maps are merged into this bag, with the same result as calling addUnit() for each unit.<br>
+	 * The id extractor and metric functions are called from several threads.
+	 * In approximate mode the units are added one at a time.
+	 * @param units the T units
+	 * @return true if the bag is open and the units were added
+	 */
+	public boolean addUnits(Collection<? extends T> units) {
+		if(open && heavyHitters != null) {
+			units.forEach(this::addUnit);
+		}
+		else if(open) {
+			Map<Tupple<K>, SourceOccurrenceProbability<K,T>> partial = null;
+			try {
+				partial = pool.submit(() -> units.parallelStream().collect(
+						() -> new HashMap<Tupple<K>, SourceOccurrenceProbability<K,T>>(),
+						this::addPartitions,
+						OccurrenceRelationBag::merge)).get();
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+			catch(ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+			for(SourceOccurrenceProbability<K,T> sop : partial.values()) {
+				totalOccurrences += sop.getOccurrenceProbability().getOccurrence();
+				SourceOccurrenceProbability<K,T> existing = sourceOccurrenceProbabilityMap.get(sop.getKey());
+				if(existing == null) {
+					sop.setOccurrenceRelationBag(this);
+					sourceOccurrenceProbabilityMap.put(sop.getKey(), sop);
+				}
+				else {
+					existing.merge(sop);
+				}
+			}
+		}
+		return open;
+	}
+	
+	private void addPartitions(Map<Tupple<K>, SourceOccurrenceProbability<K,T>> partial, T source) {
+		PartitionIterator<K> partitions = new PartitionIterator<>(source, degree, true);
+		String id = idExtractorFunction == null ? null : idExtractorFunction.apply(source);
+		while(partitions.hasNext()) {
+			add(partial, source, partitions.next(), id);
+		}
+	}
+	
+	private static <K extends Comparable<K>, T extends List<K>> Map<Tupple<K>, SourceOccurrenceProbability<K,T>> merge(
+			Map<Tupple<K>, SourceOccurrenceProbability<K,T>> map, Map<Tupple<K>, SourceOccurrenceProbability<K,T>> other) {
+		other.forEach((tupple, sop) -> map.merge(tupple, sop, SourceOccurrenceProbability::merge));
+		return map;
+	}
+	
+	private SourceOccurrenceProbability<K,T> add(Map<Tupple<K>, SourceOccurrenceProbability<K,T>> map, T source, Tupple<K> tupple, String id) {
+		SourceOccurrenceProbability<K,T> sop = map.get(tupple);
+		if(sop == null) {
+			Tupple<K> key = PartitionIterator.copy(tupple);
+			sop = new SourceOccurrenceProbability<>(key);
+			map.put(key, sop);
+			if(map == sourceOccurrenceProbabilityMap) {
+				sop.setOccurrenceRelationBag(this);		// a partial Map is merged later
+			}
 			sop.setMetricFunction(metricFunction);
+			sop.setSampleSize(sampleSize);
 		}
 		sop.addSource(source);
-		if(idExtractorFunction != null) {
-			String id = idExtractorFunction.apply(source);
+		if(id != null) {
 			sop.addId(id);
 		}
 		sop.getOccurrenceProbability().increment();
-		totalOccurrences++;
+		return sop;
 	}
 	
+	protected void addPartitionTupple(T source, Tupple<K> tupple) {
+		String id = idExtractorFunction == null ? null : idExtractorFunction.apply(source);
+		if(heavyHitters == null) {
+			add(sourceOccurrenceProbabilityMap, source, tupple, id);
+		}
+		else {
+			Tupple<K> evicted = heavyHitters.offer(tupple);
+			if(evicted != null) {
+				sourceOccurrenceProbabilityMap.remove(evicted);
+			}
+			if(heavyHitters.contains(tupple)) {
+				add(sourceOccurrenceProbabilityMap, source, tupple, id);
+			}
+		}
+		totalOccurrences++;
+	}
 	
 	public Map<Tupple<K>, SourceOccurrenceProbability<K, T>> sortByValue() {
 		Map<Tupple<K>, SourceOccurrenceProbability<K, T>> sorted = 
@@ -111,10 +220,19 @@ public abstract class OccurrenceRelationBag<K extends Comparable<K>, T extends L
 		return sorted;
 	}
 	
+	@JsonIgnore
 	public Map<Tupple<K>, SourceOccurrenceProbability<K, T>> getSourceOccurrenceProbabilityMap() {
 		return sourceOccurrenceProbabilityMap;
 	}
 	
+	/**
+	 * @return new SortedMap of the SourceOccurrenceProbability of each Tupple, in Tupple order
+	 */
+	@JsonProperty("sourceOccurrenceProbabilityMap")
+	public SortedMap<Tupple<K>, SourceOccurrenceProbability<K, T>> getSortedSourceOccurrenceProbabilityMap() {
+		return new TreeMap<>(sourceOccurrenceProbabilityMap);
+	}
+	
 
 	protected void setSourceOccurrenceProbabilityMap(
 			Map<Tupple<K>, SourceOccurrenceProbability<K, T>> sourceOccurrenceProbabilityMap) {
@@ -139,8 +257,13 @@ public abstract class OccurrenceRelationBag<K extends Comparable<K>, T extends L
 		int prevEndRange = -1;
 		int[] range = null;
 		int rank = 1;
-		for(SourceOccurrenceProbability<K,T> sop : sourceOccurrenceProbabilityMap.values()) {
+		List<SourceOccurrenceProbability<K,T>> sops = new ArrayList<>(sourceOccurrenceProbabilityMap.values());
+		sops.sort(Comparator.comparing(SourceOccurrenceProbability::getKey));		// ranks and ranges in Tupple order
+		for(SourceOccurrenceProbability<K,T> sop : sops) {
 			OccurrenceProbability occurrenceProb = sop.getOccurrenceProbability();
+			if(heavyHitters != null) {
+				occurrenceProb.setOccurrence((int)Math.min(Integer.MAX_VALUE, heavyHitters.estimate(sop.getKey())));
+			}
 			occurrenceProb.setProbability((double)occurrenceProb.getOccurrence() / (double)totalOccurrences);
 			occurrenceProb.setRank(rank++);
 			range = new int[2];
@@ -169,6 +292,72 @@ public abstract class OccurrenceRelationBag<K extends Comparable<K>, T extends L
 		this.totalOccurrences = totalOccurrences;
 	}
 
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * @param pool runs addUnits(), default is the common pool
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Switches to approximate mode, which keeps only the topK most frequent Tupples in bounded memory.
+	 * Every Tupple is counted in a CountMinSketch, hashed from its elements, and a Tupple replaces the least frequent tracked one when its count is larger.
+	 * At close() the occurrences of the kept Tupples are their sketch estimates, which with probability 1 - delta
+	 * exceed the true counts by at most epsilon * getTotalOccurrences(). The sources and ids of a Tupple are
+	 * collected from when it was last admitted, see also setSampleSize().
+	 * @param topK the number of Tupples to keep, 0 for the exact mode
+	 * @param epsilon the sketch error as a fraction of the total occurrences
+	 * @param delta the probability of exceeding the error
+	 * @throws IllegalStateException if the bag is not empty
+	 */
+	public void setTopK(int topK, double epsilon, double delta) {
+		if(!sourceOccurrenceProbabilityMap.isEmpty()) {
+			throw new IllegalStateException("the mode can only be set on an empty bag");
+		}
+		heavyHitters = topK > 0 ? new HeavyHitters<>(topK, epsilon, delta, PartitionIterator::copy,
+				tupple -> CountMinSketch.hash64(tupple.getElements())) : null;
+	}
+
+	public void setTopK(int topK) {
+		setTopK(topK, DEFAULT_EPSILON, DEFAULT_DELTA);
+	}
+
+	/**
+	 * @return the number of Tupples kept in approximate mode, 0 in exact mode
+	 */
+	@JsonIgnore
+	public int getTopK() {
+		return heavyHitters == null ? 0 : heavyHitters.getCapacity();
+	}
+
+	@JsonIgnore
+	public boolean isApproximate() {
+		return heavyHitters != null;
+	}
+
+	/**
+	 * @return the HeavyHitters of approximate mode, or null
+	 */
+	public HeavyHitters<Tupple<K>> getHeavyHitters() {
+		return heavyHitters;
+	}
+
+	public int getSampleSize() {
+		return sampleSize;
+	}
+
+	/**
+	 * @param sampleSize keep a random sample of at most sampleSize sources and ids for each Tupple
+	 * added after this, 0 (the default) to keep them all
+	 */
+	public void setSampleSize(int sampleSize) {
+		this.sampleSize = sampleSize;
+	}
+
 	public BiFunction<Tupple<K>, T, Double> getMetricFunction() {
 		return metricFunction;
 	}
@@ -0,0 +1,161 @@
+package org.dwbzen.common.relation;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.dwbzen.common.math.Tupple;
+
+/**
+ * Lazily iterates the distinct degree-element partitions (Tupples) of a unit, the same Tupples
+ * OccurrenceRelation.partition() collects in its Set, in ascending Tupple order.<br>
+ * The unit elements are sorted once and the partitions are generated as combinations of that multiset,
+ * skipping equal elements, so no duplicate is generated and nothing is collected. State is O(length of the unit).<br>
+ * With reuse, next() returns the same Tupple each time with its elements overwritten. A consumer that keeps
+ * a reused Tupple must copy it with copy(Tupple).
+ * 
+ * @author don_bacon
+ *
+ * @param <K> the base class of elements in the unit
+ */
+public class PartitionIterator<K extends Comparable<K>> implements Iterator<Tupple<K>> {
+
+	private final K[] sorted;
+	private final int[] nextDifferent;		// the first index after i with a different element
+	private final int degree;
+	private final int[] indexes;
+	private final PartitionView<K> view;
+	private boolean more;
+	
+	@SuppressWarnings("unchecked")
+	public PartitionIterator(List<K> unit, int degree, boolean reuse) {
+		int len = unit.size();
+		this.degree = degree;
+		more = degree >= 1 && degree <= len;
+		if(!more) {
+			sorted = null;
+			nextDifferent = null;
+			indexes = null;
+			view = null;
+			return;
+		}
+		sorted = (K[])Array.newInstance(unit.get(0).getClass(), len);
+		for(int i=0; i<len; i++) {
+			sorted[i] = unit.get(i);
+		}
+		Arrays.sort(sorted);
+		nextDifferent = new int[len];
+		for(int i=len - 1; i>=0; i--) {
+			nextDifferent[i] = (i + 1 < len && sorted[i + 1].compareTo(sorted[i]) == 0) ? nextDifferent[i + 1] : i + 1;
+		}
+		indexes = new int[degree];
+		for(int i=0; i<degree; i++) {
+			indexes[i] = i;
+		}
+		view = reuse ? new PartitionView<>(Arrays.copyOf(sorted, degree)) : null;
+	}
+	
+	/**
+	 * @return a sequential Stream of new Tupples
+	 */
+	public static <K extends Comparable<K>> Stream<Tupple<K>> stream(List<K> unit, int degree) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new PartitionIterator<>(unit, degree, false),
+				Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL), false);
+	}
+	
+	/**
+	 * @return tupple, or a new Tupple with the same elements if tupple is a reused one
+	 */
+	public static <K extends Comparable<K>> Tupple<K> copy(Tupple<K> tupple) {
+		return tupple instanceof PartitionView ? ((PartitionView<K>)tupple).copy() : tupple;
+	}
+	
+	@Override
+	public boolean hasNext() {
+		return more;
+	}
+
+	@Override
+	public Tupple<K> next() {
+		if(!more) {
+			throw new NoSuchElementException();
+		}
+		Tupple<K> tupple = null;
+		if(view != null) {
+			for(int i=0; i<degree; i++) {
+				view.ts[i] = sorted[indexes[i]];
+			}
+			tupple = view;
+		}
+		else {
+			K[] ts = Arrays.copyOf(sorted, degree);
+			for(int i=0; i<degree; i++) {
+				ts[i] = sorted[indexes[i]];
+			}
+			tupple = new Tupple<>(ts);
+		}
+		advance();
+		return tupple;
+	}
+	
+	/*
+	 * The rightmost index that can move to a larger element moves there, the indexes after it follow consecutively.
+	 */
+	private void advance() {
+		int len = sorted.length;
+		for(int i=degree - 1; i>=0; i--) {
+			int next = nextDifferent[indexes[i]];
+			if(next + (degree - 1 - i) < len) {
+				for(int j=i; j<degree; j++) {
+					indexes[j] = next + (j - i);
+				}
+				return;
+			}
+		}
+		more = false;
+	}
+	
+	/**
+	 * A Tupple whose backing array is overwritten by the PartitionIterator.
+	 * The hash, the unique elements and the key are computed each time they are asked for.
+	 */
+	static class PartitionView<K extends Comparable<K>> extends Tupple<K> {
+
+		private final K[] ts;
+		
+		/**
+		 * @param ts the backing array, used as is
+		 */
+		PartitionView(K[] ts) {
+			super(Arrays.asList(ts), true);
+			this.ts = ts;
+		}
+		
+		Tupple<K> copy() {
+			return new Tupple<>(elements);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hashOf(elements);
+		}
+		
+		@Override
+		public Set<K> getUniqueElements() {
+			return new TreeSet<>(elements);
+		}
+		
+		@Override
+		public int getKey() {
+			return toString().hashCode();
+		}
+	}
+}
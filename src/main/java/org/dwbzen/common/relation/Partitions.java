@@ -1,10 +1,12 @@
 package org.dwbzen.common.relation;
 
+import java.util.Iterator;
 import java.util.Set;
 import java.util.TreeSet;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.dwbzen.common.math.Combinations;
 import org.dwbzen.common.math.Tupple;
 import org.dwbzen.common.util.IJson;
 
@@ -34,24 +36,16 @@ public class Partitions<K extends Comparable<K>> implements IJson {
 			partitions.add(source);
 			return;
 		}
-		int index = 0;
-		double nSets = Math.pow(2, len);	// Power set cardinality
-		for(int i = 1; i<nSets; i++) {
-			if(Partitions.nbits(i) == degree) {
-				Tupple<K> tupple = new Tupple<>(degree);
-				int j = 0;
-				do {
-					if((1 & (i>>j)) == 1) {
-						index = len - 1 - j;
-						log.debug(i + " " + j + " " + index + " (" + source.get(index) + ")");
-						tupple.add(source.get(index));
-					}
-				} while(Math.pow(2, j++) <= nSets);
-				partitions.add(tupple);
-				log.debug("added " + tupple);
+		Iterator<int[]> combinations = new Combinations(len, degree).iterator(true);
+		while(combinations.hasNext()) {
+			int[] bits = combinations.next();
+			Tupple<K> tupple = new Tupple<>(degree);
+			for(int bit : bits) {
+				tupple.add(source.get(len - 1 - bit));
 			}
+			partitions.add(tupple);
+			log.debug("added " + tupple);
 		}
-		
 	}
 
 	/**
@@ -60,12 +54,7 @@ public class Partitions<K extends Comparable<K>> implements IJson {
 	 * @return number of set bits
 	 */
 	public static int nbits(int n) {
-		int nbits = 0;
-		int i = 0;
-		do {
-			nbits += (1 & (n>>i++));
-		} while(Math.pow(2, i) <= n);
-		return nbits;
+		return Integer.bitCount(n);
 	}
 	
 	public static void main(String...strings ) {
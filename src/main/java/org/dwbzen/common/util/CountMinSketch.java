@@ -0,0 +1,159 @@
+package org.dwbzen.common.util;
+
+/**
+ * A Count-Min Sketch: approximate occurrence counts of any number of items in width x depth counters.<br>
+ * For epsilon and delta, width = ceil(e / epsilon) and depth = ceil(ln(1 / delta)). An estimate is never below the true count
+ * and, with probability at least 1 - delta, exceeds it by at most epsilon * getTotal().<br>
+ * Items are reduced to a 64-bit hash, see hash64(), and each row takes its counter from a different mix of that hash.
+ * Items with the same 64-bit hash share all their counters, so the bound holds for items told apart by hash64(),
+ * or by the hash given to addHash() and estimateHash(). add() uses conservative update, which only raises the counters that
+ * hold the minimum and keeps the same bound with smaller overestimates.
+ *
+ * <p>See Cormode and Muthukrishnan, <i>An Improved Data Stream Summary: The Count-Min Sketch and its Applications</i>, 2005.
+ */
+public class CountMinSketch {
+
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private final double epsilon;
+	private final double delta;
+	private final int width;
+	private final int depth;
+	private final long[][] counts;
+	private long total = 0;
+
+	/**
+	 * @param epsilon the error as a fraction of the total count, 0 &lt; epsilon &lt; 1
+	 * @param delta the probability of exceeding the error, 0 &lt; delta &lt; 1
+	 */
+	public CountMinSketch(double epsilon, double delta) {
+		if(epsilon <= 0 || epsilon >= 1 || delta <= 0 || delta >= 1) {
+			throw new IllegalArgumentException("epsilon and delta must be between 0 and 1: " + epsilon + ", " + delta);
+		}
+		this.epsilon = epsilon;
+		this.delta = delta;
+		width = (int)Math.ceil(Math.E / epsilon);
+		depth = (int)Math.ceil(Math.log(1 / delta));
+		counts = new long[depth][width];
+	}
+
+	/**
+	 * A well mixed 64-bit hash of item. The elements of an Iterable and the chars of a CharSequence are folded in one by one,
+	 * so sequences whose 32-bit hashCode() collide, such as List.of('A','b') and List.of('B','C'), hash differently.
+	 * Other items are hashed from their hashCode().
+	 * @param item an item, not null
+	 * @return the 64-bit hash
+	 */
+	public static long hash64(Object item) {
+		if(item instanceof Iterable) {
+			long hash = GOLDEN_GAMMA;
+			for(Object element : (Iterable<?>)item) {
+				hash = SplitMixRandom.mix64(hash + (element == null ? 0 : element.hashCode())) + GOLDEN_GAMMA;
+			}
+			return hash;
+		}
+		if(item instanceof CharSequence) {
+			CharSequence chars = (CharSequence)item;
+			long hash = GOLDEN_GAMMA;
+			for(int i=0; i<chars.length(); i++) {
+				hash = SplitMixRandom.mix64(hash + chars.charAt(i)) + GOLDEN_GAMMA;
+			}
+			return hash;
+		}
+		return SplitMixRandom.mix64(item.hashCode());
+	}
+
+	private int index(int row, long hash) {
+		return (int)Long.remainderUnsigned(SplitMixRandom.mix64(hash + (row + 1) * GOLDEN_GAMMA), width);
+	}
+
+	/**
+	 * @param item the item, by its hash64()
+	 * @param count the number of occurrences to add, &gt; 0
+	 * @return the new estimate of item
+	 */
+	public long add(Object item, long count) {
+		return addHash(hash64(item), count);
+	}
+
+	/**
+	 * @param hash the 64-bit hash of an item
+	 * @param count the number of occurrences to add, &gt; 0
+	 * @return the new estimate of the item
+	 */
+	public long addHash(long hash, long count) {
+		long estimate = estimateHash(hash) + count;
+		for(int row=0; row<depth; row++) {
+			int i = index(row, hash);
+			counts[row][i] = Math.max(counts[row][i], estimate);
+		}
+		total += count;
+		return estimate;
+	}
+
+	/**
+	 * @return the estimated count of item
+	 */
+	public long estimate(Object item) {
+		return estimateHash(hash64(item));
+	}
+
+	/**
+	 * @return the estimated count of the item with the 64-bit hash
+	 */
+	public long estimateHash(long hash) {
+		long estimate = Long.MAX_VALUE;
+		for(int row=0; row<depth; row++) {
+			estimate = Math.min(estimate, counts[row][index(row, hash)]);
+		}
+		return estimate;
+	}
+
+	/**
+	 * Adds the counters of other, which must have the same epsilon and delta. The estimates remain upper bounds.
+	 * @param other a CountMinSketch
+	 * @return this
+	 */
+	public CountMinSketch merge(CountMinSketch other) {
+		if(other.width != width || other.depth != depth) {
+			throw new IllegalArgumentException("sketch sizes differ");
+		}
+		for(int row=0; row<depth; row++) {
+			for(int i=0; i<width; i++) {
+				counts[row][i] += other.counts[row][i];
+			}
+		}
+		total += other.total;
+		return this;
+	}
+
+	/**
+	 * @return the sum of all counts added
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return epsilon * getTotal(), the bound on the overestimate
+	 */
+	public double getErrorBound() {
+		return epsilon * total;
+	}
+
+	public double getEpsilon() {
+		return epsilon;
+	}
+
+	public double getDelta() {
+		return delta;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+}
@@ -0,0 +1,135 @@
+package org.dwbzen.common.util;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Tracks the capacity most frequent items of a stream in bounded memory: a CountMinSketch estimates the count of every item
+ * and the items with the largest estimates are kept, in the manner of Space-Saving.<br>
+ * An item that is not tracked replaces the tracked item with the smallest count once its estimate is larger.
+ * Tracked counts are CountMinSketch estimates, so with probability 1 - delta they exceed the true count by at most
+ * epsilon times the total.<br>
+ * Not thread safe.
+ *
+ * @param <E> the item class, with hashCode() and equals(), hashed for the sketch by CountMinSketch.hash64() or a given function
+ */
+public class HeavyHitters<E> {
+
+	private final int capacity;
+	private final CountMinSketch sketch;
+	private final UnaryOperator<E> keyFactory;
+	private final ToLongFunction<? super E> hasher;
+	private final Map<E, Counter<E>> counters = new HashMap<>();
+	private final TreeSet<Counter<E>> byCount = new TreeSet<>();
+	private long sequence = 0;
+
+	/**
+	 * @param capacity the number of items to track
+	 * @param epsilon CountMinSketch error as a fraction of the total
+	 * @param delta CountMinSketch probability of exceeding the error
+	 */
+	public HeavyHitters(int capacity, double epsilon, double delta) {
+		this(capacity, epsilon, delta, UnaryOperator.identity(), CountMinSketch::hash64);
+	}
+
+	/**
+	 * @param keyFactory creates the key kept for a newly tracked item, for example a copy of a reused instance
+	 * @param hasher the 64-bit hash of an item in the CountMinSketch, consistent with equals()
+	 */
+	public HeavyHitters(int capacity, double epsilon, double delta, UnaryOperator<E> keyFactory, ToLongFunction<? super E> hasher) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("capacity must be > 0: " + capacity);
+		}
+		this.capacity = capacity;
+		this.keyFactory = keyFactory;
+		this.hasher = hasher;
+		sketch = new CountMinSketch(epsilon, delta);
+	}
+
+	/**
+	 * Adds count occurrences of item.
+	 * @return the item no longer tracked because item replaced it, or null
+	 */
+	public E offer(E item, long count) {
+		long estimate = sketch.addHash(hasher.applyAsLong(item), count);
+		Counter<E> counter = counters.get(item);
+		if(counter != null) {
+			byCount.remove(counter);
+			counter.count = estimate;
+			byCount.add(counter);
+			return null;
+		}
+		E evicted = null;
+		if(counters.size() >= capacity) {
+			Counter<E> min = byCount.first();
+			if(estimate <= min.count) {
+				return null;
+			}
+			byCount.pollFirst();
+			counters.remove(min.item);
+			evicted = min.item;
+		}
+		counter = new Counter<>(keyFactory.apply(item), estimate, sequence++);
+		counters.put(counter.item, counter);
+		byCount.add(counter);
+		return evicted;
+	}
+
+	public E offer(E item) {
+		return offer(item, 1);
+	}
+
+	public boolean contains(E item) {
+		return counters.containsKey(item);
+	}
+
+	/**
+	 * @return the estimated count of item, tracked or not
+	 */
+	public long estimate(E item) {
+		return sketch.estimateHash(hasher.applyAsLong(item));
+	}
+
+	/**
+	 * @return the tracked items and their estimated counts, largest first
+	 */
+	public Map<E, Long> getTopK() {
+		Map<E, Long> top = new LinkedHashMap<>();
+		byCount.descendingSet().forEach(counter -> top.put(counter.item, counter.count));
+		return top;
+	}
+
+	public int size() {
+		return counters.size();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public CountMinSketch getSketch() {
+		return sketch;
+	}
+
+	private static class Counter<E> implements Comparable<Counter<E>> {
+		final E item;
+		final long sequence;
+		long count;
+
+		Counter(E item, long count, long sequence) {
+			this.item = item;
+			this.count = count;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(Counter<E> other) {
+			int compare = Long.compare(count, other.count);
+			return compare != 0 ? compare : Long.compare(sequence, other.sequence);
+		}
+	}
+}
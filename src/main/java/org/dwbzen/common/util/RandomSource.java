@@ -0,0 +1,86 @@
+package org.dwbzen.common.util;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Where the cp, ifs and data packages get their randomness.<br>
+ * An unseeded RandomSource (the default) hands out ThreadLocalRandom, which is fast and uncontended but not reproducible.
+ * A seeded RandomSource hands out SplitMixRandom generators derived from the seed, so a run can be repeated bit for bit:
+ * <ul>
+ * <li>current() is a per-thread generator. Threads get their streams in the order they first call current(),
+ * so single-threaded runs are reproducible.</li>
+ * <li>split(index) is a new generator for task index. Parallel runs that give each task its own split(index)
+ * are reproducible whatever the thread scheduling.</li>
+ * </ul>
+ * Install a seeded source with RandomSource.setDefault(new RandomSource(seed)) for regression testing,
+ * or give a component its own with setRandomSource().<br>
+ * A component without a RandomSource of its own looks up its owner's (a CollectorStats that of its CollectorStatsMap,
+ * a MarkovChainProducer that of its MarkovChain) and otherwise getDefault() each time it needs one,
+ * so setDefault() applies to existing components as well as new ones.
+ */
+public class RandomSource {
+
+	private static volatile RandomSource defaultSource = new RandomSource();
+
+	private final boolean seeded;
+	private final long seed;
+	private final AtomicLong threadStreams = new AtomicLong();
+	private final ThreadLocal<Random> threadRandom;
+
+	/**
+	 * An unseeded RandomSource using ThreadLocalRandom.
+	 */
+	public RandomSource() {
+		seeded = false;
+		seed = 0;
+		threadRandom = null;
+	}
+
+	/**
+	 * A reproducible RandomSource.
+	 * @param seed the seed of every stream
+	 */
+	public RandomSource(long seed) {
+		seeded = true;
+		this.seed = seed;
+		// split(index) uses non-negative indexes, per-thread streams count down from -1
+		threadRandom = ThreadLocal.withInitial(() -> SplitMixRandom.forWalk(seed, -1 - threadStreams.getAndIncrement()));
+	}
+
+	public static RandomSource getDefault() {
+		return defaultSource;
+	}
+
+	/**
+	 * Every component without a RandomSource of its own uses this RandomSource from now on.
+	 * @param randomSource the new default
+	 */
+	public static void setDefault(RandomSource randomSource) {
+		defaultSource = randomSource;
+	}
+
+	/**
+	 * @return the Random of the calling thread, never share it with other threads
+	 */
+	public Random current() {
+		return seeded ? threadRandom.get() : ThreadLocalRandom.current();
+	}
+
+	/**
+	 * @param index the task number, >= 0
+	 * @return a new Random for one task, the same for a given seed and index
+	 */
+	public Random split(long index) {
+		return seeded ? SplitMixRandom.forWalk(seed, index) : new SplitMixRandom(ThreadLocalRandom.current().nextLong());
+	}
+
+	public boolean isSeeded() {
+		return seeded;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+}
@@ -0,0 +1,108 @@
+package org.dwbzen.common.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A uniform random sample of at most capacity items of a stream (reservoir sampling, Algorithm R).<br>
+ * After n offers each offer is in the sample with probability capacity / n. Every offer counts, so an item offered
+ * more than once is more likely to be sampled and can fill more than one slot; take a Set of the sample for the distinct items.
+ * Reservoirs of separate streams merge into a uniform sample of the combined stream.
+ *
+ * @param <E> the item class
+ */
+public class Reservoir<E> {
+
+	private final int capacity;
+	private final List<E> sample;
+	private long seen = 0;
+
+	public Reservoir(int capacity) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("capacity must be > 0: " + capacity);
+		}
+		this.capacity = capacity;
+		sample = new ArrayList<>(Math.min(capacity, 16));
+	}
+
+	/**
+	 * @param item the next item of the stream
+	 * @param random the Random to use
+	 * @return true if item is now in the sample
+	 */
+	public boolean offer(E item, Random random) {
+		seen++;
+		if(sample.size() < capacity) {
+			sample.add(item);
+			return true;
+		}
+		long j = (long)(random.nextDouble() * seen);
+		if(j < capacity) {
+			sample.set((int)j, item);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Merges the sample of another stream into this one, which then samples both streams.
+	 * Each slot is drawn from this or the other sample with probability proportional to the offers each has not yet
+	 * contributed, so the merged sample is the same as one reservoir fed both streams.
+	 * @param other a Reservoir of the same capacity, unchanged
+	 * @param random the Random to use
+	 * @return this
+	 */
+	public Reservoir<E> merge(Reservoir<E> other, Random random) {
+		if(other.capacity != capacity) {
+			throw new IllegalArgumentException("capacities differ: " + capacity + ", " + other.capacity);
+		}
+		List<E> mine = new ArrayList<>(sample);
+		List<E> theirs = new ArrayList<>(other.sample);
+		long remaining = seen;
+		long otherRemaining = other.seen;
+		int size = (int)Math.min(capacity, seen + other.seen);
+		sample.clear();
+		while(sample.size() < size) {
+			if((long)(random.nextDouble() * (remaining + otherRemaining)) < remaining) {
+				sample.add(removeAny(mine, random));
+				remaining--;
+			}
+			else {
+				sample.add(removeAny(theirs, random));
+				otherRemaining--;
+			}
+		}
+		seen += other.seen;
+		return this;
+	}
+
+	private static <E> E removeAny(List<E> items, Random random) {
+		int last = items.size() - 1;
+		int i = random.nextInt(items.size());
+		E item = items.get(i);
+		items.set(i, items.get(last));
+		items.remove(last);
+		return item;
+	}
+
+	public boolean contains(E item) {
+		return sample.contains(item);
+	}
+
+	public List<E> getSample() {
+		return Collections.unmodifiableList(sample);
+	}
+
+	/**
+	 * @return the number of items offered
+	 */
+	public long getSeen() {
+		return seen;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+}
@@ -0,0 +1,59 @@
+package org.dwbzen.common.util;
+
+import java.util.Random;
+
+/**
+ * A fast, unsynchronized Random based on SplitMix64 for use by one thread at a time.<br>
+ * forWalk(seed, index) derives an independent generator for each of many parallel walks,
+ * so the results of walk i depend only on the seed and i, not on which thread runs it or when.
+ *
+ * <p>See Steele, Lea and Flood, <i>Fast Splittable Pseudorandom Number Generators</i>, OOPSLA 2014.
+ */
+public class SplitMixRandom extends Random {
+
+	private static final long serialVersionUID = 2385471024567318893L;
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private long state;
+
+	public SplitMixRandom(long seed) {
+		super(0L);
+		state = seed;
+	}
+
+	/**
+	 * @param seed the seed of a whole run
+	 * @param index the walk number
+	 * @return a new SplitMixRandom for walk index
+	 */
+	public static SplitMixRandom forWalk(long seed, long index) {
+		return new SplitMixRandom(mix64(seed + (index + 1) * GOLDEN_GAMMA));
+	}
+
+	@Override
+	public void setSeed(long seed) {
+		state = seed;
+	}
+
+	@Override
+	protected int next(int bits) {
+		return (int)(nextLong() >>> (64 - bits));
+	}
+
+	@Override
+	public long nextLong() {
+		state += GOLDEN_GAMMA;
+		return mix64(state);
+	}
+
+	@Override
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
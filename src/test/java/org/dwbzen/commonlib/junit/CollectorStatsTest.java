@@ -0,0 +1,153 @@
+package org.dwbzen.commonlib.junit;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.dwbzen.common.cp.CollectorStats;
+import org.dwbzen.common.cp.MarkovChain;
+import org.dwbzen.common.math.OccurrenceProbability;
+import org.dwbzen.commonlib.test.Sentence;
+import org.dwbzen.commonlib.test.Word;
+
+import junit.framework.TestCase;
+
+public class CollectorStatsTest extends TestCase {
+
+	static final String text = "the quick brown fox jumps over the lazy dog";
+	
+	private CollectorStats<Character, Word, Sentence> collect(boolean lazy) {
+		CollectorStats<Character, Word, Sentence> cstats = new CollectorStats<>(new Word("th"));
+		cstats.setLazyStatistics(lazy);
+		Sentence sentence = new Sentence("pangram", text);
+		for(char c : text.toCharArray()) {
+			cstats.addOccurrence(c, sentence);
+		}
+		return cstats;
+	}
+	
+	public void testJsonLayout() {
+		CollectorStats<Character, Word, Sentence> cstats = new CollectorStats<>(new Word("t"));
+		cstats.setInitial(true);
+		cstats.addOccurrence('h', new Sentence("s1"));
+		cstats.addOccurrence('h', new Sentence("s2"));
+		String expected = "{\"subset\":[\"t\"],\"totalOccurrance\":2,\"occurrenceProbabilityMap\":{\"h\":{\"occurrence\":2,\"rank\":0,\"probability\":1.0}},"
+				+ "\"terminal\":false,\"initial\":true,\"length\":1,\"supplierCounts\":{\"(h,s1)\":1,\"(h,s2)\":1}}";
+		assertEquals(expected, cstats.toJson().replaceAll("\\s", ""));
+	}
+	
+	public void testSupplierCountsFollowTheOwner() {
+		CollectorStats<Character, Word, Sentence> cstats = new CollectorStats<>(new Word("t"));
+		cstats.addOccurrence('h', new Sentence("s1"));
+		cstats.addOccurrence('o', new Sentence("s2"));
+		MarkovChain<Character, Word, Sentence> chain1 = new MarkovChain<>(1);
+		chain1.put(new Word("t"), cstats);		// re-keyed to the chain's supplier ids
+		cstats.addOccurrence('h', new Sentence("s3"));
+		
+		CollectorStats<Character, Word, Sentence> other = new CollectorStats<>(new Word("t"));
+		other.addOccurrence('o', new Sentence("s3"));
+		other.addOccurrence('o', new Sentence("s2"));
+		MarkovChain<Character, Word, Sentence> chain2 = new MarkovChain<>(1);
+		chain2.put(new Word("t"), other);
+		cstats.merge(other);
+		
+		Map<String, Integer> h = new TreeMap<>(Map.of("s1", 1, "s3", 1));
+		Map<String, Integer> o = new TreeMap<>(Map.of("s2", 2, "s3", 1));
+		assertEquals(h, cstats.getSupplierCounts('h'));
+		assertEquals(o, cstats.getSupplierCounts('o'));
+		assertEquals(2, cstats.getSupplierCount('o', new Sentence("s2")));
+		assertEquals(0, cstats.getSupplierCount('h', new Sentence("s2")));
+		assertEquals(Map.of("s2", 1, "s3", 1), other.getSupplierCounts('o'));
+		
+		chain1.clear();		// detached CollectorStats keep their names
+		assertEquals(h, cstats.getSupplierCounts('h'));
+	}
+	
+	public void testLazyMatchesEager() {
+		CollectorStats<Character, Word, Sentence> eager = collect(false);
+		CollectorStats<Character, Word, Sentence> lazy = collect(true);
+		assertFalse(lazy.isSealed());
+		assertEquals(text.length(), lazy.getTotalOccurrance());
+		Map<Character, OccurrenceProbability> expected = eager.getOccurrenceProbabilityMap();
+		Map<Character, OccurrenceProbability> actual = lazy.getOccurrenceProbabilityMap();
+		assertTrue(lazy.isSealed());
+		assertEquals(expected.keySet(), actual.keySet());
+		for(Character c : expected.keySet()) {
+			OccurrenceProbability op = expected.get(c);
+			OccurrenceProbability op2 = actual.get(c);
+			assertEquals(op.getOccurrence(), op2.getOccurrence());
+			assertEquals(op.getProbability(), op2.getProbability());
+			assertEquals(op.getRange()[CollectorStats.LOW], op2.getRange()[CollectorStats.LOW]);
+			assertEquals(op.getRange()[CollectorStats.HIGH], op2.getRange()[CollectorStats.HIGH]);
+		}
+		assertEquals(eager.toJson(), lazy.toJson());
+	}
+	
+	public void testSealAfterMoreOccurrences() {
+		CollectorStats<Character, Word, Sentence> cstats = collect(true);
+		cstats.seal();
+		cstats.addOccurrence('z', new Sentence("more"));
+		assertFalse(cstats.isSealed());
+		OccurrenceProbability op = cstats.getOccurrenceProbabilityMap().get('z');
+		assertEquals(2, op.getOccurrence());
+		assertEquals(text.length() + 1, op.getRange()[CollectorStats.HIGH]);
+	}
+	
+	public void testSampleNextDistribution() {
+		CollectorStats<Character, Word, Sentence> cstats = collect(true);
+		Random random = new Random(42L);
+		int draws = 200000;
+		Map<Character, Integer> counts = new TreeMap<>();
+		for(int i=0; i<draws; i++) {
+			counts.merge(cstats.sampleNext(random), 1, Integer::sum);
+		}
+		Map<Character, OccurrenceProbability> probabilities = cstats.getOccurrenceProbabilityMap();
+		assertEquals(probabilities.keySet(), counts.keySet());
+		for(Character c : probabilities.keySet()) {
+			double expected = (double)probabilities.get(c).getOccurrence() / cstats.getTotalOccurrance();
+			double actual = (double)counts.get(c) / draws;
+			assertEquals("probability of '" + c + "'", expected, actual, 0.005);
+		}
+	}
+	
+	public void testSamplerInvalidatedByOccurrence() {
+		CollectorStats<Character, Word, Sentence> cstats = new CollectorStats<>(new Word("q"));
+		assertNull(cstats.sampleNext(new Random(1L)));
+		cstats.addOccurrence('u', new Sentence("s"));
+		assertEquals(Character.valueOf('u'), cstats.sampleNext(new Random(1L)));
+		assertEquals(1, cstats.getAliasSampler().size());
+		cstats.addOccurrence('a', new Sentence("s"));
+		assertEquals(2, cstats.getAliasSampler().size());
+	}
+	
+	public void testSupplierCounts() {
+		CollectorStats<Character, Word, Sentence> cstats = new CollectorStats<>(new Word("a"));
+		Sentence[] sentences = new Sentence[100];
+		for(int i=0; i<sentences.length; i++) {
+			sentences[i] = new Sentence("s" + i, text);
+			for(int j=0; j<=i % 3; j++) {
+				cstats.addOccurrence('b', sentences[i]);
+			}
+		}
+		cstats.addOccurrence('c', sentences[7]);
+		cstats.addOccurrence('c');
+		assertEquals(1, cstats.getSupplierCount('b', sentences[0]));
+		assertEquals(3, cstats.getSupplierCount('b', sentences[8]));
+		assertEquals(1, cstats.getSupplierCount('c', sentences[7]));
+		assertEquals(0, cstats.getSupplierCount('c', sentences[8]));
+		assertEquals(0, cstats.getSupplierCount('c', new Sentence("never seen", text)));
+		assertEquals(102, cstats.getSupplierCountsSize());
+		assertEquals(100, cstats.getSupplierCounts('b').size());
+		assertEquals("{Unnamed=1, s7=1}", cstats.getSupplierCounts('c').toString());
+		assertEquals("\t{Unnamed:1,s7:1}", cstats.getSupplierCountsString('c', null));
+		int total = cstats.getSupplierCounts().values().stream().mapToInt(Integer::intValue).sum();
+		assertEquals(cstats.getTotalOccurrance(), total);
+
+		CollectorStats<Character, Word, Sentence> merged = new CollectorStats<>(new Word("a"));
+		merged.addOccurrence('c', sentences[7]);
+		merged.merge(cstats);
+		assertEquals(2, merged.getSupplierCount('c', sentences[7]));
+		assertEquals(3, merged.getSupplierCount('b', sentences[2]));
+		assertEquals(102, merged.getSupplierCountsSize());
+	}
+}
@@ -0,0 +1,75 @@
+package org.dwbzen.commonlib.junit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.dwbzen.common.math.Combinations;
+import org.dwbzen.common.math.Tupple;
+import org.dwbzen.common.relation.Partitions;
+
+import junit.framework.TestCase;
+
+public class CombinationsTest extends TestCase {
+
+	public void testSameOrderAsPowerSet() {
+		for(int n=0; n<=12; n++) {
+			for(int k=0; k<=n+1; k++) {
+				List<int[]> expected = new ArrayList<>();
+				for(int mask=1; mask < (1 << n); mask++) {
+					if(Integer.bitCount(mask) == k) {
+						int[] bits = new int[k];
+						for(int i=0, j=0; j<n; j++) {
+							if((mask & (1 << j)) != 0) {
+								bits[i++] = j;
+							}
+						}
+						expected.add(bits);
+					}
+				}
+				Combinations combinations = new Combinations(n, k);
+				List<int[]> actual = new ArrayList<>();
+				combinations.forEach(actual::add);
+				assertEquals(expected.size(), combinations.size());
+				assertEquals(expected.size(), actual.size());
+				for(int i=0; i<expected.size(); i++) {
+					assertTrue(Arrays.equals(expected.get(i), actual.get(i)));
+				}
+			}
+		}
+	}
+
+	public void testLarge() {
+		assertEquals(2415, Combinations.binomial(70, 2));
+		assertEquals(184756, Combinations.binomial(20, 10));
+		assertEquals(Long.MAX_VALUE, Combinations.binomial(200, 100));
+		for(int n : new int[] {63, 64, 70}) {
+			Iterator<int[]> iterator = new Combinations(n, 2).iterator(true);
+			int count = 0;
+			int[] last = null;
+			while(iterator.hasNext()) {
+				last = iterator.next();
+				count++;
+			}
+			assertEquals(Combinations.binomial(n, 2), count);
+			assertTrue(Arrays.equals(new int[] {n - 2, n - 1}, last));
+		}
+		assertEquals(1, count(new Combinations(63, 63)));
+		assertEquals(64, count(new Combinations(64, 63)));
+	}
+
+	public void testPartitions() {
+		Tupple<Character> charTupple = new Tupple<>('d', 'o', 'n', 'a', 'l', 'd');
+		assertEquals(11, new Partitions<>(charTupple, 2).getPartitions().size());	// 15 pairs, 4 repeat
+		assertEquals(2, Partitions.nbits(10));
+	}
+
+	private static int count(Combinations combinations) {
+		int count = 0;
+		for(Iterator<int[]> iterator = combinations.iterator(); iterator.hasNext(); iterator.next()) {
+			count++;
+		}
+		return count;
+	}
+}
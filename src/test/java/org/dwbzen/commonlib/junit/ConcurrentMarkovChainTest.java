@@ -0,0 +1,81 @@
+package org.dwbzen.commonlib.junit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.dwbzen.common.cp.CollectorStats;
+import org.dwbzen.common.cp.ConcurrentMarkovChain;
+import org.dwbzen.common.cp.MarkovChain;
+import org.dwbzen.commonlib.test.CharacterChains;
+import org.dwbzen.commonlib.test.Sentence;
+import org.dwbzen.commonlib.test.Word;
+
+import junit.framework.TestCase;
+
+public class ConcurrentMarkovChainTest extends TestCase {
+
+	static final Sentence sentence1 = new Sentence("s1", "the quick brown fox jumps over the lazy dog");
+	static final Sentence sentence2 = new Sentence("s2", "pack my box with five dozen liquor jugs");
+
+	public void testContendedTotals() throws Exception {
+		int nthreads = 8;
+		int occurrences = 20000;
+		ConcurrentMarkovChain<Character, Word, Sentence> chain = new ConcurrentMarkovChain<>(2);
+		Word state = new Word("ab");
+		ExecutorService executor = Executors.newFixedThreadPool(nthreads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		for(int t=0; t<nthreads; t++) {
+			Sentence supplier = new Sentence("s" + t);
+			futures.add(executor.submit(() -> {
+				start.await();
+				for(int i=0; i<occurrences; i++) {
+					chain.addOccurrence(state, (char)('a' + i % 4), supplier);
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for(Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+
+		assertEquals(nthreads * occurrences, chain.get(state).getTotalOccurrance());
+		CollectorStats<Character, Word, Sentence> cstats = chain.toMarkovChain().get(state);
+		assertEquals(nthreads * occurrences, cstats.getTotalOccurrance());
+		for(char c = 'a'; c <= 'd'; c++) {
+			assertEquals(nthreads * occurrences / 4, cstats.getOccurrenceProbabilityMap().get(c).getOccurrence());
+			assertEquals(occurrences / 4, cstats.getSupplierCount(c, new Sentence("s3")));
+		}
+		assertEquals(0.25, cstats.getOccurrenceProbabilityMap().get('a').getProbability(), 1E-9);
+	}
+
+	public void testMatchesSequential() {
+		List<Sentence> sentences = new ArrayList<>();
+		Random random = new Random(3L);
+		for(int i=0; i<500; i++) {
+			sentences.add(random.nextBoolean() ? new Sentence("s" + i, sentence1.get().toString()) : new Sentence("s" + i, sentence2.get().toString()));
+		}
+		MarkovChain<Character, Word, Sentence> sequential = CharacterChains.train(3, sentences.toArray(new Sentence[0]));
+		ConcurrentMarkovChain<Character, Word, Sentence> chain = new ConcurrentMarkovChain<>(3);
+		sentences.parallelStream().forEach(sentence -> CharacterChains.collectConcurrently(chain, sentence));
+		MarkovChain<Character, Word, Sentence> concurrent = chain.toMarkovChain();
+		assertEquals(sequential.size(), concurrent.size());
+		for(Word state : sequential.keySet()) {
+			CollectorStats<Character, Word, Sentence> expected = sequential.get(state);
+			CollectorStats<Character, Word, Sentence> actual = concurrent.get(state);
+			expected.setShowSupplierCounts(false);
+			actual.setShowSupplierCounts(false);
+			assertEquals(expected.toString(), actual.toString());
+			assertEquals(expected.getSupplierCounts().toString(), actual.getSupplierCounts().toString());
+		}
+		assertEquals(sequential.getInitialStates(), concurrent.getInitialStates());
+		assertEquals(sequential.getTerminalStates(), concurrent.getTerminalStates());
+	}
+}
@@ -0,0 +1,189 @@
+package org.dwbzen.commonlib.junit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import org.dwbzen.common.math.SourceOccurrenceProbability;
+import org.dwbzen.common.math.Tupple;
+import org.dwbzen.common.relation.OccurrenceRelationBag;
+import org.dwbzen.common.util.CountMinSketch;
+import org.dwbzen.common.util.HeavyHitters;
+import org.dwbzen.common.util.Reservoir;
+import org.dwbzen.commonlib.test.Sentence;
+import org.dwbzen.commonlib.test.Word;
+
+import junit.framework.TestCase;
+
+public class HeavyHittersTest extends TestCase {
+
+	static class WordBag extends OccurrenceRelationBag<Character, Word, Sentence> {
+		WordBag(int degree) {
+			super(degree);
+		}
+	}
+
+	/**
+	 * @return a stream of n items where item i has frequency proportional to 1/(i+1)
+	 */
+	private static List<Integer> zipf(int n, int items, long seed) {
+		double[] cumulative = new double[items];
+		double sum = 0;
+		for(int i=0; i<items; i++) {
+			sum += 1.0 / (i + 1);
+			cumulative[i] = sum;
+		}
+		Random random = new Random(seed);
+		List<Integer> stream = new ArrayList<>(n);
+		for(int k=0; k<n; k++) {
+			double u = random.nextDouble() * sum;
+			int i = 0;
+			while(cumulative[i] < u) {
+				i++;
+			}
+			stream.add(i);
+		}
+		return stream;
+	}
+
+	public void testCountMinSketch() {
+		CountMinSketch sketch = new CountMinSketch(0.001, 0.01);
+		assertEquals(2719, sketch.getWidth());
+		assertEquals(5, sketch.getDepth());
+		Map<Integer, Integer> counts = new HashMap<>();
+		for(int item : zipf(100000, 5000, 3L)) {
+			sketch.add(item, 1);
+			counts.merge(item, 1, Integer::sum);
+		}
+		assertEquals(100000, sketch.getTotal());
+		for(Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+			long estimate = sketch.estimate(entry.getKey());
+			assertTrue(estimate >= entry.getValue());
+			assertTrue(estimate - entry.getValue() <= sketch.getErrorBound());
+		}
+	}
+
+	public void testCollidingHashCodes() {
+		Tupple<Character> t1 = new Tupple<>('A', 'b');
+		Tupple<Character> t2 = new Tupple<>('B', 'C');
+		assertEquals(t1.hashCode(), t2.hashCode());
+		assertEquals(t1.getElements().hashCode(), t2.getElements().hashCode());
+		assertFalse(CountMinSketch.hash64(t1.getElements()) == CountMinSketch.hash64(t2.getElements()));
+		assertFalse(CountMinSketch.hash64("Aa") == CountMinSketch.hash64("BB"));
+		
+		CountMinSketch sketch = new CountMinSketch(0.01, 0.001);
+		sketch.add(t1.getElements(), 1000);
+		assertEquals(1000, sketch.estimate(t1.getElements()));
+		assertEquals(0, sketch.estimate(t2.getElements()));
+		
+		HeavyHitters<Tupple<Character>> heavyHitters = new HeavyHitters<>(1, 0.01, 0.001, UnaryOperator.identity(),
+				tupple -> CountMinSketch.hash64(tupple.getElements()));
+		heavyHitters.offer(t1, 10);
+		assertNull(heavyHitters.offer(t2, 1));		// t2 doesn't inherit the count of t1
+		assertEquals(1, heavyHitters.estimate(t2));
+		assertTrue(heavyHitters.contains(t1));
+	}
+
+	public void testHeavyHitters() {
+		HeavyHitters<Integer> heavyHitters = new HeavyHitters<>(10, 0.001, 0.01);
+		for(int item : zipf(100000, 5000, 7L)) {
+			heavyHitters.offer(item);
+		}
+		assertEquals(10, heavyHitters.size());
+		for(int i=0; i<5; i++) {
+			assertTrue(heavyHitters.contains(i));
+		}
+		assertEquals(Integer.valueOf(0), heavyHitters.getTopK().keySet().iterator().next());
+	}
+
+	public void testReservoir() {
+		Reservoir<Integer> reservoir = new Reservoir<>(10);
+		Random random = new Random(1L);
+		int[] hits = new int[100];
+		for(int run=0; run<2000; run++) {
+			reservoir = new Reservoir<>(10);
+			for(int i=0; i<100; i++) {
+				reservoir.offer(i, random);
+			}
+			reservoir.getSample().forEach(i -> hits[i]++);
+		}
+		assertEquals(10, reservoir.getSample().size());
+		assertEquals(100, reservoir.getSeen());
+		for(int hit : hits) {
+			assertTrue(hit > 100 && hit < 300);		// expected 200
+		}
+	}
+
+	public void testReservoirMerge() {
+		Random random = new Random(2L);
+		int[] hits = new int[100];
+		for(int run=0; run<2000; run++) {
+			Reservoir<Integer> reservoir = new Reservoir<>(10);
+			Reservoir<Integer> other = new Reservoir<>(10);
+			for(int i=0; i<100; i++) {
+				(i < 90 ? reservoir : other).offer(i, random);		// 90 offers merged with 10
+			}
+			reservoir.merge(other, random);
+			assertEquals(10, reservoir.getSample().size());
+			assertEquals(100, reservoir.getSeen());
+			reservoir.getSample().forEach(i -> hits[i]++);
+		}
+		for(int hit : hits) {
+			assertTrue(hit > 100 && hit < 300);		// expected 200 for both streams
+		}
+		
+		Reservoir<String> small = new Reservoir<>(10);
+		small.offer("a", random);
+		small.offer("a", random);		// every offer counts
+		Reservoir<String> other = new Reservoir<>(10);
+		other.offer("b", random);
+		small.merge(other, random);
+		assertEquals(3, small.getSeen());
+		assertEquals(List.of("a", "a", "b"), small.getSample().stream().sorted().collect(Collectors.toList()));
+	}
+
+	public void testApproximateBag() {
+		Random random = new Random(9L);
+		List<Word> units = new ArrayList<>();
+		for(int n=0; n<3000; n++) {
+			StringBuilder sb = new StringBuilder("ab");		// every unit has a and b
+			for(int i=0; i<6; i++) {
+				sb.append((char)('c' + random.nextInt(20)));
+			}
+			units.add(new Word(sb.toString()));
+		}
+		WordBag exact = new WordBag(2);
+		WordBag approximate = new WordBag(2);
+		approximate.setTopK(20);
+		approximate.setSampleSize(5);
+		approximate.setIdExtractorFunction(word -> word.toString());
+		exact.addUnits(units);
+		approximate.addUnits(units);
+		exact.close();
+		approximate.close();
+
+		assertEquals(exact.getTotalOccurrences(), approximate.getTotalOccurrences());
+		assertEquals(20, approximate.getSourceOccurrenceProbabilityMap().size());
+		Tupple<Character> ab = new Tupple<>('a', 'b');
+		SourceOccurrenceProbability<Character, Word> sop = approximate.getSourceOccurrenceProbabilityMap().get(ab);
+		assertEquals(3000, sop.getOccurrenceProbability().getOccurrence());
+		assertEquals(5, sop.getSources().size());
+		assertEquals(5, sop.getIds().size());
+		assertTrue(units.containsAll(sop.getSources()));
+		for(SourceOccurrenceProbability<Character, Word> kept : approximate.getSourceOccurrenceProbabilityMap().values()) {
+			int count = exact.getSourceOccurrenceProbabilityMap().get(kept.getKey()).getOccurrenceProbability().getOccurrence();
+			assertTrue(kept.getOccurrenceProbability().getOccurrence() >= count);
+		}
+		try {
+			approximate.setTopK(0);
+			fail("changed mode of a non-empty bag");
+		}
+		catch(IllegalStateException e) {
+			// expected
+		}
+	}
+}
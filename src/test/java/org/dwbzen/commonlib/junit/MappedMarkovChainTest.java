@@ -0,0 +1,95 @@
+package org.dwbzen.commonlib.junit;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.dwbzen.common.cp.IKeyCodec;
+import org.dwbzen.common.cp.MappedMarkovChain;
+import org.dwbzen.common.cp.MarkovChain;
+import org.dwbzen.commonlib.test.CharacterChains;
+import org.dwbzen.commonlib.test.Sentence;
+import org.dwbzen.commonlib.test.Word;
+
+import junit.framework.TestCase;
+
+public class MappedMarkovChainTest extends TestCase {
+
+	static final Sentence sentence1 = new Sentence("s1", "the quick brown fox jumps over the lazy dog");
+	static final Sentence sentence2 = new Sentence("s2", "pack my box with five dozen liquor jugs");
+
+	private MappedMarkovChain<Character, Word, Sentence> map(MarkovChain<Character, Word, Sentence> markovChain) throws IOException {
+		Path path = Files.createTempFile("markovChain", ".mkmp");
+		path.toFile().deleteOnExit();
+		MappedMarkovChain.write(markovChain, path, IKeyCodec.CHARACTER);
+		return MappedMarkovChain.open(path, IKeyCodec.CHARACTER, Word::new);
+	}
+
+	public void testGet() throws IOException {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(2, sentence1, sentence2, sentence1);
+		markovChain.setName("pangrams");
+		MappedMarkovChain<Character, Word, Sentence> mapped = map(markovChain);
+
+		assertEquals("pangrams", mapped.getName());
+		assertEquals(2, mapped.getOrder());
+		assertEquals(markovChain.size(), mapped.size());
+		assertEquals(new ArrayList<>(markovChain.keySet()), mapped.getStates());
+		assertEquals(markovChain.getInitialStates(), mapped.getInitialStates());
+		for(Word state : markovChain.keySet()) {
+			markovChain.get(state).setShowSupplierCounts(false);
+			assertEquals(markovChain.get(state).getTotalOccurrance(), mapped.getTotalOccurrance(state));
+			assertEquals(markovChain.get(state).toString(false), mapped.get(state).toString(false));
+			assertEquals(markovChain.get(state).isTerminal(), mapped.get(state).isTerminal());
+		}
+		assertNull(mapped.get(new Word("zz")));
+		assertNull(mapped.get(new Word("q!")));
+		assertFalse(mapped.containsKey(new Word("the")));
+	}
+
+	public void testSampleNext() throws IOException {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(1, sentence1, sentence2);
+		MappedMarkovChain<Character, Word, Sentence> mapped = map(markovChain);
+		Random random = new Random(5L);
+		Word state = new Word("o");
+		int[] counts = new int[128];
+		int samples = 20000;
+		for(int i=0; i<samples; i++) {
+			counts[mapped.sampleNext(state, random)]++;
+		}
+		markovChain.get(state).getOccurrenceProbabilityMap().forEach((k, op) ->
+			assertEquals(op.getProbability(), (double)counts[k] / samples, 0.02));
+		assertNull(mapped.sampleNext(new Word("x"), random));		// terminal only
+	}
+
+	public void testPickInitialSeed() throws IOException {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(2, sentence1, sentence2);
+		MappedMarkovChain<Character, Word, Sentence> mapped = map(markovChain);
+		mapped.setPickInitialSeed(true);
+		mapped.setWeightedSeed(true);
+		Random random = new Random(7L);
+		Set<Word> picked = new HashSet<>();
+		for(int i=0; i<1000; i++) {
+			Word seed = mapped.pickSeed(random);
+			assertTrue(markovChain.get(seed).isInitial());
+			picked.add(seed);
+		}
+		assertEquals(new HashSet<>(markovChain.getInitialStates()), picked);
+	}
+
+	public void testNotMapped() throws IOException {
+		Path path = Files.createTempFile("markovChain", ".json");
+		path.toFile().deleteOnExit();
+		Files.writeString(path, "{ \"not\" : \"mapped\" }");
+		try {
+			MappedMarkovChain.open(path, IKeyCodec.CHARACTER, Word::new);
+			fail("expected IOException");
+		}
+		catch(IOException e) {
+			assertTrue(e.getMessage().startsWith("Not a mapped MarkovChain"));
+		}
+	}
+}
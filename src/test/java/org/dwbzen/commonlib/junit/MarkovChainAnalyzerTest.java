@@ -0,0 +1,48 @@
+package org.dwbzen.commonlib.junit;
+
+import java.util.Arrays;
+
+import org.dwbzen.common.cp.ChainStatistics;
+import org.dwbzen.common.cp.HeldOutScore;
+import org.dwbzen.common.cp.MarkovChain;
+import org.dwbzen.common.cp.MarkovChainAnalyzer;
+import org.dwbzen.commonlib.test.CharacterChains;
+import org.dwbzen.commonlib.test.Sentence;
+import org.dwbzen.commonlib.test.Word;
+
+import junit.framework.TestCase;
+
+public class MarkovChainAnalyzerTest extends TestCase {
+
+	static final Sentence sentence1 = new Sentence("s1", "the quick brown fox jumps over the lazy dog");
+	static final Sentence sentence2 = new Sentence("s2", "pack my box with five dozen liquor jugs");
+
+	public void testStatistics() {
+		assertEquals(1.0, ChainStatistics.entropy(new int[] {1, 1}, 2), 1E-12);
+		assertEquals(0.0, ChainStatistics.entropy(new int[] {7}, 7), 1E-12);
+
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(1, sentence1);
+		MarkovChainAnalyzer<Character, Word, Sentence> analyzer = new MarkovChainAnalyzer<>(markovChain, Word::new);
+		ChainStatistics<Word> statistics = analyzer.getStatistics();
+		assertEquals(markovChain.size(), statistics.getStates());
+		assertEquals(0.0, statistics.getStateEntropy(new Word("t")), 1E-12);		// "th" twice
+		int states = statistics.getFanOutDistribution().values().stream().mapToInt(Integer::intValue).sum();
+		assertEquals(statistics.getStates(), states);
+		assertTrue(statistics.getConditionalEntropy() > 0);
+		assertTrue(statistics.getConditionalEntropy() <= statistics.getMaxStateEntropy());
+		assertEquals(Math.pow(2, statistics.getConditionalEntropy()), statistics.getPerplexity(), 1E-12);
+	}
+
+	public void testScore() {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(1, sentence1);
+		MarkovChainAnalyzer<Character, Word, Sentence> analyzer = new MarkovChainAnalyzer<>(markovChain, Word::new);
+		HeldOutScore seen = analyzer.score(Arrays.stream(sentence1.get().toString().split("\\s+")).map(Word::new));
+		HeldOutScore unseen = analyzer.score(Arrays.stream(sentence2.get().toString().split("\\s+")).parallel().map(Word::new));
+		assertEquals(9, seen.getSequences());
+		assertEquals(0, seen.getUnseenStates());
+		assertEquals(0, seen.getUnseenTransitions());
+		assertTrue(unseen.getUnseenTransitions() > 0);
+		assertTrue(seen.getPerplexity() < unseen.getPerplexity());
+		assertEquals(Math.pow(2, seen.getCrossEntropy()), seen.getPerplexity(), 1E-9);
+	}
+}
@@ -0,0 +1,70 @@
+package org.dwbzen.commonlib.junit;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.dwbzen.common.cp.FrozenMarkovChain;
+import org.dwbzen.common.cp.MarkovChain;
+import org.dwbzen.common.cp.MarkovChainGenerator;
+import org.dwbzen.commonlib.test.CharacterChains;
+import org.dwbzen.commonlib.test.Sentence;
+import org.dwbzen.commonlib.test.Word;
+
+import junit.framework.TestCase;
+
+public class MarkovChainGeneratorTest extends TestCase {
+
+	static final Sentence sentence1 = new Sentence("s1", "the quick brown fox jumps over the lazy dog");
+	static final Sentence sentence2 = new Sentence("s2", "pack my box with five dozen liquor jugs");
+
+	private MarkovChainGenerator<Character, Word, Sentence> generator(FrozenMarkovChain<Character, Word, Sentence> frozen, long seed) {
+		MarkovChainGenerator<Character, Word, Sentence> generator = new MarkovChainGenerator<>(frozen, Word::new);
+		generator.setSeed(seed);
+		generator.setCount(1000);
+		generator.setMaxLength(12);
+		return generator;
+	}
+
+	public void testReproducible() throws Exception {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(2, sentence1, sentence2);
+		markovChain.setPickInitialSeed(true);
+		FrozenMarkovChain<Character, Word, Sentence> frozen = markovChain.freeze();
+
+		List<Word> sequential = generator(frozen, 42L).stream().collect(Collectors.toList());
+		MarkovChainGenerator<Character, Word, Sentence> parallel = generator(frozen, 42L);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		parallel.setPool(pool);
+		assertEquals(sequential, parallel.generate());
+		pool.shutdown();
+		assertEquals(sequential, generator(frozen, 42L).generate());
+		assertFalse(sequential.equals(generator(frozen, 43L).generate()));
+
+		for(Word word : sequential) {
+			assertTrue(frozen.getInitialStates().contains(new Word(word.subList(0, 2))));
+			for(int i=0; i+2 < word.size(); i++) {
+				assertTrue(markovChain.get(new Word(word.subList(i, i + 2))).getOccurrenceProbabilityMap().containsKey(word.get(i + 2)));
+			}
+		}
+	}
+
+	public void testFrozenIsImmutable() {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(1, sentence1);
+		FrozenMarkovChain<Character, Word, Sentence> frozen = markovChain.freeze();
+		assertEquals(markovChain.size(), frozen.size());
+		assertEquals(markovChain.getInitialStates(), frozen.getInitialStates());
+		assertEquals(markovChain.getTerminalStates(), frozen.getTerminalStates());
+		assertEquals(4, frozen.getTotalOccurrance(new Word("o")));
+
+		CharacterChains.collect(markovChain, sentence2);		// not seen by frozen
+		assertEquals(4, frozen.getTotalOccurrance(new Word("o")));
+		assertTrue(markovChain.get(new Word("o")).getTotalOccurrance() > 4);
+		try {
+			frozen.getInitialStates().add(new Word("z"));
+			fail("initial states are modifiable");
+		}
+		catch(UnsupportedOperationException e) {
+			// expected
+		}
+	}
+}
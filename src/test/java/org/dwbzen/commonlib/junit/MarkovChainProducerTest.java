@@ -0,0 +1,153 @@
+package org.dwbzen.commonlib.junit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.dwbzen.common.cp.MarkovChain;
+import org.dwbzen.common.cp.MarkovChainProducer;
+import org.dwbzen.commonlib.test.CharacterChains;
+import org.dwbzen.commonlib.test.Sentence;
+import org.dwbzen.commonlib.test.Word;
+
+import junit.framework.TestCase;
+
+public class MarkovChainProducerTest extends TestCase {
+
+	static final Sentence sentence1 = new Sentence("s1", "the quick brown fox jumps over the lazy dog");
+	static final Sentence sentence2 = new Sentence("s2", "pack my box with five dozen liquor jugs");
+
+	private MarkovChainProducer<Character, Word, Sentence> producer(int count) {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(2, sentence1, sentence2);
+		markovChain.setPickInitialSeed(true);
+		MarkovChainProducer<Character, Word, Sentence> producer = new MarkovChainProducer<>(markovChain, Word::new);
+		producer.setCount(count);
+		producer.setMaxLength(12);
+		return producer;
+	}
+
+	private void assertGenerated(MarkovChain<Character, Word, Sentence> markovChain, Word word) {
+		assertTrue(word.size() <= 12);
+		assertTrue(markovChain.getInitialStates().contains(new Word(word.subList(0, 2))));
+		for(int i=0; i+2 < word.size(); i++) {
+			Word state = new Word(word.subList(i, i + 2));
+			assertTrue(markovChain.get(state).getOccurrenceProbabilityMap().containsKey(word.get(i + 2)));
+		}
+	}
+
+	public void testStream() {
+		MarkovChainProducer<Character, Word, Sentence> producer = producer(500);
+		List<Word> words = producer.stream().parallel().collect(Collectors.toList());
+		assertEquals(500, words.size());
+		words.forEach(word -> assertGenerated(producer.getMarkovChain(), word));
+		Set<Word> produced = producer.produce(false);
+		assertTrue(produced.size() > 1 && produced.size() <= 500);
+		assertTrue(producer.iterator().hasNext());
+	}
+
+	public void testBatches() {
+		MarkovChainProducer<Character, Word, Sentence> producer = producer(105);
+		List<List<Word>> batches = producer.batches(10).parallel().collect(Collectors.toList());
+		assertEquals(11, batches.size());
+		assertEquals(5, batches.get(10).size());
+		batches.forEach(batch -> batch.forEach(word -> assertGenerated(producer.getMarkovChain(), word)));
+	}
+
+	public void testPublisherBackpressure() throws Exception {
+		MarkovChainProducer<Character, Word, Sentence> producer = producer(50);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		List<Word> received = new ArrayList<>();
+		CountDownLatch completed = new CountDownLatch(1);
+		producer.publisher(executor).subscribe(new Flow.Subscriber<Word>() {
+			private Flow.Subscription subscription;
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				this.subscription = subscription;
+				subscription.request(1);
+			}
+			@Override
+			public void onNext(Word word) {
+				received.add(word);
+				subscription.request(1);		// one at a time
+			}
+			@Override
+			public void onError(Throwable throwable) {
+				fail(throwable.toString());
+			}
+			@Override
+			public void onComplete() {
+				completed.countDown();
+			}
+		});
+		assertTrue(completed.await(10, TimeUnit.SECONDS));
+		executor.shutdown();
+		assertEquals(50, received.size());
+		received.forEach(word -> assertGenerated(producer.getMarkovChain(), word));
+	}
+	
+	public void testPublisherExactDemand() throws Exception {
+		MarkovChainProducer<Character, Word, Sentence> producer = producer(20);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		List<Word> received = new ArrayList<>();
+		CountDownLatch completed = new CountDownLatch(1);
+		producer.publisher(executor).subscribe(new Flow.Subscriber<Word>() {
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				subscription.request(20);		// exactly the count, completes without more demand
+			}
+			@Override
+			public void onNext(Word word) {
+				received.add(word);
+			}
+			@Override
+			public void onError(Throwable throwable) {
+				fail(throwable.toString());
+			}
+			@Override
+			public void onComplete() {
+				completed.countDown();
+			}
+		});
+		assertTrue(completed.await(10, TimeUnit.SECONDS));
+		executor.shutdown();
+		assertEquals(20, received.size());
+	}
+	
+	public void testPublisherInvalidRequest() throws Exception {
+		MarkovChainProducer<Character, Word, Sentence> producer = producer(20);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		List<Throwable> errors = new ArrayList<>();
+		CountDownLatch failed = new CountDownLatch(1);
+		Thread caller = Thread.currentThread();
+		producer.publisher(executor).subscribe(new Flow.Subscriber<Word>() {
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				subscription.request(0);
+			}
+			@Override
+			public void onNext(Word word) {
+			}
+			@Override
+			public void onError(Throwable throwable) {
+				if(Thread.currentThread() != caller) {		// not signalled from inside request()
+					errors.add(throwable);
+				}
+				failed.countDown();
+			}
+			@Override
+			public void onComplete() {
+				failed.countDown();
+			}
+		});
+		assertTrue(failed.await(10, TimeUnit.SECONDS));
+		executor.shutdown();
+		assertEquals(1, errors.size());
+		assertTrue(errors.get(0) instanceof IllegalArgumentException);
+	}
+}
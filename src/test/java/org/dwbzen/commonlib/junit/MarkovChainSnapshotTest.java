@@ -0,0 +1,55 @@
+package org.dwbzen.commonlib.junit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.dwbzen.common.cp.IKeyCodec;
+import org.dwbzen.common.cp.MarkovChain;
+import org.dwbzen.common.cp.MarkovChainSnapshot;
+import org.dwbzen.common.cp.OutputStyle;
+import org.dwbzen.commonlib.test.CharacterChains;
+import org.dwbzen.commonlib.test.Sentence;
+import org.dwbzen.commonlib.test.Word;
+
+import junit.framework.TestCase;
+
+public class MarkovChainSnapshotTest extends TestCase {
+
+	static final Sentence sentence1 = new Sentence("s1", "the quick brown fox jumps over the lazy dog");
+	static final Sentence sentence2 = new Sentence("s2", "pack my box with five dozen liquor jugs");
+	
+	private MarkovChainSnapshot<Character, Word, Sentence> snapshot() {
+		MarkovChainSnapshot<Character, Word, Sentence> snapshot = new MarkovChainSnapshot<>(IKeyCodec.CHARACTER, Word::new);
+		snapshot.setSupplierFactory(Sentence::new);
+		return snapshot;
+	}
+	
+	public void testRoundTrip() throws IOException {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(2, sentence1, sentence2, sentence1);
+		markovChain.setName("pangrams");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		snapshot().write(markovChain, bytes);
+		MarkovChain<Character, Word, Sentence> loaded = snapshot().read(new ByteArrayInputStream(bytes.toByteArray()));
+		
+		assertEquals("pangrams", loaded.getName());
+		assertEquals(markovChain.getOrder(), loaded.getOrder());
+		String json = markovChain.getMarkovChainDisplayText(OutputStyle.JSON);
+		assertEquals(json, loaded.getMarkovChainDisplayText(OutputStyle.JSON));
+		assertEquals(markovChain.getMarkovChainDisplayText(true), loaded.getMarkovChainDisplayText(true));
+		assertEquals(markovChain.getInitialStates(), loaded.getInitialStates());
+		assertEquals(markovChain.getTerminalStates(), loaded.getTerminalStates());
+		assertTrue(bytes.size() * 10 < json.length());
+		assertEquals("s1", loaded.get(new Word("th")).getSuppliers().iterator().next().getName());
+	}
+	
+	public void testNotASnapshot() {
+		try {
+			snapshot().read(new ByteArrayInputStream("{ \"not\" : \"binary\" }".getBytes()));
+			fail("expected IOException");
+		}
+		catch(IOException e) {
+			assertTrue(e.getMessage().startsWith("Not a MarkovChain snapshot"));
+		}
+	}
+}
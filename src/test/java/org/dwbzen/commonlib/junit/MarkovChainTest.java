@@ -0,0 +1,329 @@
+package org.dwbzen.commonlib.junit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.dwbzen.common.cp.CollectorMetricsSnapshot;
+import org.dwbzen.common.cp.CollectorStats;
+import org.dwbzen.common.cp.CompactionPolicy;
+import org.dwbzen.common.cp.CompactionReport;
+import org.dwbzen.common.cp.MarkovChain;
+import org.dwbzen.common.cp.OutputStyle;
+import org.dwbzen.common.cp.ParallelMarkovChainCollector;
+import org.dwbzen.commonlib.test.CharacterChains;
+import org.dwbzen.commonlib.test.Sentence;
+import org.dwbzen.commonlib.test.Word;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import junit.framework.TestCase;
+
+public class MarkovChainTest extends TestCase {
+
+	static final Sentence sentence1 = new Sentence("s1", "the quick brown fox jumps over the lazy dog");
+	static final Sentence sentence2 = new Sentence("s2", "pack my box with five dozen liquor jugs");
+	
+	public void testPickInitialSeed() {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(2, sentence1, sentence2);
+		markovChain.setPickInitialSeed(true);
+		List<Word> initialStates = markovChain.getInitialStates();
+		assertFalse(initialStates.isEmpty());
+		Random random = new Random(7L);
+		Set<Word> picked = new HashSet<>();
+		for(int i=0; i<1000; i++) {
+			Word seed = markovChain.pickSeed(random);
+			assertTrue(markovChain.get(seed).isInitial());
+			picked.add(seed);
+		}
+		assertEquals(new HashSet<>(initialStates), picked);
+	}
+	
+	public void testWeightedSeed() {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(2, sentence1, sentence2);
+		markovChain.setWeightedSeed(true);
+		Random random = new Random(11L);
+		for(int i=0; i<1000; i++) {
+			Word seed = markovChain.pickSeed(random);
+			assertTrue(markovChain.get(seed).getTotalOccurrance() > 0);		// terminal-only states never picked
+		}
+	}
+	
+	public void testSeedIndexFollowsPut() {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(2, sentence1);
+		int initialCount = markovChain.getInitialStates().size();
+		CharacterChains.collect(markovChain, new Sentence("s3", "zebra"));
+		assertEquals(initialCount + 1, markovChain.getInitialStates().size());
+		markovChain.remove(new Word("ze"));
+		assertEquals(initialCount, markovChain.getInitialStates().size());
+	}
+	
+	public void testSeedIndexFollowsIncrementalTraining() {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(1, new Sentence("s1", "abc"));
+		markovChain.setPickInitialSeed(true);
+		markovChain.setWeightedSeed(true);
+		Random random = new Random(3L);
+		assertEquals(new Word("a"), markovChain.pickSeed(random));
+		assertEquals(List.of(new Word("c")), markovChain.getTerminalStates());
+
+		CharacterChains.collect(markovChain, new Sentence("s2", "ca"));		// existing states become initial and terminal
+		assertEquals(List.of(new Word("a"), new Word("c")), markovChain.getInitialStates());
+		assertEquals(List.of(new Word("a"), new Word("c")), markovChain.getTerminalStates());
+		Set<Word> picked = new HashSet<>();
+		for(int i=0; i<200; i++) {
+			picked.add(markovChain.pickSeed(random));
+		}
+		assertEquals(Set.of(new Word("a"), new Word("c")), picked);
+
+		markovChain.get(new Word("a")).setInitial(false);
+		assertEquals(List.of(new Word("c")), markovChain.getInitialStates());
+		markovChain.setPickInitialSeed(false);
+		for(int i=0; i<5; i++) {
+			markovChain.get(new Word("b")).addOccurrence('x', null);		// weights follow addOccurrence
+		}
+		int b = 0;
+		for(int i=0; i<1000; i++) {
+			if(markovChain.pickSeed(random).equals(new Word("b"))) {
+				b++;
+			}
+		}
+		assertTrue(b > 600);		// b has 6 of 8 occurrences
+	}
+	
+	public void testSealedChainSeedsConcurrently() throws InterruptedException {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(2, sentence1, sentence2);
+		markovChain.setPickInitialSeed(true);
+		markovChain.setWeightedSeed(true);
+		markovChain.seal();
+		Set<Word> picked = ConcurrentHashMap.newKeySet();
+		Thread[] threads = new Thread[4];
+		for(int t=0; t<threads.length; t++) {
+			Random random = new Random(t);
+			threads[t] = new Thread(() -> {
+				for(int i=0; i<1000; i++) {
+					picked.add(markovChain.pickSeed(random));
+				}
+			});
+			threads[t].start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(new HashSet<>(markovChain.getInitialStates()), picked);
+	}
+	
+	public void testAddMergesCounts() {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(2, sentence1);
+		markovChain.add(CharacterChains.train(2, sentence1));
+		MarkovChain<Character, Word, Sentence> expected = CharacterChains.train(2, sentence1, sentence1);
+		assertEquals(expected.getMarkovChainDisplayText(true), markovChain.getMarkovChainDisplayText(true));
+	}
+	
+	public void testParallelCollectMatchesSequential() {
+		List<Sentence> sentences = new ArrayList<>();
+		Random random = new Random(3L);
+		for(int i=0; i<500; i++) {
+			sentences.add(random.nextBoolean() ? new Sentence("s" + i, sentence1.get().toString()) : new Sentence("s" + i, sentence2.get().toString()));
+		}
+		MarkovChain<Character, Word, Sentence> sequential = CharacterChains.train(3, sentences.toArray(new Sentence[0]));
+		ParallelMarkovChainCollector<Character, Word, Sentence> collector = 
+				new ParallelMarkovChainCollector<>(() -> new MarkovChain<>(3), CharacterChains::collect);
+		collector.setShardSize(16);
+		MarkovChain<Character, Word, Sentence> parallel = collector.collect(sentences);
+		assertEquals(sequential.getMarkovChainDisplayText(true), parallel.getMarkovChainDisplayText(true));
+		assertEquals(sequential.getInitialStates(), parallel.getInitialStates());
+		assertEquals(sequential.getTerminalStates(), parallel.getTerminalStates());
+	}
+	
+	public void testStreamingExport() throws IOException {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(2, new Sentence("s1", "the theme"), new Sentence("s2", "then there"));
+		StringWriter json = new StringWriter();
+		markovChain.writeJson(json);
+		assertEquals(markovChain.toJson(true), json.toString());
+		String expectedText = 
+				"'em'\t1\n" +
+				"   'e'\t1\t{s1:1}\n" +
+				"'en'\t0\n" +
+				"'er'\t1\n" +
+				"   'e'\t1\t{s2:1}\n" +
+				"'he'\t3\n" +
+				"   'm'\t1\t{s1:1}\n" +
+				"   'n'\t1\t{s2:1}\n" +
+				"   'r'\t1\t{s2:1}\n" +
+				"'me'\t0\n" +
+				"'re'\t0\n" +
+				"'th'\t4\n" +
+				"   'e'\t4\t{s1:2,s2:2}\n";
+		ByteArrayOutputStream text = new ByteArrayOutputStream();
+		markovChain.writeMarkovChainDisplayText(OutputStyle.TEXT, true, text);
+		assertEquals(expectedText, text.toString(StandardCharsets.UTF_8));
+		assertEquals(expectedText, markovChain.getMarkovChainDisplayText(true));
+		
+		String expectedCsv = 
+				"key,e,m,n,r\n" +
+				"em,1.0,0.0,0.0,0.0\n" +
+				"er,1.0,0.0,0.0,0.0\n" +
+				"he,0.0,0.33333,0.33333,0.33333\n" +
+				"th,1.0,0.0,0.0,0.0\n";
+		assertEquals(expectedCsv, markovChain.getMarkovChainDisplayText(OutputStyle.CSV));
+		String expectedSparse = 
+				"key,next,occurrence,probability\n" +
+				"em,e,1,1.0\n" +
+				"er,e,1,1.0\n" +
+				"he,m,1,0.33333\n" +
+				"he,n,1,0.33333\n" +
+				"he,r,1,0.33333\n" +
+				"th,e,4,1.0\n";
+		StringWriter sparse = new StringWriter();
+		markovChain.writeSparseCsv(sparse);
+		assertEquals(expectedSparse, sparse.toString());
+	}
+	
+	public void testSortedJson() throws IOException {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(2, sentence1, sentence2, sentence1);
+		JsonNode sorted = new ObjectMapper().readTree(markovChain.getSortedDisplayText(OutputStyle.JSON));
+		assertEquals(markovChain.size(), sorted.size());
+		JsonNode first = sorted.get(0).get("th");
+		assertEquals(4, first.get("totalOccurrence").asInt());
+		assertEquals(4, first.get("e").get("occurrence").asInt());
+		assertEquals(1.0, first.get("e").get("probability").asDouble(), 1E-9);
+	}
+	
+	public void testSummariesStayCurrent() {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(2, sentence1);
+		Map<Word, Integer> summaryMap = markovChain.getSummaryMap();
+		assertEquals(Integer.valueOf(2), summaryMap.get(new Word("th")));
+		assertEquals(new Word("th"), markovChain.getTopStates(1).get(0));
+		
+		CharacterChains.collect(markovChain, new Sentence("s3", "oxo oxo oxo oxo"));
+		assertEquals(Integer.valueOf(4), summaryMap.get(new Word("ox")));
+		assertEquals(List.of(new Word("ox"), new Word("th")), markovChain.getTopStates(2));
+		assertEquals(List.of(new Word("ox")), markovChain.getInvertedSummaryMap().get(4));
+		markovChain.remove(new Word("ox"));
+		assertNull(summaryMap.get(new Word("ox")));
+		assertEquals(new Word("th"), markovChain.getTopStates(1).get(0));
+		
+		markovChain.add(CharacterChains.train(2, sentence2, sentence2, sentence2));
+		List<Word> expected = new ArrayList<>(markovChain.keySet());
+		expected.sort((w1, w2) -> markovChain.get(w1).compareTo(markovChain.get(w2)));
+		assertEquals(expected, new ArrayList<>(markovChain.sortByValue().keySet()));
+		assertEquals(expected.subList(0, 5), new ArrayList<>(markovChain.sortByValue(5).keySet()));
+		int total = 0;
+		for(CollectorStats<Character, Word, Sentence> cstats : markovChain.values()) {
+			total += cstats.getTotalOccurrance();
+		}
+		assertTrue(markovChain.getSummaryMapText().startsWith("Total Count: " + total + "\n"));
+	}
+	
+	public void testCompact() {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(1, sentence1, sentence2, sentence1);
+		int states = markovChain.size();
+		int transitions = markovChain.values().stream().mapToInt(cstats -> cstats.size()).sum();
+		CompactionPolicy policy = new CompactionPolicy();
+		policy.setMinTransitionOccurrence(2);
+		policy.setMaxSuccessors(1);
+		policy.setMinStateOccurrence(3);
+		CompactionReport report = markovChain.compact(policy);
+		
+		assertEquals(states - markovChain.size(), report.getStatesRemoved());
+		assertEquals(transitions - markovChain.values().stream().mapToInt(cstats -> cstats.size()).sum(), report.getTransitionsRemoved());
+		assertTrue(report.getEstimatedBytesReclaimed() > 0);
+		for(CollectorStats<Character, Word, Sentence> cstats : markovChain.values()) {
+			assertTrue(cstats.size() <= 1);
+			assertTrue(cstats.getTotalOccurrance() >= 3 || (cstats.isTerminal() && cstats.getTotalOccurrance() == 0));
+			if(cstats.size() == 1) {
+				assertEquals(1.0, cstats.getOccurrenceProbabilityMap().values().iterator().next().getProbability());
+				assertEquals(cstats.getTotalOccurrance(), cstats.getSupplierCounts().values().stream().mapToInt(Integer::intValue).sum());
+			}
+		}
+		assertEquals(5, markovChain.get(new Word("t")).getTotalOccurrance());		// "the" twice in s1 and "with" in s2
+		assertEquals(Character.valueOf('h'), markovChain.sampleNext(new Word("t")));
+		assertEquals(markovChain.size(), markovChain.getSummaryMap().size());
+		assertFalse(markovChain.containsKey(new Word("b")));		// "b" -> "r" twice, "b" -> "o" once
+		assertTrue(markovChain.containsKey(new Word("x")));		// terminal only
+	}
+	
+	public void testCompactLeavesNoDanglingTransitions() {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(2, sentence1, sentence2, sentence1);
+		CompactionPolicy policy = new CompactionPolicy();
+		policy.setMinStateOccurrence(2);
+		policy.setKeepTerminalStates(false);
+		CompactionReport report = markovChain.compact(policy);
+		assertTrue(report.getStatesRemoved() > 0);
+		
+		for(CollectorStats<Character, Word, Sentence> cstats : markovChain.values()) {
+			assertTrue(cstats.getTotalOccurrance() >= 2);
+			double probability = 0;
+			for(Character k : cstats.getOccurrenceProbabilityMap().keySet()) {
+				Word next = new Word(cstats.getSubset().subList(1, cstats.getSubset().size()));
+				next.add(k);
+				assertTrue(cstats.getSubset() + " -> " + next, markovChain.containsKey(next));
+				probability += cstats.getOccurrenceProbabilityMap().get(k).getProbability();
+			}
+			assertEquals(1.0, probability, 1E-9);
+		}
+	}
+	
+	public void testMetrics() {
+		MarkovChain<Character, Word, Sentence> markovChain = new MarkovChain<>(1);
+		assertNull(markovChain.getMetricsSnapshot());
+		markovChain.setMetricsEnabled(true);
+		markovChain.setName("metrics");
+		CharacterChains.collect(markovChain, sentence1);
+		markovChain.remove(new Word("z"));
+		markovChain.setPickInitialSeed(true);
+		for(int i=0; i<10; i++) {
+			markovChain.sampleNext(markovChain.pickSeed());
+		}
+		markovChain.sampleNext(new Word("!"));
+		
+		CollectorMetricsSnapshot snapshot = markovChain.getMetricsSnapshot();
+		assertEquals("metrics", snapshot.getName());
+		assertEquals(26, snapshot.getOccurrencesAdded());		// 35 letters in 9 words, less the last letter of each
+		assertEquals(markovChain.size() + 1, snapshot.getStatesCreated());
+		assertEquals(1, snapshot.getStatesRemoved());
+		assertEquals(10, snapshot.getSeedsPicked());
+		assertEquals(0, snapshot.getInitialSeedFallbacks());
+		assertEquals(11, snapshot.getSamples());
+		assertEquals(1, snapshot.getSampleMisses());
+		assertEquals(11, snapshot.getSampleLatency().getCount());
+		assertTrue(snapshot.getSampleLatency().getP50() <= snapshot.getSampleLatency().getP99());
+		assertTrue(snapshot.getSampleLatency().getP99() <= snapshot.getSampleLatency().getMax());
+		assertEquals(markovChain.size(), snapshot.getStates());
+		assertEquals(markovChain.values().stream().mapToInt(cstats -> cstats.size()).sum(), snapshot.getTransitions());
+		assertEquals((double)snapshot.getTransitions() / snapshot.getStates(), snapshot.getAverageFanOut());
+		assertTrue(snapshot.getEstimatedBytes() > 0);
+		assertTrue(snapshot.toJson().replaceAll("\\s", "").contains("\"sampleMisses\":1"));
+		
+		markovChain.setMetricsEnabled(false);
+		assertNull(markovChain.getMetrics());
+	}
+	
+	public void testMetricsPutAll() {
+		MarkovChain<Character, Word, Sentence> other = new MarkovChain<>(1);
+		CharacterChains.collect(other, sentence1);
+		MarkovChain<Character, Word, Sentence> markovChain = new MarkovChain<>(1);
+		markovChain.setMetricsEnabled(true);
+		Word overlap = other.firstKey();
+		markovChain.put(overlap, other.get(overlap));
+		assertEquals(1, markovChain.getMetricsSnapshot().getStatesCreated());
+		
+		Map<Word, CollectorStats<Character, Word, Sentence>> states = new HashMap<>(other);
+		markovChain.putAll(states);
+		CollectorMetricsSnapshot snapshot = markovChain.getMetricsSnapshot();
+		assertEquals(other.size(), markovChain.size());
+		assertEquals(other.size(), snapshot.getStatesCreated());		// the overlapping key once
+		assertEquals(0, snapshot.getStatesRemoved());
+		assertEquals(markovChain.size(), snapshot.getStates());
+	}
+}
@@ -0,0 +1,123 @@
+package org.dwbzen.commonlib.junit;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.dwbzen.common.math.SourceOccurrenceProbability;
+import org.dwbzen.common.math.Tupple;
+import org.dwbzen.common.relation.OccurrenceRelation;
+import org.dwbzen.common.relation.OccurrenceRelationBag;
+import org.dwbzen.common.relation.PartitionIterator;
+import org.dwbzen.commonlib.test.Sentence;
+import org.dwbzen.commonlib.test.Word;
+
+import junit.framework.TestCase;
+
+public class PartitionIteratorTest extends TestCase {
+
+	static class WordRelation extends OccurrenceRelation<Character, Word, Sentence> {
+		WordRelation(Word word, int degree) {
+			super(word, degree);
+		}
+		@Override
+		public boolean isElement(Tupple<Character> element, Word unit) {
+			return unit.containsAll(element.getElements());
+		}
+	}
+
+	static class WordBag extends OccurrenceRelationBag<Character, Word, Sentence> {
+		WordBag(int degree) {
+			super(degree);
+		}
+	}
+
+	public void testSameAsPartition() {
+		Random random = new Random(11L);
+		for(int n=0; n<200; n++) {
+			StringBuilder sb = new StringBuilder();
+			int len = 1 + random.nextInt(10);
+			for(int i=0; i<len; i++) {
+				sb.append((char)('a' + random.nextInt(5)));
+			}
+			Word word = new Word(sb.toString());
+			for(int degree=1; degree<=len+1; degree++) {
+				List<Tupple<Character>> expected = new ArrayList<>(new WordRelation(word, degree).getPartitions());
+				List<Tupple<Character>> lazy = PartitionIterator.stream(word, degree).collect(Collectors.toList());
+				assertEquals(word + " " + degree, expected.toString(), lazy.toString());
+			}
+		}
+	}
+
+	public void testReuse() {
+		Iterator<Tupple<Character>> iterator = new PartitionIterator<>(new Word("banana"), 2, true);
+		Tupple<Character> first = iterator.next();
+		Tupple<Character> copy = PartitionIterator.copy(first);
+		assertEquals("[ a,a ]", copy.toString());
+		Tupple<Character> second = iterator.next();
+		assertSame(first, second);
+		assertEquals("[ a,b ]", second.toString());
+		assertEquals("[ a,a ]", copy.toString());
+		assertEquals(1, copy.getUniqueElements().size());
+		assertEquals(2, second.getUniqueElements().size());
+	}
+
+	public void testAddUnits() throws Exception {
+		List<Word> units = new ArrayList<>();
+		Random random = new Random(5L);
+		for(int n=0; n<2000; n++) {
+			StringBuilder sb = new StringBuilder();
+			for(int i=0; i<12; i++) {
+				sb.append((char)('a' + random.nextInt(8)));
+			}
+			units.add(new Word(sb.toString()));
+		}
+		WordBag sequential = new WordBag(3);
+		WordBag parallel = new WordBag(3);
+		sequential.setIdExtractorFunction(word -> word.toString().substring(0, 1));
+		parallel.setIdExtractorFunction(word -> word.toString().substring(0, 1));
+		units.forEach(sequential::addUnit);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		parallel.setPool(pool);
+		parallel.addUnits(units.subList(0, 1000));
+		parallel.addUnits(units.subList(1000, 2000));
+		pool.shutdown();
+		sequential.close();
+		parallel.close();
+		assertEquals(sequential.getTotalOccurrences(), parallel.getTotalOccurrences());
+		assertEquals(sequential.getSourceOccurrenceProbabilityMap().size(), parallel.getSourceOccurrenceProbabilityMap().size());
+		for(SourceOccurrenceProbability<Character, Word> expected : sequential.getSourceOccurrenceProbabilityMap().values()) {
+			SourceOccurrenceProbability<Character, Word> actual = parallel.getSourceOccurrenceProbabilityMap().get(expected.getKey());
+			assertEquals(expected.getOccurrenceProbability().getOccurrence(), actual.getOccurrenceProbability().getOccurrence());
+			assertEquals(expected.getOccurrenceProbability().getProbability(), actual.getOccurrenceProbability().getProbability());
+			assertEquals(expected.getSources(), actual.getSources());
+			assertEquals(expected.getIds(), actual.getIds());
+			assertSame(parallel, actual.getOccurrenceRelationBag());
+		}
+	}
+
+	public void testAddUnit() {
+		String[] words = "the quick brown fox jumps over the lazy dog banana".split(" ");
+		WordBag eager = new WordBag(2);
+		WordBag lazy = new WordBag(2);
+		for(String text : words) {
+			Word word = new Word(text);
+			eager.addOccurrenceRelation(new WordRelation(word, 2));
+			lazy.addUnit(word);
+		}
+		eager.close();
+		lazy.close();
+		assertEquals(eager.getTotalOccurrences(), lazy.getTotalOccurrences());
+		assertEquals(eager.getSortedSourceOccurrenceProbabilityMap().keySet().toString(), lazy.getSortedSourceOccurrenceProbabilityMap().keySet().toString());
+		for(Tupple<Character> tupple : eager.getSourceOccurrenceProbabilityMap().keySet()) {
+			SourceOccurrenceProbability<Character, Word> expected = eager.getSourceOccurrenceProbabilityMap().get(tupple);
+			SourceOccurrenceProbability<Character, Word> actual = lazy.getSourceOccurrenceProbabilityMap().get(tupple);
+			assertEquals(expected.getOccurrenceProbability().getOccurrence(), actual.getOccurrenceProbability().getOccurrence());
+			assertEquals(expected.getSources(), actual.getSources());
+			assertEquals(tupple.toString(), actual.getKey().toString());
+		}
+	}
+}
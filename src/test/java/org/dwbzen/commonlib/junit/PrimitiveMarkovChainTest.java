@@ -0,0 +1,107 @@
+package org.dwbzen.commonlib.junit;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.dwbzen.common.cp.IntTupleIndex;
+import org.dwbzen.common.cp.MarkovChain;
+import org.dwbzen.common.cp.PrimitiveMarkovChain;
+import org.dwbzen.commonlib.test.CharacterChains;
+import org.dwbzen.commonlib.test.Sentence;
+import org.dwbzen.commonlib.test.Word;
+
+import junit.framework.TestCase;
+
+public class PrimitiveMarkovChainTest extends TestCase {
+
+	static final Sentence sentence1 = new Sentence("s1", "the quick brown fox jumps over the lazy dog");
+	static final Sentence sentence2 = new Sentence("s2", "pack my box with five dozen liquor jugs");
+
+	public void testRoundTrip() {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(2, sentence1, sentence2, sentence1);
+		markovChain.setName("pangrams");
+		PrimitiveMarkovChain<Character, Word, Sentence> chain = PrimitiveMarkovChain.from(markovChain, Word::new);
+		assertEquals(markovChain.size(), chain.size());
+		for(Word state : markovChain.keySet()) {
+			assertEquals(markovChain.get(state).getTotalOccurrance(), chain.getTotalOccurrance(state));
+			assertEquals(markovChain.get(state).toString(), chain.get(state).toString());
+		}
+		assertNull(chain.get(new Word("zz")));
+		assertFalse(chain.containsKey(new Word("the")));
+
+		MarkovChain<Character, Word, Sentence> copy = chain.toMarkovChain();
+		assertEquals("pangrams", copy.getName());
+		assertEquals(markovChain.getMarkovChainDisplayText(true), copy.getMarkovChainDisplayText(true));
+		assertEquals(markovChain.getInitialStates(), copy.getInitialStates());
+		assertEquals(markovChain.getTerminalStates(), copy.getTerminalStates());
+	}
+
+	public void testAddOccurrence() {
+		PrimitiveMarkovChain<Character, Word, Sentence> chain = new PrimitiveMarkovChain<>(2, Word::new);
+		Word state = new Word("ab");
+		chain.setInitial(state);
+		chain.addOccurrence(state, 'c', sentence1);
+		chain.addOccurrence(state, 'c', sentence2);
+		chain.addOccurrence(state, 'a', sentence2);
+		chain.setTerminal(new Word("bc"));
+		assertEquals(2, chain.size());
+		assertEquals(3, chain.getTotalOccurrance(state));
+		assertEquals(2, chain.get(state).getOccurrenceProbabilityMap().get('c').getOccurrence());
+		assertEquals(1, chain.get(state).getSupplierCount('c', sentence2));
+		assertTrue(chain.get(state).isInitial());
+		assertEquals(1, chain.getTerminalStates().size());
+		try {
+			chain.addOccurrence(new Word("abc"), 'd');
+			fail("expected IllegalArgumentException");
+		}
+		catch(IllegalArgumentException e) {
+			assertTrue(e.getMessage().endsWith("length must be 2"));
+		}
+	}
+
+	public void testSampleNext() {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(1, sentence1, sentence2);
+		PrimitiveMarkovChain<Character, Word, Sentence> chain = PrimitiveMarkovChain.from(markovChain, Word::new);
+		chain.seal();
+		Random random = new Random(5L);
+		Word state = new Word("o");
+		int[] counts = new int[128];
+		int samples = 20000;
+		for(int i=0; i<samples; i++) {
+			counts[chain.sampleNext(state, random)]++;
+		}
+		markovChain.get(state).getOccurrenceProbabilityMap().forEach((k, op) ->
+			assertEquals(op.getProbability(), (double)counts[k] / samples, 0.02));
+		assertNull(chain.sampleNext(new Word("x"), random));		// terminal only
+	}
+
+	public void testPickInitialSeed() {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(2, sentence1, sentence2);
+		PrimitiveMarkovChain<Character, Word, Sentence> chain = PrimitiveMarkovChain.from(markovChain, Word::new);
+		chain.setPickInitialSeed(true);
+		chain.setWeightedSeed(true);
+		Random random = new Random(7L);
+		Set<Word> picked = new HashSet<>();
+		for(int i=0; i<1000; i++) {
+			Word seed = chain.pickSeed(random);
+			assertTrue(markovChain.get(seed).isInitial());
+			picked.add(seed);
+		}
+		assertEquals(new HashSet<>(markovChain.getInitialStates()), picked);
+	}
+
+	public void testIntTupleIndex() {
+		IntTupleIndex index = new IntTupleIndex(2, 1);
+		for(int i=0; i<1000; i++) {
+			assertEquals(i, index.intern(new int[] {i, -i}));
+		}
+		assertEquals(1000, index.size());
+		for(int i=0; i<1000; i++) {
+			assertEquals(i, index.find(new int[] {i, -i}));
+			assertEquals(-i, index.get(i, 1));
+		}
+		assertEquals(IntTupleIndex.NOT_FOUND, index.find(new int[] {1, 1}));
+		assertEquals(7, index.intern(new int[] {7, -7}));
+	}
+}
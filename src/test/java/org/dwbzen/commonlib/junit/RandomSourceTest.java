@@ -0,0 +1,115 @@
+package org.dwbzen.commonlib.junit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.dwbzen.common.cp.CollectorStats;
+import org.dwbzen.common.cp.MarkovChain;
+import org.dwbzen.common.data.RandomGenerator;
+import org.dwbzen.common.math.Point2D;
+import org.dwbzen.common.math.ProbabilityDensityFunction;
+import org.dwbzen.common.util.RandomSource;
+import org.dwbzen.commonlib.test.CharacterChains;
+import org.dwbzen.commonlib.test.Sentence;
+import org.dwbzen.commonlib.test.Word;
+
+import junit.framework.TestCase;
+
+public class RandomSourceTest extends TestCase {
+
+	static final Sentence sentence1 = new Sentence("s1", "the quick brown fox jumps over the lazy dog");
+
+	public void testSeededStreams() {
+		RandomSource source1 = new RandomSource(7L);
+		RandomSource source2 = new RandomSource(7L);
+		assertEquals(source1.current().nextLong(), source2.current().nextLong());
+		assertEquals(source1.split(3).nextLong(), source2.split(3).nextLong());
+		assertFalse(source1.split(3).nextLong() == source1.split(4).nextLong());
+		assertFalse(new RandomSource(8L).split(3).nextLong() == source1.split(3).nextLong());
+		assertSame(source1.current(), source1.current());
+
+		Random random = source1.split(0);
+		for(int i=0; i<1000; i++) {
+			double d = random.nextDouble();
+			assertTrue(d >= 0 && d < 1);
+			int n = random.nextInt(10);
+			assertTrue(n >= 0 && n < 10);
+		}
+		assertFalse(new RandomSource().isSeeded());
+	}
+
+	public void testReproducibleComponents() {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(1, sentence1);
+		assertEquals(walk(markovChain, new RandomSource(11L)), walk(markovChain, new RandomSource(11L)));
+
+		assertEquals(new RandomGenerator(new RandomSource(5L)).randomIntegers(10, 20, 10, true),
+				new RandomGenerator(new RandomSource(5L)).randomIntegers(10, 20, 10, true));
+		List<Integer> integers = new RandomGenerator(new RandomSource(5L)).randomIntegers(10, 20, 50, false);
+		assertTrue(integers.stream().allMatch(n -> n >= 10 && n < 20));
+		List<Integer> wide = new RandomGenerator(new RandomSource(5L)).randomIntegers(-2000000000, 2000000000, 1000, false);
+		assertTrue(wide.stream().allMatch(n -> n >= -2000000000 && n < 2000000000));
+		assertTrue(wide.stream().anyMatch(n -> n < 0) && wide.stream().anyMatch(n -> n > 0));
+	}
+
+	public void testRandomPDFRange() {
+		ProbabilityDensityFunction pdf = new ProbabilityDensityFunction(1.0, 0.5);
+		pdf.setRandomSource(new RandomSource(3L));
+		pdf.setRange(new Point2D<Double>(2.0, 4.0));
+		for(int i=0; i<1000; i++) {
+			double x = pdf.randomPDF();
+			assertTrue(x >= 2.0 && x < 4.0);
+		}
+		pdf.setRange(new Point2D<Double>(4.0, 2.0));
+		try {
+			pdf.randomPDF();
+			fail("inverted range");
+		}
+		catch(IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testComponentsFollowOwnerAndDefault() {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(1, sentence1);
+		CollectorStats<Character, Word, Sentence> cstats = markovChain.get(new Word("o"));
+		List<Character> expected = new ArrayList<>();
+		Random random = new RandomSource(13L).current();
+		for(int i=0; i<20; i++) {
+			expected.add(cstats.sampleNext(random));
+		}
+		markovChain.setRandomSource(new RandomSource(13L));
+		List<Character> sampled = new ArrayList<>();
+		for(int i=0; i<20; i++) {
+			sampled.add(cstats.sampleNext());		// uses the owner's RandomSource
+		}
+		assertEquals(expected, sampled);
+
+		RandomGenerator generator = new RandomGenerator();		// created before setDefault
+		RandomSource saved = RandomSource.getDefault();
+		try {
+			RandomSource.setDefault(new RandomSource(5L));
+			List<Integer> integers = generator.randomIntegers(10, 20, 10, true);
+			RandomSource.setDefault(new RandomSource(5L));
+			assertEquals(integers, generator.randomIntegers(10, 20, 10, true));
+		}
+		finally {
+			RandomSource.setDefault(saved);
+		}
+	}
+
+	private List<Character> walk(MarkovChain<Character, Word, Sentence> markovChain, RandomSource randomSource) {
+		markovChain.setRandomSource(randomSource);
+		List<Character> keys = new ArrayList<>();
+		Word state = markovChain.pickSeed();
+		for(int i=0; i<20 && state != null; i++) {
+			Character next = markovChain.sampleNext(state);
+			if(next == null) {
+				break;
+			}
+			keys.add(next);
+			state = new Word(String.valueOf(next));
+		}
+		return keys;
+	}
+}
@@ -0,0 +1,63 @@
+package org.dwbzen.commonlib.junit;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.dwbzen.common.cp.MarkovChain;
+import org.dwbzen.common.cp.TransitionMatrix;
+import org.dwbzen.commonlib.test.CharacterChains;
+import org.dwbzen.commonlib.test.Sentence;
+import org.dwbzen.commonlib.test.Word;
+
+import junit.framework.TestCase;
+
+public class TransitionMatrixTest extends TestCase {
+
+	static final Sentence sentence1 = new Sentence("s1", "the quick brown fox jumps over the lazy dog");
+	static final Sentence sentence2 = new Sentence("s2", "pack my box with five dozen liquor jugs");
+
+	public void testTransitionMatrix() throws Exception {
+		MarkovChain<Character, Word, Sentence> markovChain = CharacterChains.train(2, sentence1, sentence2);
+		TransitionMatrix<Character, Word> matrix = markovChain.getTransitionMatrix(Word::new);
+		assertEquals(markovChain.size(), matrix.size());
+
+		int th = matrix.idOf(new Word("th"));
+		int he = matrix.idOf(new Word("he"));
+		assertEquals(new Word("th"), matrix.getState(th));
+		assertEquals(1.0, matrix.getProbability(th, he), 1E-12);
+		assertEquals(0.0, matrix.getProbability(he, th), 1E-12);
+
+		double[] ones = new double[matrix.size()];
+		Arrays.fill(ones, 1.0);
+		double[] rowSums = matrix.multiply(ones);
+		for(int i=0; i<matrix.size(); i++) {
+			assertEquals(1.0, rowSums[i] + matrix.getEndProbability(i), 1E-12);
+		}
+
+		double[] oneStep = matrix.getStepProbabilities(new Word("th"), 1);
+		assertEquals(1.0, oneStep[he], 1E-12);
+		double[] tenSteps = matrix.getStepProbabilities(new Word("th"), 10);
+		assertEquals(1.0, sum(tenSteps), 1E-9);
+
+		double[] stationary = matrix.getStationaryDistribution();
+		assertEquals(1.0, sum(stationary), 1E-9);
+		double[] stepped = matrix.step(stationary);
+		for(int i=0; i<stationary.length; i++) {
+			assertEquals(stationary[i], stepped[i], 1E-8);
+		}
+
+		StringWriter writer = new StringWriter();
+		matrix.writeSparseCsv(writer);
+		String[] lines = writer.toString().split("\n");
+		assertEquals("from,to,probability", lines[0]);
+		assertEquals(matrix.getNonZeros() + 1, lines.length);
+	}
+
+	private static double sum(double[] x) {
+		double sum = 0;
+		for(double d : x) {
+			sum += d;
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,85 @@
+package org.dwbzen.commonlib.junit;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.dwbzen.common.math.CharTupple;
+import org.dwbzen.common.math.IntTupple;
+import org.dwbzen.common.math.LongTupple;
+import org.dwbzen.common.math.Tupple;
+
+import junit.framework.TestCase;
+
+public class TuppleHashTest extends TestCase {
+
+	public void testTupple() {
+		Tupple<Character> t1 = new Tupple<>('b', 'a', 'b');
+		Tupple<Character> t2 = new Tupple<>(Arrays.asList('b', 'b', 'a'));
+		Tupple<Character> t3 = new Tupple<>(3);
+		t3.add('b').add('b').add('a');
+		assertEquals(t1, t2);
+		assertEquals(t1, t3);
+		assertEquals(t1.hashCode(), t2.hashCode());
+		assertEquals(t1.hashCode(), t3.hashCode());
+		assertEquals("[ a,b,b ]".hashCode(), t1.getKey());		// the persisted key is unchanged
+		assertFalse(t1.equals(new Tupple<>('a', 'b')));
+		assertFalse(t1.equals(new Tupple<>(1, 2, 3)));
+		assertEquals(2, t3.getUniqueElements().size());
+
+		Map<Tupple<Character>, Integer> counts = new HashMap<>();
+		for(Tupple<Character> tupple : Arrays.asList(t1, t2, t3, new Tupple<>('a', 'b'))) {
+			counts.merge(tupple, 1, Integer::sum);
+		}
+		assertEquals(2, counts.size());
+		assertEquals(3, counts.get(new Tupple<>('a', 'b', 'b')).intValue());
+
+		Character[] array = {'c', 'a'};
+		Tupple<Character> t4 = new Tupple<>(array);
+		int hash = t4.hashCode();
+		array[0] = 'z';		// copied, a complete Tupple doesn't change
+		assertEquals("[ a,c ]", t4.toString());
+		assertEquals(hash, t4.hashCode());
+		try {
+			t1.getElements().clear();
+			fail("elements of a complete Tupple changed");
+		}
+		catch(UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	public void testPrimitiveTupples() {
+		CharTupple c1 = new CharTupple('b', 'a', 'b');
+		char[] chars = {'b', 'b', 'a'};
+		CharTupple c2 = new CharTupple(chars);
+		chars[0] = 'z';		// copied
+		assertEquals(c1, c2);
+		assertEquals(c1.hashCode(), c2.hashCode());
+		assertEquals("[ a,b,b ]", c1.toString());
+		assertEquals(new Tupple<>('b', 'a', 'b').toString(), c1.toString());
+		assertEquals(c1, CharTupple.of(c1.toTupple()));
+		assertTrue(Arrays.equals(new char[] {'a', 'b'}, c1.getUniqueElements()));
+		assertTrue(c1.isElement('a'));
+		assertFalse(c1.isElement('c'));
+		assertTrue(c1.compareTo(new CharTupple('a', 'b', 'c')) < 0);
+		assertTrue(c1.compareTo(new CharTupple('z')) > 0);
+
+		IntTupple i1 = new IntTupple(300, -1, 200);
+		assertEquals("[ -1,200,300 ]", i1.toString());
+		assertEquals(new IntTupple(200, 300, -1), i1);
+		assertEquals(i1.toTupple().toString(), i1.toString());
+		assertFalse(new IntTupple('a').equals(new CharTupple('a')));
+
+		LongTupple l1 = new LongTupple(5L, 5L);
+		assertEquals(1, l1.getUniqueElements().length);
+		assertFalse(l1.equals(new LongTupple(5L)));
+		try {
+			new IntTupple();
+			fail("empty IntTupple");
+		}
+		catch(IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package org.dwbzen.commonlib.junit;
+
+import java.util.List;
+import java.util.Random;
+
+import org.dwbzen.common.cp.MarkovChain;
+import org.dwbzen.common.cp.VariableOrderMarkovChain;
+import org.dwbzen.commonlib.test.CharacterChains;
+import org.dwbzen.commonlib.test.Sentence;
+import org.dwbzen.commonlib.test.Word;
+
+import junit.framework.TestCase;
+
+public class VariableOrderMarkovChainTest extends TestCase {
+
+	// no word is shorter than maxOrder + 1, which CharacterChains would skip
+	static final Sentence sentence1 = new Sentence("s1", "quick brown jumps over lazy dozen liquor jugs");
+	static final Sentence sentence2 = new Sentence("s2", "pack five boxes with quick liquor");
+
+	private VariableOrderMarkovChain<Character, Word, Sentence> train(int maxOrder, Sentence...sentences) {
+		VariableOrderMarkovChain<Character, Word, Sentence> chain = new VariableOrderMarkovChain<>(maxOrder);
+		for(Sentence sentence : sentences) {
+			for(String text : sentence.get().toString().split("\\s+")) {
+				chain.add(new Word(text));
+			}
+		}
+		return chain;
+	}
+
+	public void testMatchesFixedOrderChains() {
+		VariableOrderMarkovChain<Character, Word, Sentence> chain = train(3, sentence1, sentence2, sentence1);
+		for(int order=1; order<=3; order++) {
+			MarkovChain<Character, Word, Sentence> expected = CharacterChains.train(order, sentence1, sentence2, sentence1);
+			MarkovChain<Character, Word, Sentence> actual = chain.getMarkovChain(order, Word::new);
+			assertEquals(expected.getMarkovChainDisplayText(false), actual.getMarkovChainDisplayText(false));
+			assertEquals(expected.getInitialStates(), actual.getInitialStates());
+			assertEquals(expected.getTerminalStates(), actual.getTerminalStates());
+		}
+		assertEquals(6, chain.getTotalOccurrance(new Word("qu")));
+		assertEquals(0, chain.getTotalOccurrance(new Word("zz")));
+	}
+
+	public void testBackoff() {
+		VariableOrderMarkovChain<Character, Word, Sentence> chain = train(3, sentence1, sentence2);
+		chain.seal();
+		Random random = new Random(9L);
+		assertEquals(3, chain.getBackoffOrder(new Word("xqui")));
+		assertEquals('k', chain.sampleNext(new Word("pac"), random).charValue());
+		assertEquals(1, chain.getBackoffOrder(new Word("zzq")));		// "zq" and "zzq" were never seen
+		assertEquals('u', chain.sampleNext(new Word("zzq"), random).charValue());
+		assertEquals(0, chain.getBackoffOrder(new Word("!")));
+		assertNotNull(chain.sampleNext(List.of(), random));
+
+		chain.setMinOccurrence(3);
+		assertEquals(2, chain.getBackoffOrder(new Word("qu")));		// "qu" occurs 4 times
+		assertEquals(1, chain.getBackoffOrder(new Word("ic")));		// "ic" occurs twice, "c" 3 times
+	}
+
+	public void testSharedContexts() {
+		VariableOrderMarkovChain<Character, Word, Sentence> chain = train(3, sentence1, sentence2);
+		int states = 0;
+		for(int order=0; order<=3; order++) {
+			states += chain.getMarkovChain(order, Word::new).size();
+		}
+		assertEquals(states, chain.getNodeCount());		// one node per distinct context of any order
+	}
+}
@@ -0,0 +1,71 @@
+package org.dwbzen.commonlib.test;
+
+import org.dwbzen.common.cp.CollectorStats;
+import org.dwbzen.common.cp.ConcurrentMarkovChain;
+import org.dwbzen.common.cp.MarkovChain;
+
+/**
+ * Builds character-level MarkovChains from Sentences in the way a CharacterCollector would:<br>
+ * each word is a sequence of states of length order, the first is initial and the last is terminal.
+ *
+ */
+public class CharacterChains {
+
+	public static MarkovChain<Character, Word, Sentence> train(int order, Sentence...sentences) {
+		MarkovChain<Character, Word, Sentence> markovChain = new MarkovChain<>(order);
+		for(Sentence sentence : sentences) {
+			collect(markovChain, sentence);
+		}
+		return markovChain;
+	}
+	
+	public static void collect(MarkovChain<Character, Word, Sentence> markovChain, Sentence sentence) {
+		int order = markovChain.getOrder();
+		for(String text : sentence.get().toString().split("\\s+")) {
+			if(text.length() <= order) {
+				continue;
+			}
+			for(int i = 0; i + order <= text.length(); i++) {
+				Word state = new Word(text.substring(i, i + order));
+				CollectorStats<Character, Word, Sentence> cstats = markovChain.get(state);
+				if(cstats == null) {
+					cstats = new CollectorStats<>(state);
+					markovChain.put(state, cstats);
+				}
+				if(i == 0) {
+					cstats.setInitial(true);
+				}
+				if(i + order < text.length()) {
+					cstats.addOccurrence(text.charAt(i + order), sentence);
+				}
+				else {
+					cstats.setTerminal(true);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Same as collect(MarkovChain, Sentence), safe to call from many threads.
+	 */
+	public static void collectConcurrently(ConcurrentMarkovChain<Character, Word, Sentence> markovChain, Sentence sentence) {
+		int order = markovChain.getOrder();
+		for(String text : sentence.get().toString().split("\\s+")) {
+			if(text.length() <= order) {
+				continue;
+			}
+			for(int i = 0; i + order <= text.length(); i++) {
+				Word state = new Word(text.substring(i, i + order));
+				if(i == 0) {
+					markovChain.setInitial(state);
+				}
+				if(i + order < text.length()) {
+					markovChain.addOccurrence(state, text.charAt(i + order), sentence);
+				}
+				else {
+					markovChain.setTerminal(state);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package org.dwbzen.commonlib.test;
+
+import java.util.function.Supplier;
+
+import org.dwbzen.common.util.INameable;
+
+/**
+ * Minimal Supplier&lt;Word&gt; for exercising the cp package.
+ *
+ */
+public class Sentence implements Supplier<Word>, INameable {
+
+	private static final long serialVersionUID = 2467110281722950339L;
+	private String name = DEFAULT_NAME;
+	private String text = "";
+	
+	public Sentence(String name) {
+		this.name = name;
+	}
+	
+	public Sentence(String name, String text) {
+		this.name = name;
+		this.text = text;
+	}
+
+	@Override
+	public Word get() {
+		return new Word(text);
+	}
+
+	@Override
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+}
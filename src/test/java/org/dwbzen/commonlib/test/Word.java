@@ -0,0 +1,47 @@
+package org.dwbzen.commonlib.test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Minimal List&lt;Character&gt; state type for exercising the cp package.
+ *
+ */
+public class Word extends ArrayList<Character> implements Comparable<Word> {
+
+	private static final long serialVersionUID = -3525812233180711744L;
+
+	public Word() {
+		super();
+	}
+	
+	public Word(Collection<Character> chars) {
+		super(chars);
+	}
+	
+	public Word(String text) {
+		super(text.length());
+		for(char c : text.toCharArray()) {
+			add(c);
+		}
+	}
+
+	@Override
+	public int compareTo(Word other) {		// the same order as comparing the Strings
+		int len = Math.min(size(), other.size());
+		for(int i=0; i<len; i++) {
+			int compare = Character.compare(get(i), other.get(i));
+			if(compare != 0) {
+				return compare;
+			}
+		}
+		return size() - other.size();
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		forEach(c -> sb.append(c));
+		return sb.toString();
+	}
+}